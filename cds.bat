@@ -0,0 +1,11 @@
+@echo off
+cls
+rem Creates the class data sharing archive (target/app.jsa) used by run.bat.
+rem It requires Oracle JDK 8u40 or newer and has to be run again after compile.bat.
+set APP_CLASSPATH=target/coreservices-app-1.0-SNAPSHOT.jar;target/dependency/*
+set CDS_OPTIONS=-XX:+UnlockCommercialFeatures -XX:+UseAppCDS
+rem Records the classes loaded while the application starts.
+call java %CDS_OPTIONS% -XX:DumpLoadedClassList=target/classes.lst -Dcoreservicesapp.startup.exit=true -cp "%APP_CLASSPATH%" com.przemekm.coreservicesapp.Main
+rem Dumps the recorded classes into the archive.
+call java %CDS_OPTIONS% -Xshare:dump -XX:SharedClassListFile=target/classes.lst -XX:SharedArchiveFile=target/app.jsa -cp "%APP_CLASSPATH%"
+pause
\ No newline at end of file
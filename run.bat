@@ -1,4 +1,7 @@
 @echo off
 cls
-call java -cp "target/classes/;target/dependency/*" com.przemekm.coreservicesapp.Main
+set APP_CLASSPATH=target/coreservices-app-1.0-SNAPSHOT.jar;target/dependency/*
+set JAVA_OPTIONS=
+if exist target\app.jsa set JAVA_OPTIONS=-XX:+UnlockCommercialFeatures -XX:+UseAppCDS -Xshare:auto -XX:SharedArchiveFile=target/app.jsa
+call java %JAVA_OPTIONS% -cp "%APP_CLASSPATH%" com.przemekm.coreservicesapp.Main
 pause
\ No newline at end of file
@@ -1,12 +1,17 @@
 package com.przemekm.coreservicesapp;
 
+import com.przemekm.coreservicesapp.controllers.MainWindow;
 import com.przemekm.coreservicesapp.database.H2Database;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * This class contains methods which are used to start a JavaFX application.
  *
@@ -15,6 +20,12 @@ import javafx.stage.Stage;
  * @see Application
  */
 public final class Main extends Application {
+    /**
+     * System property which closes the application as soon as it has started.
+     * It is used by {@code cds.bat} to record the classes loaded during the startup.
+     */
+    public static final String EXIT_AFTER_STARTUP_PROPERTY = "coreservicesapp.startup.exit";
+
     /**
      * This parameter defines the initial width of the created application.
      *
@@ -29,13 +40,46 @@ public final class Main extends Application {
      */
     private static final int SCENE_HEIGHT = 800;
 
+    private MainWindow mainWindow;
+
+    /**
+     * This method creates the main window of the application.
+     * <p>
+     * The database is initialized in the background, while the window is created.
+     * After the window is shown, the dialog used for generating reports is created,
+     * so it opens quickly the first time. If the {@link MainWindow#TIMINGS_PROPERTY}
+     * system property is set, the time elapsed since the start of the JVM
+     * is displayed when the window is shown and when the database is ready.
+     *
+     * @param primaryStage the stage of the main window.
+     * @throws Exception if the window couldn't be loaded.
+     * @see H2Database#initializeInBackground()
+     * @see MainWindow#getReportsDialog()
+     */
     @Override
     public void start(final Stage primaryStage) throws Exception {
-        Parent root = FXMLLoader.load(getClass()
+        CompletableFuture<H2Database> database = H2Database.initializeInBackground();
+        FXMLLoader loader = new FXMLLoader(getClass()
                 .getResource("/mainWindow.fxml"));
+        Parent root = loader.load();
+        mainWindow = loader.getController();
         primaryStage.setTitle("Orders Manager Application");
         primaryStage.setScene(new Scene(root, SCENE_WIDTH, SCENE_HEIGHT));
         primaryStage.show();
+
+        if (Boolean.getBoolean(MainWindow.TIMINGS_PROPERTY)) {
+            long windowMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            database.thenRun(() -> MainWindow.setTextToDisplay("Window shown "
+                    + windowMillis
+                    + " ms and database ready "
+                    + ManagementFactory.getRuntimeMXBean().getUptime()
+                    + " ms after the start of the JVM."
+                    + System.lineSeparator()));
+        }
+        Platform.runLater(mainWindow::getReportsDialog);
+        if (Boolean.getBoolean(EXIT_AFTER_STARTUP_PROPERTY)) {
+            database.thenRun(() -> Platform.runLater(Platform::exit));
+        }
     }
 
     /**
@@ -52,13 +96,18 @@ public final class Main extends Application {
     /**
      * This method is called when the application is being closed.
      * <p>
-     * The connection with the database is closed with use
+     * The HTTP API and the stream ingester are stopped (if they have been started)
+     * and the connection with the database is closed with use
      * of {@link H2Database#closeConnection()} method.
      *
+     * @see MainWindow#stopServers()
      * @see H2Database#closeConnection()
      */
     @Override
     public void stop() {
+        if (mainWindow != null) {
+            mainWindow.stopServers();
+        }
         H2Database.getInstance().closeConnection();
     }
 }
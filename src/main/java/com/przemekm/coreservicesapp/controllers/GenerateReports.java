@@ -1,6 +1,5 @@
 package com.przemekm.coreservicesapp.controllers;
 
-import com.przemekm.coreservicesapp.database.H2Database;
 import com.przemekm.coreservicesapp.datamodel.ReportParams;
 import com.przemekm.coreservicesapp.datamodel.ReportType;
 import javafx.collections.FXCollections;
@@ -8,8 +7,12 @@ import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.ListView;
+import javafx.scene.control.SelectionMode;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * This class is a controller for the dialog window of the application,
@@ -25,9 +28,11 @@ public class GenerateReports {
     @FXML
     private ComboBox<ReportType> reportTypeBox;
     @FXML
-    private ComboBox<String> clientIdBox;
+    private ListView<String> clientIdBox;
     @FXML
     private CheckBox clientIdCheckBox;
+    @FXML
+    private CheckBox approximateCheckBox;
 
     private ObservableList<ReportType> reportList
             = FXCollections.observableArrayList();
@@ -41,16 +46,17 @@ public class GenerateReports {
      * Its purpose is to add listener to the
      * {@link #clientIdCheckBox}. If it is selected,
      * the {@link #clientIdBox} is set as enabled and
-     * the user is allowed to choose a {@code clientId}
-     * from the list.
+     * the user is allowed to choose one or more {@code clientId}
+     * values from the list.
      * <p>
      * The {@link #reportList} is populated with all items in
      * the {@link ReportType} enum class. The {@link #clientIdList}
-     * is populated with data retrieved from the database
-     * with use of {@link H2Database#getClientIdData()} method.
+     * is populated by the {@link #setClientIds(List)} method,
+     * so the dialog can be created once and reused.
      *
      * @see CheckBox
      * @see ComboBox
+     * @see ListView
      */
     public void initialize() {
         clientIdCheckBox.selectedProperty().addListener((observable, oldValue, newValue) -> {
@@ -63,26 +69,58 @@ public class GenerateReports {
             }
         });
 
+        clientIdBox.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+
+        /*
+            The approximate mode is available only for some of the reports.
+         */
+        reportTypeBox.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
+            approximateCheckBox.setDisable(newValue == null || !newValue.isApproximable());
+            if (approximateCheckBox.isDisable()) {
+                approximateCheckBox.setSelected(false);
+            }
+        });
+
         reportTypeBox.setItems(reportList);
         reportList.addAll(Arrays.asList(ReportType.values()));
 
         clientIdBox.setItems(clientIdList);
-        clientIdList.addAll(H2Database.getInstance().getClientIdData());
 
         reportTypeBox.getSelectionModel().selectFirst();
     }
 
+    /**
+     * This method replaces the client's IDs available in the {@link #clientIdBox}.
+     * The selected client's IDs, which are still available, stay selected.
+     *
+     * @param clientIds sorted list of client's IDs.
+     * @see com.przemekm.coreservicesapp.database.H2Database#getClientIdData()
+     */
+    public void setClientIds(final List<String> clientIds) {
+        List<String> selectedClientIds = new ArrayList<>(clientIdBox.getSelectionModel().getSelectedItems());
+        clientIdList.setAll(clientIds);
+        for (String clientId : selectedClientIds) {
+            clientIdBox.getSelectionModel().select(clientId);
+        }
+        if (clientIdCheckBox.isSelected() && clientIdBox.getSelectionModel().isEmpty()) {
+            clientIdBox.getSelectionModel().selectFirst();
+        }
+    }
+
     /**
      * This method creates a new {@link ReportParams} object
      * with the parameters selected in the {@link #reportTypeBox}
-     * and {@link #clientIdBox}.
+     * and {@link #clientIdBox}. All of the selected clients
+     * are included in a single report. If the {@link #approximateCheckBox}
+     * is selected, the report is computed approximately.
      *
      * @return {@link ReportParams} object with data needed for creation of the report.
      * @see ReportParams
      */
     public ReportParams getReportParams() {
-        return new ReportParams(
+        return ReportParams.forClients(
                 reportTypeBox.getSelectionModel().getSelectedItem(),
-                clientIdBox.getSelectionModel().getSelectedItem());
+                clientIdBox.getSelectionModel().getSelectedItems(),
+                approximateCheckBox.isSelected());
     }
 }
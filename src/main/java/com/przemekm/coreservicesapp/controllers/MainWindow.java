@@ -1,11 +1,22 @@
 package com.przemekm.coreservicesapp.controllers;
 
+import com.przemekm.coreservicesapp.database.BulkLoadResult;
 import com.przemekm.coreservicesapp.database.H2Database;
+import com.przemekm.coreservicesapp.database.ReportJob;
 import com.przemekm.coreservicesapp.datamodel.*;
+import com.przemekm.coreservicesapp.engine.ParallelReportEngine;
+import com.przemekm.coreservicesapp.engine.PartitionedOrderStore;
 
-import com.przemekm.coreservicesapp.utilities.CSVFileLoader;
+import com.przemekm.coreservicesapp.utilities.AutoDetectFileLoader;
 import com.przemekm.coreservicesapp.utilities.FileLoader;
-import com.przemekm.coreservicesapp.utilities.XMLFileLoader;
+import com.przemekm.coreservicesapp.utilities.FolderWatcher;
+import com.przemekm.coreservicesapp.utilities.HttpApiServer;
+import com.przemekm.coreservicesapp.utilities.OrderStreamIngester;
+import com.przemekm.coreservicesapp.utilities.ReportExporter;
+import com.przemekm.coreservicesapp.utilities.ReportStore;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -15,15 +26,17 @@ import javafx.geometry.Pos;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
@@ -31,24 +44,27 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import org.w3c.dom.Document;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.math.BigDecimal;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * This class is a controller for the main window of the application.
@@ -72,10 +88,53 @@ public class MainWindow {
     private Button generateButton;
     @FXML
     private Label tempLabel;
+    @FXML
+    private CheckBox fastPathCheckBox;
+    @FXML
+    private CheckBox parallelReportsCheckBox;
+    @FXML
+    private VBox runningReportsBox;
+    @FXML
+    private TextField clientIdFilterField;
+    @FXML
+    private TextField namePrefixFilterField;
+    @FXML
+    private TextField minPriceFilterField;
+    @FXML
+    private TextField maxPriceFilterField;
+    @FXML
+    private TextField minQuantityFilterField;
+    @FXML
+    private TextField maxQuantityFilterField;
+
+    /**
+     * System property which enables displaying the time of the startup
+     * and of opening the dialog windows in the console panel.
+     */
+    public static final String TIMINGS_PROPERTY = "coreservicesapp.timings";
 
     private static Text textToDisplay = new Text("");
 
+    /**
+     * This method displays a message in the console panel.
+     * <p>
+     * It can be called from any thread - the message is passed
+     * to the JavaFX application thread if needed. If the JavaFX toolkit
+     * isn't running (e.g. the loaders are used by the tests),
+     * the message is printed to the standard output instead.
+     *
+     * @param text the message to be displayed.
+     * @see Platform#runLater(Runnable)
+     */
     public static void setTextToDisplay(String text) {
+        if (!Platform.isFxApplicationThread()) {
+            try {
+                Platform.runLater(() -> setTextToDisplay(text));
+            } catch (IllegalStateException e) {
+                System.out.print(text);
+            }
+            return;
+        }
         textToDisplay.setText("");
         textToDisplay.setText(text);
     }
@@ -85,11 +144,90 @@ public class MainWindow {
     private VBox saveButtonBox = new VBox();
     private Button saveButton = new Button("SAVE");
 
-    private ObservableList<Order> loadedOrders
-            = FXCollections.observableArrayList();
+    /**
+     * This list loads the orders displayed in the {@link #ordersTable}
+     * from the database in pages, only when they're needed.
+     */
+    private PagedOrderList loadedOrders = new PagedOrderList();
+
+    /**
+     * This filter holds the conditions of the orders displayed in the {@link #ordersTable}.
+     */
+    private OrderFilter orderFilter = OrderFilter.none();
     private ObservableList<Report<?>> createdReports
             = FXCollections.observableArrayList();
 
+    /**
+     * This set contains the same reports as the {@link #createdReports} list,
+     * so the duplicates of a report are found without scanning the list.
+     */
+    private Set<Report<?>> createdReportsIndex = new HashSet<>();
+
+    /**
+     * This store keeps the data of the {@link #createdReports} within the memory budget.
+     */
+    private ReportStore reportStore = ReportStore.fromSystemProperties();
+
+    /**
+     * This dialog is created once, by the {@link #getReportsDialog()} method,
+     * and reused whenever the user generates a report.
+     */
+    private Dialog<ButtonType> reportsDialog;
+    private GenerateReports reportsDialogController;
+
+    /**
+     * This flag is set when new orders have been loaded, so the client's IDs
+     * displayed in the {@link #reportsDialog} have to be read again.
+     */
+    private boolean areClientIdsOutdated = true;
+
+    /**
+     * This set contains keys (path, size and modification time)
+     * of the files which have been loaded into the database.
+     */
+    private Set<String> loadedFiles = new HashSet<>();
+
+    /**
+     * This parameter holds the last primary key of the orders
+     * displayed in the {@link #ordersTable}.
+     */
+    private long lastLoadedId;
+
+    /**
+     * This parameter holds the last primary key of the orders loaded
+     * into the {@link #orderStore}. It is used only by the {@link #orderStoreLoader}.
+     */
+    private long storedId;
+
+    /**
+     * This executor loads the orders into the {@link #orderStore} in the background,
+     * one load at a time, so the FX thread never waits for the orders to be copied.
+     */
+    private final ExecutorService orderStoreLoader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-store-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private FolderWatcher folderWatcher;
+
+    private HttpApiServer httpServer;
+
+    private OrderStreamIngester streamIngester;
+
+    private ParallelReportEngine reportEngine = new ParallelReportEngine();
+
+    /**
+     * This list contains the reports, which are being generated in the background.
+     */
+    private List<ReportJob> runningJobs = new ArrayList<>();
+
+    /**
+     * This store holds a copy of the loaded orders outside of the Java heap,
+     * partitioned by client's ID. It is used by the {@link #reportEngine}.
+     */
+    private PartitionedOrderStore orderStore = PartitionedOrderStore.fromSystemProperties();
+
     /**
      * This parameter defines the width of a single column in {@link TableView}.
      *
@@ -121,8 +259,7 @@ public class MainWindow {
     /**
      * This method is called when {@link MainWindow} is being created.
      * <p>
-     * Its purpose is to call the {@link H2Database#getInstance()} method,
-     * set the parameters of {@link #ordersTable} columns
+     * Its purpose is to set the parameters of {@link #ordersTable} columns
      * and populate a {@link #containerBox} with specified elements.
      * <p>
      * A listener is added to the {@link ListView} of reports.
@@ -133,7 +270,6 @@ public class MainWindow {
      * is added to the {@link #saveButton}, which occurs when
      * the button is clicked - the method {@link #saveReport(Report)} is called.
      *
-     * @see H2Database#getInstance()
      * @see TableColumn
      * @see TableView
      * @see VBox
@@ -141,53 +277,51 @@ public class MainWindow {
      * @see #saveReport(Report)
      */
     public void initialize() {
-        //Calls the H2Database constructor.
-        H2Database.getInstance();
-
         /*
             Sets width of all the columns inside TableView.
-            Disables the ability to resize and sort columns.
-            Binds the field name of Order class with the specified column.
+            Disables the ability to resize columns.
+            Sets the name of the database column used to sort the column.
+            Binds the getter of Order class with the specified column.
          */
         TableColumn<Order, String> clientIdCol = new TableColumn<>("ClientId");
         clientIdCol.setPrefWidth(COLUMN_WIDTH);
         clientIdCol.setResizable(false);
-        clientIdCol.setSortable(false);
+        clientIdCol.setUserData("clientId");
         clientIdCol.setCellValueFactory(
-                new PropertyValueFactory<>("clientId"));
+                cellData -> getCellValue(cellData.getValue(), Order::getClientId));
 
         TableColumn<Order, Long> requestIdCol = new TableColumn<>("RequestId");
         requestIdCol.setPrefWidth(COLUMN_WIDTH);
         requestIdCol.setResizable(false);
-        requestIdCol.setSortable(false);
+        requestIdCol.setUserData("requestId");
         requestIdCol.setCellValueFactory(
-                new PropertyValueFactory<>("requestId"));
+                cellData -> getCellValue(cellData.getValue(), Order::getRequestId));
 
         TableColumn<Order, String> nameCol = new TableColumn<>("Name");
         nameCol.setPrefWidth(COLUMN_WIDTH);
         nameCol.setResizable(false);
-        nameCol.setSortable(false);
+        nameCol.setUserData("name");
         nameCol.setCellValueFactory(
-                new PropertyValueFactory<>("name"));
+                cellData -> getCellValue(cellData.getValue(), Order::getName));
 
         TableColumn<Order, Integer> quantityCol = new TableColumn<>("Quantity");
         quantityCol.setPrefWidth(COLUMN_WIDTH);
         quantityCol.setResizable(false);
-        quantityCol.setSortable(false);
+        quantityCol.setUserData("quantity");
         quantityCol.setCellValueFactory(
-                new PropertyValueFactory<>("quantity"));
+                cellData -> getCellValue(cellData.getValue(), Order::getQuantity));
 
         TableColumn<Order, BigDecimal> priceCol = new TableColumn<>("Price");
         priceCol.setPrefWidth(COLUMN_WIDTH);
         priceCol.setResizable(false);
-        priceCol.setSortable(false);
+        priceCol.setUserData("price");
         priceCol.setCellValueFactory(
-                new PropertyValueFactory<>("price"));
+                cellData -> getCellValue(cellData.getValue(), Order::getPrice));
 
         /*
-            Connects the TableView with ObservableList of loaded Orders,
+            Connects the TableView with the paged list of loaded Orders,
             enabling it to automatically update
-            whenever an item is added to the list.
+            whenever orders are appended to the database.
             Adds all of the created columns to the TableView.
             Connects the TableView with ObservableList of created Reports.
          */
@@ -200,6 +334,25 @@ public class MainWindow {
                 priceCol));
         reportsList.setItems(createdReports);
 
+        /*
+            Sorting is done by the database, instead of sorting
+            the items of the TableView in memory.
+         */
+        ordersTable.setSortPolicy(table -> {
+            applyQuery();
+            return true;
+        });
+
+        /*
+            The orders are copied to the in-memory store only
+            while the parallel reports are enabled.
+         */
+        parallelReportsCheckBox.selectedProperty().addListener((observable, wasSelected, isSelected) -> {
+            if (isSelected) {
+                updateOrderStore(lastLoadedId);
+            }
+        });
+
         /*
             Sets the font of TextArea where Reports are displayed.
             Disables editing of said TextArea.
@@ -249,79 +402,172 @@ public class MainWindow {
             text.setFont(new Font("Arial", CONSOLE_TEXT_SIZE));
             consoleArea.getChildren().add(text);
         });
+
+        /*
+            Starts the local HTTP API, if its port has been set.
+         */
+        Integer httpPort = Integer.getInteger(HttpApiServer.PORT_PROPERTY);
+        if (httpPort != null) {
+            httpServer = new HttpApiServer(httpPort,
+                    () -> Platform.runLater(this::loadDataFromDatabase));
+            try {
+                httpServer.start();
+                setTextToDisplay("HTTP API is listening on port "
+                        + httpServer.getPort()
+                        + "."
+                        + System.lineSeparator());
+            } catch (IOException e) {
+                System.out.println("Couldn't start the HTTP API!");
+                e.printStackTrace();
+                httpServer = null;
+            }
+        }
+
+        /*
+            Starts receiving orders from the TCP port and the standard input, if enabled.
+         */
+        Integer ingestPort = Integer.getInteger(OrderStreamIngester.PORT_PROPERTY);
+        boolean isStdinEnabled = Boolean.getBoolean(OrderStreamIngester.STDIN_PROPERTY);
+        if (ingestPort != null || isStdinEnabled) {
+            streamIngester = new OrderStreamIngester(
+                    () -> Platform.runLater(this::loadDataFromDatabase));
+            streamIngester.start();
+            if (isStdinEnabled) {
+                streamIngester.readStandardInput();
+            }
+            if (ingestPort != null) {
+                try {
+                    setTextToDisplay("Receiving orders on port "
+                            + streamIngester.listen(ingestPort)
+                            + "."
+                            + System.lineSeparator());
+                } catch (IOException e) {
+                    System.out.println("Couldn't listen for the orders!");
+                    e.printStackTrace();
+                }
+            }
+        }
     }
 
     /**
      * This method opens the {@link FileChooser} dialog
      * used for loading files with orders.
      * <p>
-     * The allowed file types are CSV and XML.
-     * User can choose multiple files at once.
-     * After loading the files, the {@link #loadDataFromDatabase()} method is called.
+     * The database and all of the loaded orders and reports
+     * are cleared before the selected files are loaded.
      *
-     * @see #loadDataFromDatabase()
+     * @see #loadOrders(boolean)
      */
     @FXML
     public void loadOrdersDialog() {
+        loadOrders(false);
+    }
+
+    /**
+     * This method opens the {@link FileChooser} dialog
+     * used for appending files with orders to the already loaded ones.
+     * <p>
+     * Files which have been loaded already (and have not changed since)
+     * are skipped. Only the newly added orders are pushed to the
+     * {@link #ordersTable} and the previously created reports are marked as outdated.
+     *
+     * @see #loadOrders(boolean)
+     */
+    @FXML
+    public void appendOrdersDialog() {
+        loadOrders(true);
+    }
+
+    /**
+     * This method opens the {@link FileChooser} dialog
+     * used for loading files with orders.
+     * <p>
+     * The allowed file types are CSV and XML, optionally compressed with GZIP
+     * or bundled in ZIP files. User can choose multiple files at once.
+     * After loading the files, the {@link #loadDataFromDatabase()} method is called.
+     *
+     * @param append {@code true} if the orders should be appended to the loaded ones,
+     *               {@code false} if the database should be cleared first.
+     * @see #loadDataFromDatabase()
+     */
+    private void loadOrders(final boolean append) {
         boolean isFileGood = false; //Used as a boolean to disabled/enable parts of the layout.
         FileChooser chooser = new FileChooser();
-        FileLoader fileLoader;
+        FileLoader fileLoader = new AutoDetectFileLoader();
 
         chooser.getExtensionFilters().add(
                 new FileChooser.
-                        ExtensionFilter("Allowed types", "*.csv", "*.xml"));
+                        ExtensionFilter("Allowed types", "*.csv", "*.xml", "*.gz", "*.zip"));
         List<File> files = chooser.
                 showOpenMultipleDialog(mainPane.getScene().getWindow());
         if (files != null) {
-            /*
-                Before loading new files, the database, console and
-                lists of orders and reports are cleared.
-             */
-            H2Database.getInstance().clearTable();
-            loadedOrders.clear();
-            createdReports.clear();
-            consoleArea.getChildren().clear();
+            if (!append) {
+                /*
+                    Before loading new files, the database, console and
+                    lists of orders and reports are cleared.
+                 */
+                stopFolderWatcher();
+                for (ReportJob job : new ArrayList<>(runningJobs)) {
+                    job.cancel();
+                }
+                H2Database.getInstance().clearTable();
+                lastLoadedId = 0;
+                loadedOrders.refresh(0);
+                orderStoreLoader.execute(() -> {
+                    orderStore.clear();
+                    storedId = 0;
+                });
+                createdReports.clear();
+                createdReportsIndex.clear();
+                areClientIdsOutdated = true;
+                reportStore.clear();
+                loadedFiles.clear();
+                consoleArea.getChildren().clear();
+            }
 
             /*
                 Iterates over all of the selected files.
              */
             for (File file : files) {
-                if (file.getName()
-                        .substring(file
-                                .getName()
-                                .lastIndexOf("."))
-                        .equals(".csv")) {
-                    /*
-                        loadCSV(File) returns boolean value, which indicates if
-                        the file with proper file type has or doesn't have data of orders.
-                     */
-                    fileLoader = new CSVFileLoader();
-                    isFileGood = fileLoader.load(file);
-                } else if (file.getName()
-                        .substring(file
-                                .getName()
-                                .lastIndexOf("."))
-                        .equals(".xml")) {
+                /*
+                    Files which have been loaded already are skipped.
+                 */
+                String fileKey = file.getAbsolutePath()
+                        + "|" + file.length()
+                        + "|" + file.lastModified();
+                if (loadedFiles.contains(fileKey)) {
+                    setTextToDisplay("File "
+                            + file.getName()
+                            + " has been loaded already - skipped!"
+                            + System.lineSeparator());
+                    continue;
+                }
+
+                if (fastPathCheckBox.isSelected()
+                        && file.getName().toLowerCase().endsWith(".csv")) {
                     /*
-                        loadXML(File) returns boolean value, which indicates if
-                        the file with proper file type has or doesn't have data of orders.
+                        Trusted CSV files are loaded directly by the database.
                      */
-                    fileLoader = new XMLFileLoader();
-                    isFileGood = fileLoader.load(file);
+                    isFileGood = bulkLoadCsv(file);
                 } else {
                     /*
-                        Sends a text message to the console.
+                        The format of the file (CSV, XML, or compressed with GZIP or ZIP)
+                        is detected based on its content. load(File) returns boolean value,
+                        which indicates if the file has or doesn't have data of orders.
                      */
-                    setTextToDisplay("Wrong file type of file "
-                            + file.getName()
-                            + System.lineSeparator());
+                    isFileGood = fileLoader.load(file);
+                }
+
+                if (isFileGood) {
+                    loadedFiles.add(fileKey);
                 }
 
                 /*
-                    If the isFileGood boolean is set as "true",
+                    If the isFileGood boolean is set as "true"
+                    or some orders have been loaded before,
                     elements of layout are set as enabled.
                  */
-                if (isFileGood) {
+                if (isFileGood || !loadedOrders.isEmpty()) {
                     ordersTable.setDisable(false);
                     reportsList.setDisable(false);
                     generateButton.setDisable(false);
@@ -336,61 +582,244 @@ public class MainWindow {
     }
 
     /**
-     * Creates a dialog window used for generating reports.
+     * This method loads a trusted CSV file with use of
+     * {@link H2Database#bulkLoadCsv(File)} method and displays
+     * the amount of loaded, rejected and duplicated rows.
+     *
+     * @param file the CSV file to be loaded.
+     * @return {@code true} if at least one row has been loaded.
+     * @see H2Database#bulkLoadCsv(File)
+     */
+    private boolean bulkLoadCsv(final File file) {
+        BulkLoadResult result = H2Database.getInstance().bulkLoadCsv(file);
+        setTextToDisplay("CSV file "
+                + file.getName()
+                + " loaded with fast path: "
+                + result.getLoadedRows() + " orders loaded, "
+                + result.getRejectedRows() + " rejected (see ORDERS_REJECTS table), "
+                + result.getDuplicateRows() + " duplicates skipped."
+                + System.lineSeparator());
+        return result.getLoadedRows() > 0;
+    }
+
+    /**
+     * This method opens the {@link DirectoryChooser} dialog
+     * used for choosing a directory to be watched for new files with orders.
+     * <p>
+     * The new orders are appended to the loaded ones as soon as
+     * they're saved in the database by the {@link FolderWatcher}.
+     *
+     * @see FolderWatcher
+     */
+    @FXML
+    public void watchFolderDialog() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        File directory = chooser.showDialog(mainPane.getScene().getWindow());
+
+        if (directory != null) {
+            stopFolderWatcher();
+            folderWatcher = new FolderWatcher(directory.toPath(),
+                    () -> Platform.runLater(this::loadDataFromDatabase));
+            folderWatcher.start();
+            setTextToDisplay("Watching directory "
+                    + directory
+                    + " for new orders."
+                    + System.lineSeparator());
+        }
+    }
+
+    /**
+     * This method stops the {@link HttpApiServer} and the {@link OrderStreamIngester},
+     * if they're running. It is called when the application is being closed.
+     */
+    public void stopServers() {
+        if (httpServer != null) {
+            httpServer.stop();
+            httpServer = null;
+        }
+        if (streamIngester != null) {
+            streamIngester.stop();
+            streamIngester = null;
+        }
+        reportStore.clear();
+    }
+
+    /**
+     * This method stops the {@link FolderWatcher}, if one is running.
+     */
+    private void stopFolderWatcher() {
+        if (folderWatcher != null) {
+            folderWatcher.stop();
+            setTextToDisplay("Stopped watching directory "
+                    + folderWatcher.getDirectory()
+                    + System.lineSeparator());
+            folderWatcher = null;
+        }
+    }
+
+    /**
+     * Opens a dialog window used for generating reports.
      * <p>
-     * When the user clicks the "OK" button, the {@link GenerateReports}
-     * controller class is instantiated and the {@link GenerateReports#getReportParams()} method
-     * is called. The received {@link ReportParams} are then
-     * passed into the {@link H2Database#getQueryData(ReportParams)} method,
-     * which generates the chosen report.
+     * The dialog is created once, with the {@link #getReportsDialog()} method.
+     * Before it's shown, only the list of client's IDs is refreshed,
+     * if new orders have been loaded since it was shown last time.
+     * When the user clicks the "OK" button, the {@link GenerateReports#getReportParams()} method
+     * of its controller is called. The received {@link ReportParams} are then
+     * passed into the {@link #submitReport(ReportParams)} method,
+     * which generates the chosen report in the background.
      *
      * @see Dialog
-     * @see FXMLLoader
      * @see Optional
      * @see GenerateReports
      * @see ReportParams
-     * @see H2Database#getQueryData(ReportParams)
+     * @see #submitReport(ReportParams)
      */
     @FXML
     public void generateReportsDialog() {
-        Dialog<ButtonType> dialog = new Dialog<>();
-        dialog.initOwner(mainPane.getScene().getWindow());
-        dialog.setTitle("Generate reports");
-        dialog.setHeaderText("Select which report you want to generate");
-
-        FXMLLoader fxmlLoader = new FXMLLoader();
-        fxmlLoader.setLocation(getClass().getResource("/generateReports.fxml"));
-        try {
-            dialog.getDialogPane().setContent(fxmlLoader.load());
-        } catch (IOException e) {
-            System.out.println("Couldn't load the dialog!");
-            e.printStackTrace();
+        long startTime = System.nanoTime();
+        Dialog<ButtonType> dialog = getReportsDialog();
+        if (areClientIdsOutdated) {
+            reportsDialogController.setClientIds(H2Database.getInstance().getClientIdData());
+            areClientIdsOutdated = false;
+        }
+        if (Boolean.getBoolean(TIMINGS_PROPERTY)) {
+            dialog.setOnShown(event -> setTextToDisplay("Dialog opened in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)
+                    + " ms."
+                    + System.lineSeparator()));
         }
-        dialog.getDialogPane().getButtonTypes().add(ButtonType.OK);
-        dialog.getDialogPane().getButtonTypes().add(ButtonType.CANCEL);
 
+        dialog.setResult(null);
         Optional<ButtonType> clickResult = dialog.showAndWait();
 
         if (clickResult.isPresent() && clickResult.get() == ButtonType.OK) {
-            GenerateReports generateReports = fxmlLoader.getController();
-            ReportParams reportParams = generateReports.getReportParams();
-            Report<?> report = H2Database.getInstance()
-                    .getQueryData(reportParams);
+            submitReport(reportsDialogController.getReportParams());
+        }
+    }
 
-            /*
-                If a chosen report has been created already, a message is displayed.
-             */
-            if (!createdReports.contains(report)) {
-                createdReports.add(report);
+    /**
+     * This method creates the dialog window used for generating reports
+     * from the {@code generateReports.fxml} file, unless it has been created already.
+     * It is called after the main window is shown, so the dialog
+     * is ready before the user opens it.
+     *
+     * @return the dialog.
+     * @see FXMLLoader
+     */
+    public Dialog<ButtonType> getReportsDialog() {
+        if (reportsDialog == null) {
+            Dialog<ButtonType> dialog = new Dialog<>();
+            dialog.initOwner(mainPane.getScene().getWindow());
+            dialog.setTitle("Generate reports");
+            dialog.setHeaderText("Select which report you want to generate");
+
+            FXMLLoader fxmlLoader = new FXMLLoader();
+            fxmlLoader.setLocation(getClass().getResource("/generateReports.fxml"));
+            try {
+                dialog.getDialogPane().setContent(fxmlLoader.load());
+            } catch (IOException e) {
+                System.out.println("Couldn't load the dialog!");
+                e.printStackTrace();
+            }
+            dialog.getDialogPane().getButtonTypes().add(ButtonType.OK);
+            dialog.getDialogPane().getButtonTypes().add(ButtonType.CANCEL);
+            reportsDialogController = fxmlLoader.getController();
+            reportsDialog = dialog;
+        }
+        return reportsDialog;
+    }
+
+    /**
+     * This method starts generation of a report in the background.
+     * <p>
+     * While the report is generated, its name, progress and a button
+     * which cancels it are displayed in the {@link #runningReportsBox}.
+     * When the report is ready, it is added with {@link #addReport(Report)} method.
+     * Approximate and percentile reports are always computed by the database,
+     * which maintains the sketches used by them. The other reports are computed
+     * in memory only if the {@link #orderStore} holds all of the displayed orders,
+     * otherwise the database is used until the store is updated
+     * (or cleared, if some of the orders couldn't be stored).
+     *
+     * @param reportParams parameters of the report.
+     * @see H2Database#submitQuery(ReportParams, java.util.function.DoubleConsumer)
+     * @see ParallelReportEngine#submitQuery(PartitionedOrderStore, ReportParams)
+     */
+    private void submitReport(final ReportParams reportParams) {
+        String reportName = reportParams.getReportName();
+        ProgressBar progressBar = new ProgressBar(ProgressBar.INDETERMINATE_PROGRESS);
+        Button cancelButton = new Button("Cancel");
+        HBox jobBox = new HBox(5, new Label(reportName), progressBar, cancelButton);
+        jobBox.setAlignment(Pos.CENTER_LEFT);
+
+        ReportJob job;
+        if (parallelReportsCheckBox.isSelected()
+                && !reportParams.isSketched()
+                && !orderStore.isIncomplete()
+                && orderStore.getSnapshot().getVersion() == lastLoadedId) {
+            job = reportEngine.submitQuery(orderStore, reportParams);
+        } else {
+            job = H2Database.getInstance().submitQuery(reportParams,
+                    progress -> Platform.runLater(() -> progressBar.setProgress(progress)));
+        }
+        cancelButton.setOnAction(event -> job.cancel());
+        runningJobs.add(job);
+        runningReportsBox.getChildren().add(jobBox);
+
+        job.getResult().whenComplete((report, throwable) -> Platform.runLater(() -> {
+            runningJobs.remove(job);
+            runningReportsBox.getChildren().remove(jobBox);
+            if (job.isCancelled()) {
+                setTextToDisplay("Report \""
+                        + reportName
+                        + "\" has been cancelled!"
+                        + System.lineSeparator());
+            } else if (throwable != null) {
+                setTextToDisplay("Couldn't generate report \""
+                        + reportName
+                        + "\": "
+                        + throwable.getMessage()
+                        + System.lineSeparator());
             } else {
-                Alert alert = new Alert(Alert.AlertType.ERROR);
-                alert.getDialogPane().setMinHeight(Region.USE_PREF_SIZE);
-                alert.setTitle("Error");
-                alert.setContentText("Report \""
-                        + report.getReportName()
-                        + "\" has been created already!");
-                alert.showAndWait();
+                addReport(report);
+            }
+        }));
+    }
+
+    /**
+     * This method adds the generated report to the {@link #createdReports} list.
+     *
+     * @param report the generated report.
+     */
+    private void addReport(final Report<?> report) {
+        /*
+            Outdated reports with the same name are replaced by the new one.
+         */
+        createdReports.removeIf(createdReport -> {
+            if (createdReport.isOutdated()
+                    && createdReport.getReportName().equals(report.getReportName())) {
+                createdReportsIndex.remove(createdReport);
+                reportStore.remove(createdReport);
+                return true;
             }
+            return false;
+        });
+
+        /*
+            If a chosen report has been created already (with the same parameters
+            from the same version of the data), a message is displayed.
+         */
+        if (createdReportsIndex.add(report)) {
+            createdReports.add(report);
+            reportStore.add(report);
+        } else {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.getDialogPane().setMinHeight(Region.USE_PREF_SIZE);
+            alert.setTitle("Error");
+            alert.setContentText("Report \""
+                    + report.getReportName()
+                    + "\" has been created already!");
+            alert.showAndWait();
         }
     }
 
@@ -398,27 +827,27 @@ public class MainWindow {
      * Displays a report chosen from the {@link #reportsList}.
      * <p>
      * If the data in the {@code report} is an instance of {@link ArrayList}, then it's
-     * displayed as list of contained {@link Order} entities. Else, if the data in the
+     * displayed as list of contained {@link Order} or {@link ReportRow} entities. Else, if the data in the
      * {@code report} is an instance of {@link String}, it's displayed as
-     * a label and a single value.
+     * a label and a single value. Data spilled by the {@link #reportStore} is read back first.
      *
-     * @param selectedReport the report chosen by the user from the {@link #reportsList}.
+     * @param report the report chosen by the user from the {@link #reportsList}.
      * @see Order
      * @see Report
      */
-    private void displayReport(final Report<?> selectedReport) {
+    private void displayReport(final Report<?> report) {
+        Report<?> selectedReport = reportStore.load(report);
         reportDisplayArea.clear();
         if (selectedReport.getReportData() instanceof ArrayList<?>) {
-            @SuppressWarnings("unchecked")
-            List<Order> data = (ArrayList<Order>) selectedReport.getReportData();
-            reportDisplayArea.setText("Client_Id,Request_Id,Name,Quantity,Price"
+            List<?> data = (ArrayList<?>) selectedReport.getReportData();
+            reportDisplayArea.setText(ReportExporter.getListHeader(data)
                     + System.lineSeparator());
             for (int i = 0; i < data.size(); i++) {
-                Order order = data.get(i);
+                Object item = data.get(i);
                 if (i == (data.size() - 1)) {
-                    reportDisplayArea.appendText(order.toString());
+                    reportDisplayArea.appendText(item.toString());
                 } else {
-                    reportDisplayArea.appendText(order.toString()
+                    reportDisplayArea.appendText(item.toString()
                             + System.lineSeparator());
                 }
             }
@@ -456,30 +885,10 @@ public class MainWindow {
         File file = chooser.showSaveDialog(mainPane.getScene().getWindow());
 
         if (file != null) {
-            try (BufferedWriter fileWriter
-                         = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
-                if (selectedReport.getReportData() instanceof ArrayList<?>) {
-                    @SuppressWarnings("unchecked")
-                    List<Order> data = (ArrayList<Order>) selectedReport.getReportData();
-                    fileWriter.write("Client_Id,Request_Id,Name,Quantity,Price");
-                    fileWriter.newLine();
-                    for (int i = 0; i < data.size(); i++) {
-                        Order order = data.get(i);
-                        if (i == (data.size() - 1)) {
-                            fileWriter.write(order.toString());
-                        } else {
-                            fileWriter.write(order.toString());
-                            fileWriter.newLine();
-                        }
-                    }
-                } else if (selectedReport.getReportData() instanceof String) {
-                    String data = (String) selectedReport.getReportData();
-                    fileWriter.write(selectedReport.getReportName() + ":");
-                    fileWriter.newLine();
-                    fileWriter.write(data);
-                } else {
-                    System.out.println("Error: wrong data format!");
-                }
+            try {
+                ReportExporter.writeReport(reportStore.load(selectedReport), file.toPath());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error: wrong data format!");
             } catch (IOException e) {
                 System.out.println("Couldn't save the file!");
                 e.printStackTrace();
@@ -488,11 +897,205 @@ public class MainWindow {
     }
 
     /**
-     * This method loads all data from the database into the {@link #loadedOrders} list.
+     * This method opens the {@link DirectoryChooser} dialog used for choosing
+     * a directory, where every report of every client is exported by {@link ReportExporter}.
+     * <p>
+     * The export runs in the background, while its progress and a button
+     * which cancels it are displayed in the {@link #runningReportsBox}.
+     * When it's finished, the amount of exported files and the throughput are displayed.
+     *
+     * @see ReportExporter
+     */
+    @FXML
+    public void exportReportsDialog() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        File directory = chooser.showDialog(mainPane.getScene().getWindow());
+        if (directory == null) {
+            return;
+        }
+
+        ProgressBar progressBar = new ProgressBar(ProgressBar.INDETERMINATE_PROGRESS);
+        Button cancelButton = new Button("Cancel");
+        HBox jobBox = new HBox(5, new Label("Export to " + directory.getName()), progressBar, cancelButton);
+        jobBox.setAlignment(Pos.CENTER_LEFT);
+        ReportExporter exporter = new ReportExporter(directory.toPath(),
+                progress -> Platform.runLater(() -> progressBar.setProgress(progress)));
+        cancelButton.setOnAction(event -> exporter.cancel());
+        runningReportsBox.getChildren().add(jobBox);
+
+        Thread exportThread = new Thread(() -> {
+            try {
+                exporter.export();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Platform.runLater(() -> {
+                runningReportsBox.getChildren().remove(jobBox);
+                double seconds = Math.max(1, exporter.getElapsedMillis()) / 1000.0;
+                setTextToDisplay((exporter.isCancelled() ? "Export cancelled - " : "Export finished - ")
+                        + exporter.getExportedFiles() + " of " + exporter.getTotalFiles()
+                        + " reports exported to " + directory + ", "
+                        + exporter.getFailedFiles() + " failed, in "
+                        + String.format("%.1f s (%.1f reports/s, %.2f MB/s).",
+                        seconds,
+                        exporter.getExportedFiles() / seconds,
+                        exporter.getWrittenBytes() / seconds / (1024 * 1024))
+                        + System.lineSeparator());
+            });
+        }, "report-export");
+        exportThread.setDaemon(true);
+        exportThread.start();
+    }
+
+    /**
+     * This method reads the conditions typed into the filter fields
+     * and displays the matching orders in the {@link #ordersTable}.
+     * If any of the numbers is incorrect, the filter is not changed.
+     *
+     * @see #applyQuery()
+     */
+    @FXML
+    public void applyFilter() {
+        try {
+            orderFilter = new OrderFilter(
+                    getFilterText(clientIdFilterField),
+                    getFilterText(namePrefixFilterField),
+                    toBigDecimal(getFilterText(minPriceFilterField)),
+                    toBigDecimal(getFilterText(maxPriceFilterField)),
+                    toInteger(getFilterText(minQuantityFilterField)),
+                    toInteger(getFilterText(maxQuantityFilterField)));
+        } catch (NumberFormatException e) {
+            setTextToDisplay("Couldn't apply the filter - incorrect number!"
+                    + System.lineSeparator());
+            return;
+        }
+        applyQuery();
+    }
+
+    /**
+     * This method clears the filter fields
+     * and displays all of the orders in the {@link #ordersTable}.
      *
-     * @see H2Database#getAllData()
+     * @see #applyQuery()
+     */
+    @FXML
+    public void clearFilter() {
+        for (TextField field : Arrays.asList(clientIdFilterField,
+                namePrefixFilterField,
+                minPriceFilterField,
+                maxPriceFilterField,
+                minQuantityFilterField,
+                maxQuantityFilterField)) {
+            field.clear();
+        }
+        orderFilter = OrderFilter.none();
+        applyQuery();
+    }
+
+    /**
+     * This method passes the {@link #orderFilter} and the first column
+     * of the sort order of the {@link #ordersTable} to the {@link #loadedOrders} list,
+     * which retrieves the matching orders from the database.
+     *
+     * @see PagedOrderList#setQuery(OrderFilter, String, boolean)
+     */
+    private void applyQuery() {
+        String sortColumn = null;
+        boolean descending = false;
+        if (!ordersTable.getSortOrder().isEmpty()) {
+            TableColumn<Order, ?> column = ordersTable.getSortOrder().get(0);
+            sortColumn = (String) column.getUserData();
+            descending = column.getSortType() == TableColumn.SortType.DESCENDING;
+        }
+        loadedOrders.setQuery(orderFilter, sortColumn, descending);
+    }
+
+    private static String getFilterText(final TextField field) {
+        String text = field.getText().trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    private static BigDecimal toBigDecimal(final String text) {
+        return (text == null) ? null : new BigDecimal(text);
+    }
+
+    private static Integer toInteger(final String text) {
+        return (text == null) ? null : Integer.valueOf(text);
+    }
+
+    /**
+     * This method wraps a field of the order displayed in a cell of the {@link #ordersTable}.
+     *
+     * @param order the order, or {@code null} if there is no order in the row.
+     * @param getter getter of the field.
+     * @param <T> type of the field.
+     * @return {@link ObservableValue} of the field.
+     */
+    private static <T> ObservableValue<T> getCellValue(final Order order,
+                                                       final Function<Order, T> getter) {
+        return new ReadOnlyObjectWrapper<>((order == null) ? null : getter.apply(order));
+    }
+
+    /**
+     * This method extends the {@link #loadedOrders} list, which loads
+     * the displayed orders lazily, with the orders appended to the database
+     * after the {@link #lastLoadedId}. If the parallel reports are enabled,
+     * the new orders are copied to the {@link #orderStore} in the background.
+     * <p>
+     * If any new orders have been loaded, elements of layout are set as enabled
+     * and all of the {@link #createdReports} are marked as outdated.
+     *
+     * @see PagedOrderList#refresh(long)
+     * @see #updateOrderStore(long)
      */
     private void loadDataFromDatabase() {
-        loadedOrders.addAll(H2Database.getInstance().getAllData());
+        long lastId = H2Database.getInstance().getLastId();
+        if (lastId > lastLoadedId) {
+            lastLoadedId = lastId;
+            if (parallelReportsCheckBox.isSelected()) {
+                updateOrderStore(lastId);
+            }
+            areClientIdsOutdated = true;
+            loadedOrders.refresh(lastId);
+            for (Report<?> report : createdReports) {
+                report.setOutdated(true);
+            }
+            reportsList.refresh();
+            ordersTable.setDisable(false);
+            reportsList.setDisable(false);
+            generateButton.setDisable(false);
+        }
+    }
+
+    /**
+     * This method copies the orders saved after the orders of the
+     * {@link #orderStore} up to the specified primary key into the store
+     * and publishes them to the in-memory reports. The orders are copied
+     * by the {@link #orderStoreLoader} thread.
+     * <p>
+     * If some of the orders couldn't be stored, they aren't published
+     * and no more orders are copied, until the store is cleared.
+     *
+     * @param lastId the last primary key of the orders to be copied.
+     * @see H2Database#getDataInRange(long, long, java.util.function.Consumer)
+     * @see PartitionedOrderStore#publish(long)
+     */
+    private void updateOrderStore(final long lastId) {
+        orderStoreLoader.execute(() -> {
+            if (lastId <= storedId || orderStore.isIncomplete()) {
+                return;
+            }
+            try {
+                H2Database.getInstance().getDataInRange(storedId, lastId, orderStore::add);
+            } catch (IllegalStateException e) {
+                setTextToDisplay("Couldn't store orders for in-memory reports: "
+                        + e.getMessage()
+                        + " Reports will be generated by the database."
+                        + System.lineSeparator());
+                return;
+            }
+            orderStore.publish(lastId);
+            storedId = lastId;
+        });
     }
 }
@@ -0,0 +1,162 @@
+package com.przemekm.coreservicesapp.controllers;
+
+import com.przemekm.coreservicesapp.database.H2Database;
+import com.przemekm.coreservicesapp.database.OrderPage;
+import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.OrderFilter;
+import javafx.collections.ObservableListBase;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Observable list of orders, which loads the orders from
+ * the database in pages, when they're requested by the {@link javafx.scene.control.TableView}.
+ * <p>
+ * The filtering and sorting is done by the database, and the size of the list
+ * is the amount of the matching orders. The primary keys may have gaps
+ * (e.g. after a rolled back batch), so the rows are never mapped to the keys
+ * directly. Each page is retrieved after the last key of the previous page,
+ * if it is still in memory, or by skipping the preceding rows otherwise.
+ * At most {@link #MAX_PAGES} pages are kept in memory - the least recently
+ * used page is removed when a new one is loaded.
+ *
+ * @author Przemysław Motała
+ * @see H2Database#getDataPage(OrderFilter, String, boolean, OrderPage, long, int)
+ * @see H2Database#countData(OrderFilter)
+ */
+public class PagedOrderList extends ObservableListBase<Order> {
+    /**
+     * This parameter defines the amount of orders in a single page.
+     */
+    private static final int PAGE_SIZE = 500;
+
+    /**
+     * This parameter defines the maximal amount of pages kept in memory.
+     */
+    private static final int MAX_PAGES = 64;
+
+    private int size;
+    private long lastId;
+    private OrderFilter filter = OrderFilter.none();
+    private String sortColumn;
+    private boolean descending;
+
+    private final Map<Long, OrderPage> pages = new LinkedHashMap<Long, OrderPage>(MAX_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, OrderPage> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    /**
+     * This method returns the order at the specified row.
+     * The page containing the order is loaded from the database, if needed.
+     *
+     * @param index index of the row.
+     * @return the order, or {@code null} if there is no order in the row.
+     */
+    @Override
+    public Order get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        long pageNumber = index / PAGE_SIZE;
+        OrderPage page = pages.get(pageNumber);
+        if (page == null) {
+            page = H2Database.getInstance().getDataPage(filter,
+                    sortColumn,
+                    descending,
+                    pages.get(pageNumber - 1),
+                    pageNumber * PAGE_SIZE,
+                    PAGE_SIZE);
+            pages.put(pageNumber, page);
+        }
+        Order[] orders = page.getOrders();
+        int position = index % PAGE_SIZE;
+        return (position < orders.length) ? orders[position] : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * This method updates the list to the specified last primary key.
+     * <p>
+     * The orders are counted again. If the orders are neither filtered
+     * nor sorted and the list grows, the new orders follow the loaded ones,
+     * so only the added rows are reported to the listeners and only the
+     * last (incomplete) page is removed from memory. Otherwise,
+     * all of the pages are removed.
+     *
+     * @param lastId the highest primary key in the database.
+     * @see H2Database#getLastId()
+     */
+    public void refresh(final long lastId) {
+        long oldLastId = this.lastId;
+        this.lastId = lastId;
+        if (lastId == oldLastId) {
+            return;
+        }
+
+        if (!isQueried() && lastId > oldLastId) {
+            int oldSize = size;
+            int newSize = (int) H2Database.getInstance().countData(filter);
+            if (newSize <= oldSize) {
+                return;
+            }
+            beginChange();
+            pages.remove((long) (oldSize / PAGE_SIZE));
+            size = newSize;
+            nextAdd(oldSize, size);
+            endChange();
+        } else {
+            reload();
+        }
+    }
+
+    /**
+     * This method sets the conditions and the sort order of the orders
+     * and reloads the list.
+     *
+     * @param filter conditions of the orders.
+     * @param sortColumn one of the {@link H2Database#SORTABLE_COLUMNS}, or {@code null}.
+     * @param descending {@code true} if the orders should be sorted in descending order.
+     */
+    public void setQuery(final OrderFilter filter, final String sortColumn, final boolean descending) {
+        this.filter = filter;
+        this.sortColumn = sortColumn;
+        this.descending = descending;
+        reload();
+    }
+
+    /**
+     * This method removes all of the pages from memory
+     * and reports the change of all rows to the listeners.
+     */
+    private void reload() {
+        int oldSize = size;
+        pages.clear();
+        if (lastId == 0) {
+            size = 0;
+        } else {
+            size = (int) H2Database.getInstance().countData(filter);
+        }
+
+        beginChange();
+        if (oldSize > 0) {
+            nextRemove(0, Collections.nCopies(oldSize, null));
+        }
+        if (size > 0) {
+            nextAdd(0, size);
+        }
+        endChange();
+    }
+
+    private boolean isQueried() {
+        return sortColumn != null || !filter.isEmpty();
+    }
+}
@@ -0,0 +1,39 @@
+package com.przemekm.coreservicesapp.database;
+
+/**
+ * Class to hold the result of a bulk load of a CSV file.
+ *
+ * @author Przemysław Motała
+ * @see H2Database#bulkLoadCsv(java.io.File)
+ */
+public final class BulkLoadResult {
+    private final long loadedRows;
+    private final long rejectedRows;
+    private final long duplicateRows;
+
+    /**
+     * This constructor creates a {@link BulkLoadResult} object
+     * with the specified amounts of rows.
+     *
+     * @param loadedRows amount of rows saved in the {@code ORDERS} table.
+     * @param rejectedRows amount of rows saved in the {@code ORDERS_REJECTS} table.
+     * @param duplicateRows amount of rows skipped as duplicates.
+     */
+    public BulkLoadResult(final long loadedRows, final long rejectedRows, final long duplicateRows) {
+        this.loadedRows = loadedRows;
+        this.rejectedRows = rejectedRows;
+        this.duplicateRows = duplicateRows;
+    }
+
+    public long getLoadedRows() {
+        return loadedRows;
+    }
+
+    public long getRejectedRows() {
+        return rejectedRows;
+    }
+
+    public long getDuplicateRows() {
+        return duplicateRows;
+    }
+}
@@ -0,0 +1,75 @@
+package com.przemekm.coreservicesapp.database;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fixed-size pool of connections with the H2 database.
+ * <p>
+ * Each connection is a separate session, so queries executed
+ * by different threads don't wait for each other. Every connection
+ * has its own {@link StatementCache}, so the statements prepared
+ * by one report are reused by the next reports.
+ *
+ * @author Przemysław Motała
+ * @see H2Database#submitQuery(com.przemekm.coreservicesapp.datamodel.ReportParams, java.util.function.DoubleConsumer)
+ */
+final class ConnectionPool {
+    private final List<StatementCache> connections = new ArrayList<>();
+    private final BlockingQueue<StatementCache> idleConnections;
+
+    /**
+     * This constructor opens the specified amount of connections.
+     *
+     * @param url JDBC URL of the database.
+     * @param user username.
+     * @param password password.
+     * @param size amount of connections.
+     * @throws SQLException if a connection can't be opened.
+     */
+    ConnectionPool(final String url,
+                   final String user,
+                   final String password,
+                   final int size) throws SQLException {
+        idleConnections = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            StatementCache connection = new StatementCache(
+                    DriverManager.getConnection(url, user, password));
+            connections.add(connection);
+            idleConnections.add(connection);
+        }
+    }
+
+    /**
+     * This method takes an idle connection from the pool,
+     * waiting until one is released, if needed.
+     *
+     * @return the statement cache of the connection.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    StatementCache borrow() throws InterruptedException {
+        return idleConnections.take();
+    }
+
+    /**
+     * This method returns the connection to the pool.
+     *
+     * @param connection connection taken with {@link #borrow()}.
+     */
+    void release(final StatementCache connection) {
+        idleConnections.add(connection);
+    }
+
+    /**
+     * This method closes all of the connections of the pool.
+     */
+    void close() {
+        for (StatementCache connection : connections) {
+            connection.close();
+        }
+    }
+}
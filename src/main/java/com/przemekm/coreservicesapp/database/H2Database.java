@@ -1,51 +1,202 @@
 package com.przemekm.coreservicesapp.database;
 
 import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.OrderFilter;
+import com.przemekm.coreservicesapp.datamodel.OrderQuery;
 import com.przemekm.coreservicesapp.datamodel.Report;
 import com.przemekm.coreservicesapp.datamodel.ReportParams;
+import com.przemekm.coreservicesapp.datamodel.ReportRow;
 import com.przemekm.coreservicesapp.datamodel.ReportType;
+import com.przemekm.coreservicesapp.engine.DistinctCountSketches;
+import com.przemekm.coreservicesapp.engine.LongHashSet;
+import com.przemekm.coreservicesapp.engine.OrderDeduplicator;
+import com.przemekm.coreservicesapp.engine.PercentileSketches;
+import com.przemekm.coreservicesapp.engine.TDigest;
 
+import java.io.File;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.Connection;
 import java.sql.Statement;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 /**
  * Class to handle all H2 database connections and
  * queries executions.
+ * <p>
+ * The database is kept in H2's {@code nioMemFS} file system, which stores
+ * the pages of the tables in direct buffers, outside of the Java heap.
+ * Only the cache of recently used pages is kept on the heap, so the size
+ * of the heap and the garbage collection pauses don't grow with the amount
+ * of saved orders. The database still lives only as long as the application.
  *
  * @author Przemysław Motała
  */
 public final class H2Database {
-    private static H2Database instance = new H2Database();
     private static Connection connection;
 
+    /**
+     * This connection is used only to save the orders, so the transactions
+     * of the ingestion are isolated from the queries of the main {@link #connection}.
+     */
+    private Connection ingestConnection;
+
+    /**
+     * This parameter holds the highest primary key of the committed orders.
+     * The orders are committed by the {@link #ingestConnection} one transaction
+     * at a time, so all of the orders with lower keys are committed too.
+     */
+    private volatile long committedId;
+
     /*
         These parameters define driver, connection,
         username and password for the H2 database.
+        The nioMemFS database is kept in memory, but off the Java heap.
      */
     private static final String DB_DRIVER = "org.h2.Driver";
-    private static final String DB_CONNECTION = "jdbc:h2:mem:test";
+    private static final String DB_CONNECTION = "jdbc:h2:nioMemFS:orders;MULTI_THREADED=1";
     private static final String DB_USER = "";
     private static final String DB_PASSWORD = "";
 
+    /**
+     * This parameter defines the columns by which the orders can be sorted.
+     *
+     * @see #getDataPage(OrderFilter, String, boolean, OrderPage, long, int)
+     */
+    public static final Set<String> SORTABLE_COLUMNS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("clientId", "requestId", "name", "quantity", "price")));
+
+    /**
+     * System property defining the amount of reports,
+     * which can be generated at once.
+     */
+    public static final String REPORT_CONNECTIONS_PROPERTY = "coreservicesapp.report.connections";
+
+    /**
+     * System property defining the timeout (in seconds) of a report query.
+     */
+    public static final String REPORT_TIMEOUT_PROPERTY = "coreservicesapp.report.timeout";
+
+    private static final int DEFAULT_REPORT_CONNECTIONS = 4;
+    private static final String INSERT_ORDER = "INSERT INTO ORDERS "
+            + "(clientId, requestId, name, quantity, price) VALUES (?, ?, ?, ?, ?)";
+    private static final int DEFAULT_REPORT_TIMEOUT = 300;
+
+    /**
+     * This parameter defines how often (in rows) the progress
+     * of a report is passed to its {@link ReportJob}.
+     */
+    private static final int PROGRESS_INTERVAL = 10000;
+
+    /**
+     * This parameter defines the percentiles of the percentile reports.
+     */
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+    private static final String[] PERCENTILE_NAMES = {"Median", "90th percentile", "99th percentile"};
+
+    /**
+     * This parameter defines the name of the index used
+     * to verify possible duplicates in the database.
+     */
+    private static final String DEDUPLICATION_INDEX = "ORDERS_DEDUP_IDX";
+
+    /**
+     * These sketches estimate the amount of distinct request's IDs.
+     * They are updated whenever orders are saved in the database.
+     */
+    private final DistinctCountSketches requestIdSketches = new DistinctCountSketches();
+
+    /**
+     * These sketches estimate the percentiles of prices and quantities.
+     * They are updated whenever orders are saved in the database.
+     */
+    private final PercentileSketches percentileSketches = new PercentileSketches();
+
+    /**
+     * This deduplicator holds the fingerprints of all of the saved orders,
+     * if the {@link OrderDeduplicator.Scope#GLOBAL} scope has been chosen.
+     */
+    private final OrderDeduplicator globalDeduplicator;
+
+    /**
+     * This cache holds the statements prepared on the main {@link #connection}.
+     */
+    private final StatementCache statementCache;
+
+    /**
+     * This cache holds the statements prepared on the {@link #ingestConnection}.
+     */
+    private final StatementCache ingestStatementCache;
+    private ConnectionPool reportPool;
+    private ExecutorService reportExecutor;
+
+    /**
+     * This set contains the names of indexes, which have been created.
+     */
+    private final Set<String> indexedColumns = ConcurrentHashMap.newKeySet();
+
+    /**
+     * This class holds the singleton instance, which is created
+     * when the class is initialized - on the first {@link #getInstance()} call.
+     */
+    private static final class InstanceHolder {
+        private static final H2Database INSTANCE = new H2Database();
+    }
+
     /**
      * This method returns a singleton instance
-     * of the {@link H2Database} class.
+     * of the {@link H2Database} class. If the instance is being created
+     * by another thread, the method waits until it's created.
      *
      * @return instance of {@link H2Database} class.
+     * @see #initializeInBackground()
      */
     public static H2Database getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * This method starts creating the singleton instance in a new daemon thread,
+     * so the database is initialized while the window of the application is created.
+     *
+     * @return the future completed with the instance when it's created.
+     * @see #getInstance()
+     */
+    public static CompletableFuture<H2Database> initializeInBackground() {
+        CompletableFuture<H2Database> instance = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                instance.complete(getInstance());
+            } catch (Throwable e) {
+                instance.completeExceptionally(e);
+                throw e;
+            }
+        }, "database-init");
+        thread.setDaemon(true);
+        thread.start();
         return instance;
     }
 
     /**
-     * This constructor creates a connection with H2 database
-     * via {@link #getConnection()} method  call and constructs
+     * This constructor creates the main connection and the ingestion connection
+     * with H2 database via {@link #getConnection()} method  call and constructs
      * an empty data table with use of {@link #createTable()} method.
      *
      * @see #getConnection()
@@ -53,7 +204,16 @@ public final class H2Database {
      */
     private H2Database() {
         connection = getConnection();
+        ingestConnection = getConnection();
+        statementCache = new StatementCache(connection);
+        ingestStatementCache = new StatementCache(ingestConnection);
         createTable();
+        if (OrderDeduplicator.getScope() == OrderDeduplicator.Scope.GLOBAL) {
+            globalDeduplicator = OrderDeduplicator.fromSystemProperties();
+            globalDeduplicator.startAfter(0);
+        } else {
+            globalDeduplicator = null;
+        }
     }
 
     /**
@@ -61,9 +221,13 @@ public final class H2Database {
      * with five specified columns and an auto-incrementing
      * primary key column. Each column represents one
      * field from the {@link Order} class.
+     * <p>
+     * The {@code ORDERS_OFFSETS} table holds the committed byte offsets
+     * of the loaded files, which are saved together with the orders.
      *
      * @see Order
      * @see Statement#execute(String)
+     * @see #saveData(List, OrderDeduplicator, String, long)
      */
     private void createTable() {
         Statement statement;
@@ -77,6 +241,9 @@ public final class H2Database {
                     + "name VARCHAR(255), "
                     + "quantity INT, "
                     + "price DECIMAL(12,2))");
+            statement.execute("CREATE TABLE ORDERS_OFFSETS"
+                    + "(source VARCHAR PRIMARY KEY, "
+                    + "committedOffset BIGINT)");
             statement.close();
         } catch (SQLException e) {
             System.out.println("Couldn't execute the query!");
@@ -87,17 +254,26 @@ public final class H2Database {
     /**
      * This method truncates the table {@code ORDERS}
      * and restarts the primary key value with 1.
+     * The committed offsets of the loaded files are removed too.
      *
      * @see Statement#execute(String)
      */
-    public void clearTable() {
+    public synchronized void clearTable() {
         Statement statement;
 
         try {
             statement = connection.createStatement();
             statement.execute("TRUNCATE TABLE ORDERS");
             statement.execute("ALTER TABLE ORDERS ALTER COLUMN id RESTART WITH 1");
+            statement.execute("TRUNCATE TABLE ORDERS_OFFSETS");
             statement.close();
+            requestIdSketches.clear();
+            percentileSketches.clear();
+            if (globalDeduplicator != null) {
+                globalDeduplicator.clear();
+                globalDeduplicator.startAfter(0);
+            }
+            committedId = 0;
         } catch (SQLException e) {
             System.out.println("Couldn't execute the query!");
             e.printStackTrace();
@@ -110,33 +286,301 @@ public final class H2Database {
      *
      * @return {@link ArrayList} of all {@link Order}
      * items retrieved from the database.
+     * @see #getDataInRange(long, long)
+     */
+    public List<Order> getAllData() {
+        return getDataInRange(0, Long.MAX_VALUE);
+    }
+
+    /**
+     * This method retrieves data stored in the H2 database
+     * with the primary key greater than {@code fromId} and not greater
+     * than {@code toId}, and loads it into {@link ArrayList} of {@link Order} items.
+     * <p>
+     * It is used to load only the orders appended to
+     * the database after the last load.
+     *
+     * @param fromId the last primary key which was already loaded.
+     * @param toId the last primary key which should be loaded.
+     * @return {@link ArrayList} of {@link Order}
+     * items retrieved from the database.
      * @see ArrayList
      * @see Order
+     * @see #getLastId()
      */
-    public List<Order> getAllData() {
+    public List<Order> getDataInRange(final long fromId, final long toId) {
         List<Order> ordersList = new ArrayList<>();
-        Statement statement;
+        getDataInRange(fromId, toId, ordersList::add);
+        return ordersList;
+    }
 
-        try {
-            statement = connection.createStatement();
-            ResultSet resultSet = statement.executeQuery("SELECT * FROM ORDERS");
+    /**
+     * This method retrieves data stored in the H2 database
+     * with the primary key greater than {@code fromId} and not greater
+     * than {@code toId}, and passes each {@link Order} to the consumer,
+     * without keeping the orders in memory.
+     *
+     * @param fromId the last primary key which was already loaded.
+     * @param toId the last primary key which should be loaded.
+     * @param consumer the consumer of the retrieved orders.
+     * @see #getDataInRange(long, long)
+     */
+    public void getDataInRange(final long fromId, final long toId, final Consumer<Order> consumer) {
+        //The statement is closed even if the consumer throws an exception.
+        try (Statement statement = connection.createStatement()) {
+            ResultSet resultSet = statement.executeQuery("SELECT * FROM ORDERS WHERE id > "
+                    + fromId + " AND id <= " + toId + " ORDER BY id");
             Order order;
             while (resultSet.next()) {
-                order = new Order(
-                        resultSet.getString("clientId"),
-                        resultSet.getLong("requestId"),
-                        resultSet.getString("name"),
-                        resultSet.getInt("quantity"),
-                        resultSet.getBigDecimal("price"));
-                ordersList.add(order);
+                order = readOrder(resultSet);
+                consumer.accept(order);
             }
-            statement.close();
         } catch (SQLException e) {
             System.out.println("Couldn't execute the query!");
             e.printStackTrace();
         }
+    }
 
-        return ordersList;
+    /**
+     * This method counts the orders matching the specified {@link OrderFilter}.
+     *
+     * @param filter conditions of the orders.
+     * @return amount of the matching orders.
+     * @see #getDataPage(OrderFilter, String, boolean, OrderPage, long, int)
+     */
+    public long countData(final OrderFilter filter) {
+        List<Object> parameters = new ArrayList<>();
+        String query = "SELECT COUNT(*) FROM ORDERS" + getFilterCondition(filter, parameters);
+        long count = 0;
+
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            setParameters(statement, parameters);
+            ResultSet resultSet = statement.executeQuery();
+            if (resultSet.next()) {
+                count = resultSet.getLong(1);
+            }
+        } catch (SQLException e) {
+            System.out.println("Couldn't execute the query!");
+            e.printStackTrace();
+        }
+
+        return count;
+    }
+
+    /**
+     * This method retrieves a page of orders matching the specified
+     * {@link OrderFilter}, sorted by the specified column and the primary key.
+     * <p>
+     * An index on the sorted column in the requested direction (and on the
+     * client's ID, if the orders are filtered by it) is created before the
+     * first query, so H2 reads the rows in order of the index. If the previous
+     * page is given, the rows are retrieved after its last key, otherwise
+     * the preceding rows are skipped with {@code OFFSET}.
+     *
+     * @param filter conditions of the orders.
+     * @param sortColumn one of the {@link #SORTABLE_COLUMNS}, or {@code null} to sort by the primary key.
+     * @param descending {@code true} if the orders should be sorted in descending order.
+     * @param previous the previous page, or {@code null}.
+     * @param offset amount of rows preceding the page.
+     * @param pageSize maximal amount of rows in the page.
+     * @return {@link OrderPage} with array of {@link Order} items of the page.
+     * @throws IllegalArgumentException if the column can't be sorted.
+     * @see #countData(OrderFilter)
+     */
+    public OrderPage getDataPage(final OrderFilter filter,
+                                 final String sortColumn,
+                                 final boolean descending,
+                                 final OrderPage previous,
+                                 final long offset,
+                                 final int pageSize) {
+        if (sortColumn != null && !SORTABLE_COLUMNS.contains(sortColumn)) {
+            throw new IllegalArgumentException("Column " + sortColumn + " can't be sorted!");
+        }
+        if (filter.getClientId() != null) {
+            createIndex("clientId", false);
+        }
+
+        /*
+            If the orders of a single client are sorted by the primary key,
+            they're sorted by the client's ID too, which lets H2
+            read them from the index on the client's ID.
+         */
+        String orderColumn = (sortColumn == null && filter.getClientId() != null)
+                ? "clientId"
+                : sortColumn;
+        if (orderColumn != null) {
+            createIndex(orderColumn, descending);
+        }
+
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder query = new StringBuilder("SELECT * FROM ORDERS")
+                .append(getFilterCondition(filter, parameters));
+        String direction = descending ? " DESC" : "";
+        String comparison = descending ? " < ?" : " > ?";
+
+        if (previous != null) {
+            query.append(parameters.isEmpty() ? " WHERE " : " AND ");
+            if (orderColumn == null) {
+                query.append("id").append(comparison);
+            } else {
+                //The first condition lets H2 start the scan of the index at the last key.
+                query.append(orderColumn).append(descending ? " <= ?" : " >= ?")
+                        .append(" AND (").append(orderColumn).append(comparison)
+                        .append(" OR id").append(comparison).append(")");
+                parameters.add(previous.getLastSortValue());
+                parameters.add(previous.getLastSortValue());
+            }
+            parameters.add(previous.getLastId());
+        }
+
+        query.append(" ORDER BY ");
+        if (orderColumn != null) {
+            query.append(orderColumn).append(direction).append(", ");
+        }
+        query.append("id").append(direction).append(" LIMIT ").append(pageSize);
+        if (previous == null && offset > 0) {
+            query.append(" OFFSET ").append(offset);
+        }
+
+        List<Order> orders = new ArrayList<>(pageSize);
+        Object lastSortValue = null;
+        long lastId = 0;
+
+        try (PreparedStatement statement = connection.prepareStatement(query.toString())) {
+            setParameters(statement, parameters);
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                orders.add(readOrder(resultSet));
+                lastId = resultSet.getLong("id");
+                if (orderColumn != null) {
+                    lastSortValue = resultSet.getObject(orderColumn);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Couldn't execute the query!");
+            e.printStackTrace();
+        }
+
+        return new OrderPage(orders.toArray(new Order[0]), lastSortValue, lastId);
+    }
+
+    /**
+     * This method creates the {@code WHERE} clause of the specified {@link OrderFilter}.
+     *
+     * @param filter conditions of the orders.
+     * @param parameters list, to which the values of the parameters are added.
+     * @return the {@code WHERE} clause, or an empty {@link String} if there are no conditions.
+     */
+    private static String getFilterCondition(final OrderFilter filter, final List<Object> parameters) {
+        List<String> conditions = new ArrayList<>();
+
+        if (filter.getClientId() != null) {
+            conditions.add("clientId = ?");
+            parameters.add(filter.getClientId());
+        }
+        if (filter.getNamePrefix() != null) {
+            conditions.add("name LIKE ?");
+            parameters.add(filter.getNamePrefix()
+                    .replace("\\", "\\\\")
+                    .replace("%", "\\%")
+                    .replace("_", "\\_") + "%");
+        }
+        if (filter.getMinPrice() != null) {
+            conditions.add("price >= ?");
+            parameters.add(filter.getMinPrice());
+        }
+        if (filter.getMaxPrice() != null) {
+            conditions.add("price <= ?");
+            parameters.add(filter.getMaxPrice());
+        }
+        if (filter.getMinQuantity() != null) {
+            conditions.add("quantity >= ?");
+            parameters.add(filter.getMinQuantity());
+        }
+        if (filter.getMaxQuantity() != null) {
+            conditions.add("quantity <= ?");
+            parameters.add(filter.getMaxQuantity());
+        }
+
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private static void setParameters(final PreparedStatement statement,
+                                      final List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+    }
+
+    /**
+     * This method creates an index on the specified column
+     * and the primary key, if it doesn't exist yet.
+     * H2 reads an index in one direction only, so separate
+     * indexes are created for the descending order.
+     *
+     * @param column name of the column.
+     * @param descending {@code true} if the index should be sorted in descending order.
+     */
+    private void createIndex(final String column, final boolean descending) {
+        String indexName = getIndexName(column, descending);
+        if (indexedColumns.contains(indexName)) {
+            return;
+        }
+
+        String direction = descending ? " DESC" : "";
+        //The index is created between the transactions of the ingestion.
+        synchronized (this) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE INDEX IF NOT EXISTS " + indexName + " ON ORDERS("
+                        + column + direction + ", id" + direction + ")");
+                indexedColumns.add(indexName);
+            } catch (SQLException e) {
+                System.out.println("Couldn't create the index!");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * This method returns the name of the index created
+     * by {@link #createIndex(String, boolean)} method.
+     *
+     * @param column name of the column.
+     * @param descending {@code true} if the index is sorted in descending order.
+     * @return name of the index.
+     */
+    static String getIndexName(final String column, final boolean descending) {
+        return "ORDERS_" + column.toUpperCase() + (descending ? "_DESC_IDX" : "_IDX");
+    }
+
+    /**
+     * This method returns the highest primary key
+     * of the committed orders in the {@code ORDERS} table.
+     * <p>
+     * The orders with keys up to the returned one form a consistent
+     * snapshot of the table, which isn't changed by the ingestion
+     * of the following orders.
+     *
+     * @return the last primary key, or {@code 0} if the table is empty.
+     * @see #getDataInRange(long, long)
+     */
+    public long getLastId() {
+        return committedId;
+    }
+
+    /**
+     * This method updates the {@link #committedId} after
+     * a transaction of the {@link #ingestConnection} is committed.
+     *
+     * @throws SQLException if the query fails.
+     */
+    private void updateCommittedId() throws SQLException {
+        try (Statement statement = ingestConnection.createStatement()) {
+            ResultSet resultSet = statement.executeQuery("SELECT MAX(id) FROM ORDERS");
+            if (resultSet.next()) {
+                committedId = resultSet.getLong(1);
+            }
+        }
     }
 
     /**
@@ -152,12 +596,9 @@ public final class H2Database {
 
         try {
             statement = connection.createStatement();
-            ResultSet resultSet = statement.executeQuery("SELECT clientId FROM ORDERS");
+            ResultSet resultSet = statement.executeQuery("SELECT DISTINCT clientId FROM ORDERS ORDER BY clientId");
             while (resultSet.next()) {
-                String currClientId = resultSet.getString(("clientId"));
-                if (!list.contains(currClientId)) {
-                    list.add(resultSet.getString("clientId"));
-                }
+                list.add(resultSet.getString("clientId"));
             }
             statement.close();
         } catch (SQLException e) {
@@ -165,8 +606,6 @@ public final class H2Database {
             e.printStackTrace();
         }
 
-        Collections.sort(list);
-
         return list;
     }
 
@@ -175,60 +614,300 @@ public final class H2Database {
      * based on the specified {@link ReportParams}.
      *
      * @param reportParams an object containing parameters needed for creation of the database query.
-     * @return {@link Report} with the type of {@link ArrayList} of {@link Order} items, or
-     * {@link Report} with the type of {@link String} if the {@link ReportType} parameter is not
-     * equal to {@link ReportType#ORDERS_LIST}.
+     * @return {@link Report} with the type of {@link ArrayList} of {@link Order} items,
+     * {@link Report} with the type of {@link ArrayList} of {@link ReportRow} items if the
+     * {@link ReportType} is grouped, or {@link Report} with the type of {@link String} otherwise.
      * @see ReportParams
      * @see ReportType
      */
     public Report<?> getQueryData(final ReportParams reportParams) {
-        Report<?> report = new Report<>();
-        StringBuilder sqlQueryBuilder = new StringBuilder(reportParams.getReportType().getSqlQuery());
-        Statement statement;
-
         try {
-            statement = connection.createStatement();
-            if (!(reportParams.getClientId() == null)) {
-                sqlQueryBuilder.append(" WHERE clientId = '").append(reportParams.getClientId()).append("'");
+            synchronized (statementCache) {
+                return getQueryData(statementCache, reportParams, null);
             }
-            ResultSet resultSet = statement.executeQuery(sqlQueryBuilder.toString());
-            if (!(reportParams.getReportType() == ReportType.ORDERS_LIST)) {
-                Report<String> reportString = new Report<>();
-                resultSet.next();
-
-                reportString.setReportData(resultSet.getString(1));
-                report = reportString;
-            } else {
-                Report<List<Order>> reportList = new Report<>();
-                List<Order> ordersList = new ArrayList<>();
-                Order order;
-                while (resultSet.next()) {
-                    order = new Order(
-                            resultSet.getString("clientId"),
-                            resultSet.getLong("requestId"),
-                            resultSet.getString("name"),
-                            resultSet.getInt("quantity"),
-                            resultSet.getBigDecimal("price"));
-                    ordersList.add(order);
-                }
-                reportList.setReportData(ordersList);
-                report = reportList;
-            }
-            statement.close();
         } catch (SQLException e) {
             System.out.println("Couldn't execute the query!");
             e.printStackTrace();
         }
 
-        if (!(reportParams.getClientId() == null)) {
-            report.setReportName(reportParams.getReportType().getName() + " (clientId: " + reportParams.getClientId() + ")");
+        Report<?> report = new Report<>();
+        report.setReportName(reportParams.getReportName());
+        return report;
+    }
+
+    /**
+     * This method generates a report in the background, on one of the
+     * {@link #REPORT_CONNECTIONS_PROPERTY} connections of the report pool,
+     * so several reports can be generated at once.
+     * <p>
+     * The query of the report is cancelled by the database
+     * if it takes longer than {@link #REPORT_TIMEOUT_PROPERTY} seconds.
+     *
+     * @param reportParams an object containing parameters needed for creation of the database query.
+     * @param progressListener listener of the progress of the report, or {@code null}.
+     * @return {@link ReportJob} which can be used to wait for the report or to cancel it.
+     * @see #getQueryData(ReportParams)
+     */
+    public ReportJob submitQuery(final ReportParams reportParams, final DoubleConsumer progressListener) {
+        ReportJob job = new ReportJob(reportParams, progressListener);
+        getReportExecutor().execute(() -> runQuery(job));
+        return job;
+    }
+
+    /**
+     * This method executes the query of the {@link ReportJob}
+     * and completes its result, also when the report couldn't be generated.
+     *
+     * @param job the job.
+     */
+    private void runQuery(final ReportJob job) {
+        if (job.isCancelled()) {
+            return;
+        }
+
+        StatementCache reportConnection = null;
+        try {
+            reportConnection = getReportPool().borrow();
+            job.getResult().complete(getQueryData(reportConnection, job.getReportParams(), job));
+        } catch (SQLException e) {
+            //Exception of a cancelled query is expected.
+            if (!job.isCancelled()) {
+                job.getResult().completeExceptionally(e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.getResult().completeExceptionally(e);
+        } catch (RuntimeException e) {
+            job.getResult().completeExceptionally(e);
+        } finally {
+            if (reportConnection != null) {
+                reportPool.release(reportConnection);
+            }
+        }
+    }
+
+    /**
+     * This method retrieves data from the H2 database
+     * with use of the prepared statements of the specified {@link StatementCache}.
+     * <p>
+     * The {@link OrderQuery} of the report is compiled to SQL with parameters,
+     * so each shape of the query is prepared once per connection. If the orders
+     * are filtered by client's IDs or product's names, an index on the column
+     * is created first, so the query reads only the matching orders.
+     * <p>
+     * The queries read only the orders committed before the report was started
+     * (with the primary key up to the {@link #committedId}), so the report
+     * isn't affected by the orders saved in the meantime. The database
+     * doesn't lock the orders read by the queries, so the ingestion
+     * isn't blocked by the reports.
+     * <p>
+     * Approximate reports and percentile reports are computed from the
+     * {@link #requestIdSketches} and the {@link #percentileSketches},
+     * without executing any query.
+     * <p>
+     * If the report is generated by a {@link ReportJob}, the query is executed
+     * with the {@link #REPORT_TIMEOUT_PROPERTY} timeout and the orders
+     * of the {@link ReportType#ORDERS_LIST} report are counted first,
+     * so the progress of the job can be reported while they're retrieved.
+     *
+     * @param statementCache statement cache of the connection used to execute the queries.
+     * @param reportParams an object containing parameters needed for creation of the database query.
+     * @param job the job generating the report, or {@code null}.
+     * @return the generated {@link Report}.
+     * @throws SQLException if the query fails, is cancelled, or times out.
+     * @see SqlQueryCompiler
+     * @see #getQueryData(ReportParams)
+     */
+    private Report<?> getQueryData(final StatementCache statementCache,
+                                   final ReportParams reportParams,
+                                   final ReportJob job) throws SQLException {
+        Report<?> report;
+        if (reportParams.isSketched()) {
+            return getSketchedReport(reportParams);
+        }
+
+        OrderQuery query = reportParams.getQuery();
+        createIndexes(query);
+
+        //All of the queries of the report read the same snapshot of the orders.
+        long snapshotId = committedId;
+
+        long ordersAmount = 0;
+        if (job != null && query.isList()) {
+            List<Object> countParameters = new ArrayList<>();
+            PreparedStatement countStatement = statementCache.prepare(
+                    SqlQueryCompiler.compileCount(query, snapshotId, indexedColumns, countParameters));
+            ResultSet countResultSet = executeQuery(countStatement, countParameters, job);
+            countResultSet.next();
+            ordersAmount = countResultSet.getLong(1);
+        }
+
+        List<Object> parameters = new ArrayList<>();
+        PreparedStatement statement = statementCache.prepare(
+                SqlQueryCompiler.compile(query, snapshotId, indexedColumns, parameters));
+        ResultSet resultSet = executeQuery(statement, parameters, job);
+        if (query.isGrouped()) {
+            /*
+                Groups are aggregated by the database in one pass,
+                each row of the result set represents one group.
+             */
+            Report<List<ReportRow>> reportRows = new Report<>();
+            List<ReportRow> rowsList = new ArrayList<>();
+            String keyName = query.getGroupBy().getKeyName();
+            while (resultSet.next()) {
+                rowsList.add(new ReportRow(
+                        keyName,
+                        resultSet.getString(1),
+                        resultSet.getLong(2),
+                        resultSet.getLong(3),
+                        resultSet.getBigDecimal(4),
+                        resultSet.getBigDecimal(5)));
+            }
+            reportRows.setReportData(rowsList);
+            report = reportRows;
+        } else if (!query.isList()) {
+            Report<String> reportString = new Report<>();
+            resultSet.next();
+
+            reportString.setReportData(resultSet.getString(1));
+            report = reportString;
         } else {
-            report.setReportName(reportParams.getReportType().getName());
+            Report<List<Order>> reportList = new Report<>();
+            List<Order> ordersList = new ArrayList<>();
+            while (resultSet.next()) {
+                ordersList.add(readOrder(resultSet));
+                if (job != null && ordersList.size() % PROGRESS_INTERVAL == 0) {
+                    job.setProgress(Math.min(1, (double) ordersList.size() / ordersAmount));
+                }
+            }
+            reportList.setReportData(ordersList);
+            report = reportList;
         }
 
+        report.setReportName(reportParams.getReportName());
+        report.setReportParams(reportParams);
+        report.setDataVersion(snapshotId);
+
         return report;
     }
 
+    /**
+     * This method streams the orders of a list report to the consumer,
+     * without collecting them in memory.
+     * <p>
+     * The query is executed on one of the connections of the report pool
+     * with the {@link #REPORT_TIMEOUT_PROPERTY} timeout and reads the orders
+     * committed before it was started, as the queries of the other reports.
+     *
+     * @param reportParams parameters of a report returning a list of orders.
+     * @param consumer consumer called for each order, in the order of the primary keys.
+     * @throws SQLException if the query fails or times out.
+     * @throws InterruptedException if the thread is interrupted while waiting for a connection.
+     * @throws IllegalArgumentException if the report doesn't return a list of orders.
+     * @see #getQueryData(ReportParams)
+     */
+    public void streamQueryData(final ReportParams reportParams, final Consumer<Order> consumer)
+            throws SQLException, InterruptedException {
+        if (reportParams.isSketched() || !reportParams.getQuery().isList()) {
+            throw new IllegalArgumentException(reportParams.getReportName() + " isn't a list of orders!");
+        }
+        OrderQuery query = reportParams.getQuery();
+        createIndexes(query);
+
+        StatementCache reportConnection = getReportPool().borrow();
+        try {
+            List<Object> parameters = new ArrayList<>();
+            PreparedStatement statement = reportConnection.prepare(
+                    SqlQueryCompiler.compile(query, committedId, indexedColumns, parameters));
+            ResultSet resultSet = executeQuery(statement, parameters, new ReportJob(reportParams, null));
+            while (resultSet.next()) {
+                consumer.accept(readOrder(resultSet));
+            }
+            resultSet.close();
+        } finally {
+            reportPool.release(reportConnection);
+        }
+    }
+
+    /**
+     * This method creates the indexes on the columns filtered by the query.
+     *
+     * @param query the query.
+     */
+    private void createIndexes(final OrderQuery query) {
+        if (!query.getClientIds().isEmpty()) {
+            createIndex("clientId", false);
+        }
+        if (!query.getNames().isEmpty()) {
+            createIndex("name", false);
+        }
+    }
+
+    /**
+     * This method reads the order from the current row of the result set.
+     * The orders have been validated before they were saved, so they aren't validated again.
+     *
+     * @param resultSet the result set with the columns of the {@code ORDERS} table.
+     * @return the order.
+     * @throws SQLException if the columns couldn't be read.
+     */
+    private static Order readOrder(final ResultSet resultSet) throws SQLException {
+        return Order.ofTrustedData(
+                resultSet.getString("clientId"),
+                resultSet.getLong("requestId"),
+                resultSet.getString("name"),
+                resultSet.getInt("quantity"),
+                resultSet.getBigDecimal("price").movePointRight(2).longValueExact());
+    }
+
+    /**
+     * This method binds the parameters to the prepared statement and executes it.
+     *
+     * @param statement the prepared statement.
+     * @param parameters values of the parameters.
+     * @param job the job generating the report, or {@code null}.
+     * @return the result of the query.
+     * @throws SQLException if the query fails, is cancelled, or times out.
+     */
+    private static ResultSet executeQuery(final PreparedStatement statement,
+                                          final List<Object> parameters,
+                                          final ReportJob job) throws SQLException {
+        setParameters(statement, parameters);
+        if (job != null) {
+            statement.setQueryTimeout(Integer.getInteger(REPORT_TIMEOUT_PROPERTY, DEFAULT_REPORT_TIMEOUT));
+            job.setStatement(statement);
+            try {
+                return statement.executeQuery();
+            } finally {
+                job.clearStatement();
+            }
+        }
+        statement.setQueryTimeout(0);
+        return statement.executeQuery();
+    }
+
+    private synchronized ConnectionPool getReportPool() throws SQLException {
+        if (reportPool == null) {
+            reportPool = new ConnectionPool(DB_CONNECTION, DB_USER, DB_PASSWORD,
+                    Integer.getInteger(REPORT_CONNECTIONS_PROPERTY, DEFAULT_REPORT_CONNECTIONS));
+        }
+        return reportPool;
+    }
+
+    private synchronized ExecutorService getReportExecutor() {
+        if (reportExecutor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            reportExecutor = Executors.newFixedThreadPool(
+                    Integer.getInteger(REPORT_CONNECTIONS_PROPERTY, DEFAULT_REPORT_CONNECTIONS),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "report-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        return reportExecutor;
+    }
+
     /**
      * This method creates a connection with H2 database.
      *
@@ -254,28 +933,632 @@ public final class H2Database {
 
     /**
      * This method inserts the {@link Order} data
-     * into the {@code ORDERS} table of H2 database.
+     * into the {@code ORDERS} table of H2 database
+     * with the cached insert statement.
      *
      * @param order an order to be saved in the database.
      * @see Order
      */
-    public void saveData(final Order order) {
-        Statement statement;
+    public synchronized void saveData(final Order order) {
+        if (globalDeduplicator != null) {
+            saveData(Collections.singletonList(order), globalDeduplicator);
+            return;
+        }
 
         try {
-            statement = connection.createStatement();
-            statement.execute("INSERT INTO ORDERS "
-                    + "VALUES (default, '"
-                    + order.getClientId() + "', "
-                    + order.getRequestId() + ", '"
-                    + order.getName() + "', "
-                    + order.getQuantity() + ", "
-                    + order.getPrice() + ")");
-            statement.close();
+            PreparedStatement statement = ingestStatementCache.prepare(INSERT_ORDER);
+            setOrder(statement, order);
+            statement.executeUpdate();
+            requestIdSketches.add(order.getClientId(), order.requestIdAsLong());
+            percentileSketches.add(order.getClientId(), order.quantityAsInt(), order.getPrice());
+            updateCommittedId();
+        } catch (SQLException e) {
+            System.out.println("Couldn't execute the query!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * This method inserts a batch of {@link Order} items
+     * into the {@code ORDERS} table of H2 database.
+     * <p>
+     * Duplicates are skipped only if the {@link OrderDeduplicator.Scope#GLOBAL}
+     * scope has been chosen.
+     *
+     * @param orders orders to be saved in the database.
+     * @return {@code true} if the batch has been committed.
+     * @see #saveData(List, OrderDeduplicator)
+     */
+    public boolean saveData(final List<Order> orders) {
+        return saveData(orders, globalDeduplicator) >= 0;
+    }
+
+    /**
+     * This method inserts a batch of {@link Order} items
+     * into the {@code ORDERS} table of H2 database.
+     *
+     * @param orders orders to be saved in the database.
+     * @param deduplicator deduplicator of the scope of the orders, or {@code null}
+     *                     if duplicates shouldn't be skipped.
+     * @return amount of saved orders, or {@code -1} if the batch has been rolled back.
+     * @see #saveData(List, OrderDeduplicator, String, long)
+     */
+    public int saveData(final List<Order> orders, final OrderDeduplicator deduplicator) {
+        return saveData(orders, deduplicator, null, 0);
+    }
+
+    /**
+     * This method inserts a batch of {@link Order} items
+     * into the {@code ORDERS} table of H2 database.
+     * <p>
+     * All of the orders are inserted with one {@link PreparedStatement}
+     * batch and committed in a single transaction. If any of them
+     * can't be inserted, the whole batch is rolled back. The orders which
+     * duplicate the orders in the scope of the deduplicator (including the
+     * previous orders of the batch) are skipped before the batch is inserted,
+     * so they never take up primary keys.
+     * <p>
+     * If the source of the orders is given, its offset is saved in the
+     * {@code ORDERS_OFFSETS} table in the same transaction, so the offset
+     * is committed if and only if the orders are. The list of orders may be
+     * empty, if only the offset has moved.
+     *
+     * @param orders orders to be saved in the database.
+     * @param deduplicator deduplicator of the scope of the orders, or {@code null}
+     *                     if duplicates shouldn't be skipped.
+     * @param source the source of the orders, such as the path of a file, or {@code null}.
+     * @param offset the position in the source right after the orders.
+     * @return amount of saved orders, or {@code -1} if the batch has been rolled back.
+     * @see PreparedStatement#executeBatch()
+     * @see #newDeduplicator()
+     * @see #getCommittedOffset(String)
+     */
+    public synchronized int saveData(final List<Order> orders,
+                                     final OrderDeduplicator deduplicator,
+                                     final String source,
+                                     final long offset) {
+        int savedOrders = -1;
+
+        try {
+            prepareDeduplication(deduplicator);
+            ingestConnection.setAutoCommit(false);
+            PreparedStatement statement = ingestStatementCache.prepare(INSERT_ORDER);
+            try {
+                List<Order> uniqueOrders = selectUnique(orders, deduplicator);
+                for (Order order : uniqueOrders) {
+                    setOrder(statement, order);
+                    statement.addBatch();
+                }
+                if (!uniqueOrders.isEmpty()) {
+                    statement.executeBatch();
+                }
+                if (source != null) {
+                    mergeOffset(source, offset);
+                }
+                ingestConnection.commit();
+                savedOrders = uniqueOrders.size();
+                PercentileSketches batchSketches = new PercentileSketches();
+                for (Order order : uniqueOrders) {
+                    requestIdSketches.add(order.getClientId(), order.requestIdAsLong());
+                    batchSketches.add(order.getClientId(), order.quantityAsInt(), order.getPrice());
+                }
+                percentileSketches.merge(batchSketches);
+                if (deduplicator != null) {
+                    deduplicator.addDuplicates(orders.size() - savedOrders);
+                }
+                updateCommittedId();
+            } catch (SQLException e) {
+                //The statement is cached, so the orders left in its batch are removed.
+                statement.clearBatch();
+                ingestConnection.rollback();
+                rebuildDeduplicator(deduplicator);
+                throw e;
+            } finally {
+                ingestConnection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.out.println("Couldn't execute the query!");
+            e.printStackTrace();
+        }
+
+        return savedOrders;
+    }
+
+    private static void setOrder(final PreparedStatement statement, final Order order) throws SQLException {
+        statement.setString(1, order.getClientId());
+        statement.setLong(2, order.requestIdAsLong());
+        statement.setString(3, order.getName());
+        statement.setInt(4, order.quantityAsInt());
+        statement.setBigDecimal(5, order.getPrice());
+    }
+
+    /**
+     * This method returns the committed offset of the source,
+     * saved by {@link #saveData(List, OrderDeduplicator, String, long)}
+     * or {@link #saveCommittedOffset(String, long)}.
+     *
+     * @param source the source of the orders, such as the path of a file.
+     * @return the offset, or {@code -1} if no orders of the source have been committed.
+     */
+    public long getCommittedOffset(final String source) {
+        long offset = -1;
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT committedOffset FROM ORDERS_OFFSETS WHERE source = ?")) {
+            statement.setString(1, source);
+            ResultSet resultSet = statement.executeQuery();
+            if (resultSet.next()) {
+                offset = resultSet.getLong(1);
+            }
+        } catch (SQLException e) {
+            System.out.println("Couldn't execute the query!");
+            e.printStackTrace();
+        }
+
+        return offset;
+    }
+
+    /**
+     * This method saves the offset of the source, which has been loaded
+     * in several transactions, such as an XML file.
+     *
+     * @param source the source of the orders, such as the path of a file.
+     * @param offset the offset, e.g. the size of the loaded file.
+     * @see #getCommittedOffset(String)
+     */
+    public synchronized void saveCommittedOffset(final String source, final long offset) {
+        try {
+            mergeOffset(source, offset);
+        } catch (SQLException e) {
+            System.out.println("Couldn't execute the query!");
+            e.printStackTrace();
+        }
+    }
+
+    private void mergeOffset(final String source, final long offset) throws SQLException {
+        try (PreparedStatement statement = ingestConnection.prepareStatement(
+                "MERGE INTO ORDERS_OFFSETS KEY(source) VALUES (?, ?)")) {
+            statement.setString(1, source);
+            statement.setLong(2, offset);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * This method loads a trusted CSV file directly into the {@code ORDERS} table
+     * with use of H2's {@code CSVREAD} function, without creating {@link Order} objects.
+     * <p>
+     * The data is validated in SQL with the same rules as in {@link Order#validate(String[])}
+     * method - the leading zeros of the numbers are skipped before they're compared
+     * with the maximal values.
+     * The file is read once into the {@code ORDERS_STAGING} temporary table, together
+     * with the result of the validation, and the rows are split from there.
+     * Rows which are not valid are saved in the {@code ORDERS_REJECTS} table together
+     * with the name of the file and the number of the line. Both inserts are
+     * committed in a single transaction. The first line (CSV headers) is skipped.
+     * Duplicated orders are removed before the transaction is committed,
+     * as in the {@link #saveData(List, OrderDeduplicator)} method.
+     *
+     * @param file the CSV {@link File} to read from.
+     * @return the amount of loaded, rejected and duplicated rows.
+     * @see BulkLoadResult
+     */
+    public synchronized BulkLoadResult bulkLoadCsv(final File file) {
+        String csvRead = "(SELECT ROWNUM() lineNumber, * FROM CSVREAD('"
+                + file.getAbsolutePath().replace("'", "''")
+                + "', 'C1,C2,C3,C4,C5,C6', 'charset=UTF-8')) WHERE lineNumber > 1";
+        String isValid = "COALESCE(C1 REGEXP '^[a-zA-Z0-9ĄąĆćĘęŁłŃńÓóŚśŹźŻż]{1,6}$'"
+                + " AND C2 REGEXP '^[0-9]+$'"
+                + " AND (LENGTH(LTRIM(C2, '0')) < 19"
+                + " OR LENGTH(LTRIM(C2, '0')) = 19 AND LTRIM(C2, '0') <= '9223372036854775807')"
+                + " AND TRIM(C3) REGEXP '^[a-zA-Z0-9ĄąĆćĘęŁłŃńÓóŚśŹźŻż ]{1,255}$'"
+                + " AND C4 REGEXP '^[0-9]+$'"
+                + " AND (LENGTH(LTRIM(C4, '0')) < 10"
+                + " OR LENGTH(LTRIM(C4, '0')) = 10 AND LTRIM(C4, '0') <= '2147483647')"
+                + " AND C5 REGEXP '^0*[0-9]{1,10}\\.[0-9]{2}$'"
+                + " AND (C6 IS NULL OR C6 = ''), FALSE)";
+        long loadedRows = 0;
+        long rejectedRows = 0;
+        long duplicateRows = 0;
+        long lastId = getLastId();
+        OrderDeduplicator deduplicator = newDeduplicator();
+
+        try {
+            prepareDeduplication(deduplicator);
+            ingestConnection.setAutoCommit(false);
+            try (Statement statement = ingestConnection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS ORDERS_REJECTS"
+                        + "(id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, "
+                        + "fileName VARCHAR(255), "
+                        + "lineNumber BIGINT, "
+                        + "clientId VARCHAR, "
+                        + "requestId VARCHAR, "
+                        + "name VARCHAR, "
+                        + "quantity VARCHAR, "
+                        + "price VARCHAR)");
+                statement.execute("DROP TABLE IF EXISTS ORDERS_STAGING");
+                statement.execute("CREATE LOCAL TEMPORARY TABLE ORDERS_STAGING AS "
+                        + "SELECT lineNumber, C1, C2, C3, C4, C5, " + isValid + " isValid FROM " + csvRead);
+                loadedRows = statement.executeUpdate("INSERT INTO ORDERS "
+                        + "(clientId, requestId, name, quantity, price) "
+                        + "SELECT C1, CAST(C2 AS BIGINT), C3, CAST(C4 AS INT), CAST(C5 AS DECIMAL(12,2)) "
+                        + "FROM ORDERS_STAGING WHERE isValid ORDER BY lineNumber");
+                rejectedRows = statement.executeUpdate("INSERT INTO ORDERS_REJECTS "
+                        + "(fileName, lineNumber, clientId, requestId, name, quantity, price) "
+                        + "SELECT '" + file.getName().replace("'", "''") + "', lineNumber, C1, C2, C3, C4, C5 "
+                        + "FROM ORDERS_STAGING WHERE NOT isValid ORDER BY lineNumber");
+                duplicateRows = removeDuplicates(deduplicator, lastId).cardinality();
+                loadedRows -= duplicateRows;
+                ingestConnection.commit();
+                addToSketches(statement, lastId);
+                if (deduplicator != null) {
+                    deduplicator.addDuplicates(duplicateRows);
+                }
+                updateCommittedId();
+            } catch (SQLException e) {
+                ingestConnection.rollback();
+                rebuildDeduplicator(deduplicator);
+                loadedRows = 0;
+                rejectedRows = 0;
+                duplicateRows = 0;
+                throw e;
+            } finally {
+                ingestConnection.setAutoCommit(true);
+                //Dropping a table commits, so it's done once the transaction is over.
+                try (Statement statement = ingestConnection.createStatement()) {
+                    statement.execute("DROP TABLE IF EXISTS ORDERS_STAGING");
+                }
+            }
         } catch (SQLException e) {
             System.out.println("Couldn't execute the query!");
             e.printStackTrace();
         }
+
+        return new BulkLoadResult(loadedRows, rejectedRows, duplicateRows);
+    }
+
+    /**
+     * This method returns the deduplicator, which should be used to save
+     * the orders of a new file, as defined by the
+     * {@link OrderDeduplicator#SCOPE_PROPERTY} system property.
+     *
+     * @return a new deduplicator for the {@code FILE} scope, the shared one
+     * for the {@code GLOBAL} scope, or {@code null} if duplicates aren't skipped.
+     * @see #saveData(List, OrderDeduplicator)
+     */
+    public OrderDeduplicator newDeduplicator() {
+        switch (OrderDeduplicator.getScope()) {
+            case FILE:
+                return OrderDeduplicator.fromSystemProperties();
+            case GLOBAL:
+                return globalDeduplicator;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * This method creates the index used to verify the orders in the database,
+     * once the deduplicator can't classify all of them in memory.
+     * It has to be called outside of a transaction of the ingestion.
+     *
+     * @param deduplicator the deduplicator, or {@code null}.
+     * @throws SQLException if the index couldn't be created.
+     */
+    private void prepareDeduplication(final OrderDeduplicator deduplicator) throws SQLException {
+        if (deduplicator == null || !deduplicator.isOverflowing()
+                || indexedColumns.contains(DEDUPLICATION_INDEX)) {
+            return;
+        }
+        try (Statement statement = ingestConnection.createStatement()) {
+            statement.execute("CREATE INDEX IF NOT EXISTS " + DEDUPLICATION_INDEX
+                    + " ON ORDERS(requestId, clientId)");
+            indexedColumns.add(DEDUPLICATION_INDEX);
+        }
+    }
+
+    /**
+     * This method selects the orders of a batch, which don't duplicate the orders
+     * in the scope of the deduplicator or the previous orders of the batch.
+     * The fingerprints of the selected orders are added to the deduplicator.
+     * <p>
+     * Orders which the deduplicator can't classify in memory are compared
+     * field by field with the previous orders of the batch with the same
+     * fingerprint, and looked up in the {@code ORDERS} table, among the orders
+     * of its scope. Orders found in the table of fingerprints are skipped
+     * without comparing their fields, as described in {@link OrderDeduplicator}.
+     *
+     * @param orders orders of the batch.
+     * @param deduplicator the deduplicator, or {@code null} to keep all of the orders.
+     * @return the orders to be inserted, in the same order.
+     * @throws SQLException if the queries fail.
+     */
+    private List<Order> selectUnique(final List<Order> orders,
+                                     final OrderDeduplicator deduplicator) throws SQLException {
+        if (deduplicator == null) {
+            return orders;
+        }
+        deduplicator.startAfter(getLastId());
+        List<Order> uniqueOrders = new ArrayList<>(orders.size());
+        long[] uniqueFingerprints = new long[orders.size()];
+        LongHashSet batchFingerprints = new LongHashSet();
+
+        try (PreparedStatement verifyStatement = prepareVerifyStatement()) {
+            for (Order order : orders) {
+                BigDecimal price = order.getPrice();
+                long fingerprint = OrderDeduplicator.fingerprint(order.getClientId(),
+                        order.requestIdAsLong(), order.getName(), order.quantityAsInt(), price);
+
+                boolean isDuplicate;
+                switch (deduplicator.check(fingerprint)) {
+                    case DUPLICATE:
+                        isDuplicate = true;
+                        break;
+                    case UNKNOWN:
+                        isDuplicate = batchFingerprints.contains(fingerprint)
+                                && isInBatch(order, fingerprint, uniqueOrders, uniqueFingerprints)
+                                || isSaved(verifyStatement, order.getClientId(), order.requestIdAsLong(),
+                                order.getName(), order.quantityAsInt(), price,
+                                deduplicator.getFromId(), Long.MAX_VALUE);
+                        break;
+                    default:
+                        isDuplicate = false;
+                        break;
+                }
+
+                if (!isDuplicate) {
+                    deduplicator.add(fingerprint);
+                    batchFingerprints.add(fingerprint);
+                    uniqueFingerprints[uniqueOrders.size()] = fingerprint;
+                    uniqueOrders.add(order);
+                }
+            }
+        }
+        return uniqueOrders;
+    }
+
+    /**
+     * This method checks if the batch contains the same order, comparing the fields
+     * of the orders with the same fingerprint, so a collision of the fingerprints
+     * doesn't skip a distinct order.
+     *
+     * @param order the order.
+     * @param fingerprint fingerprint of the order.
+     * @param uniqueOrders the orders of the batch selected so far.
+     * @param uniqueFingerprints fingerprints of the selected orders.
+     * @return {@code true} if the order is in the batch.
+     */
+    private static boolean isInBatch(final Order order,
+                                     final long fingerprint,
+                                     final List<Order> uniqueOrders,
+                                     final long[] uniqueFingerprints) {
+        for (int i = 0; i < uniqueOrders.size(); i++) {
+            if (uniqueFingerprints[i] == fingerprint && order.equals(uniqueOrders.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method removes the uncommitted orders with the primary key greater
+     * than {@code fromId}, which duplicate the orders in the scope of the deduplicator
+     * or the previous orders of the same transaction. The fingerprints of the
+     * remaining orders are added to the deduplicator.
+     * <p>
+     * It is used by the {@link #bulkLoadCsv(File)} method, which inserts the rows
+     * before they can be compared. The primary keys of the removed rows aren't
+     * reused, so the keys of the {@code ORDERS} table may have gaps.
+     * <p>
+     * Orders which the deduplicator can't classify in memory are looked
+     * up in the {@code ORDERS} table, among the orders of its scope.
+     *
+     * @param deduplicator the deduplicator, or {@code null} to keep all of the orders.
+     * @param fromId the last primary key before the uncommitted orders.
+     * @return positions of the removed orders, counted from the first uncommitted order.
+     * @throws SQLException if the queries fail.
+     */
+    private BitSet removeDuplicates(final OrderDeduplicator deduplicator, final long fromId) throws SQLException {
+        BitSet duplicates = new BitSet();
+        if (deduplicator == null) {
+            return duplicates;
+        }
+        deduplicator.startAfter(fromId);
+
+        try (Statement statement = ingestConnection.createStatement();
+             PreparedStatement verifyStatement = prepareVerifyStatement();
+             PreparedStatement deleteStatement = ingestConnection.prepareStatement(
+                     "DELETE FROM ORDERS WHERE id = ?")) {
+            ResultSet resultSet = statement.executeQuery("SELECT id, clientId, requestId, name, quantity, price "
+                    + "FROM ORDERS WHERE id > " + fromId + " ORDER BY id");
+            int position = 0;
+            while (resultSet.next()) {
+                long id = resultSet.getLong(1);
+                String clientId = resultSet.getString(2);
+                long requestId = resultSet.getLong(3);
+                String name = resultSet.getString(4);
+                int quantity = resultSet.getInt(5);
+                BigDecimal price = resultSet.getBigDecimal(6);
+                long fingerprint = OrderDeduplicator.fingerprint(clientId, requestId, name, quantity, price);
+
+                boolean isDuplicate;
+                switch (deduplicator.check(fingerprint)) {
+                    case DUPLICATE:
+                        isDuplicate = true;
+                        break;
+                    case UNKNOWN:
+                        isDuplicate = isSaved(verifyStatement, clientId, requestId, name, quantity, price,
+                                deduplicator.getFromId(), id);
+                        break;
+                    default:
+                        isDuplicate = false;
+                        break;
+                }
+
+                if (isDuplicate) {
+                    duplicates.set(position);
+                    deleteStatement.setLong(1, id);
+                    deleteStatement.addBatch();
+                } else {
+                    deduplicator.add(fingerprint);
+                }
+                position++;
+            }
+            deleteStatement.executeBatch();
+        }
+        return duplicates;
+    }
+
+    private PreparedStatement prepareVerifyStatement() throws SQLException {
+        return ingestConnection.prepareStatement("SELECT 1 FROM ORDERS "
+                + "WHERE requestId = ? AND clientId = ? AND name = ? AND quantity = ? AND price = ? "
+                + "AND id > ? AND id < ? LIMIT 1");
+    }
+
+    /**
+     * This method checks if an equal order is saved in the {@code ORDERS} table
+     * with the primary key between {@code fromId} and {@code toId} (exclusive).
+     *
+     * @param verifyStatement statement created by {@link #prepareVerifyStatement()}.
+     * @param clientId client's ID.
+     * @param requestId request's ID.
+     * @param name name of the product.
+     * @param quantity quantity.
+     * @param price price.
+     * @param fromId the last primary key before the orders of the scope.
+     * @param toId the primary key after the compared orders.
+     * @return {@code true} if the order is saved.
+     * @throws SQLException if the query fails.
+     */
+    private static boolean isSaved(final PreparedStatement verifyStatement,
+                                   final String clientId,
+                                   final long requestId,
+                                   final String name,
+                                   final int quantity,
+                                   final BigDecimal price,
+                                   final long fromId,
+                                   final long toId) throws SQLException {
+        verifyStatement.setLong(1, requestId);
+        verifyStatement.setString(2, clientId);
+        verifyStatement.setString(3, name);
+        verifyStatement.setInt(4, quantity);
+        verifyStatement.setBigDecimal(5, price);
+        verifyStatement.setLong(6, fromId);
+        verifyStatement.setLong(7, toId);
+        try (ResultSet verifyResultSet = verifyStatement.executeQuery()) {
+            return verifyResultSet.next();
+        }
+    }
+
+    /**
+     * This method fills the deduplicator again with the committed orders of its scope,
+     * after the fingerprints of a rolled back transaction have been added to it.
+     *
+     * @param deduplicator the deduplicator, or {@code null}.
+     * @throws SQLException if the query fails.
+     */
+    private void rebuildDeduplicator(final OrderDeduplicator deduplicator) throws SQLException {
+        if (deduplicator == null) {
+            return;
+        }
+        long fromId = deduplicator.getFromId();
+        deduplicator.clear();
+        if (fromId < 0) {
+            return;
+        }
+        deduplicator.startAfter(fromId);
+
+        try (Statement statement = ingestConnection.createStatement()) {
+            ResultSet resultSet = statement.executeQuery("SELECT clientId, requestId, name, quantity, price "
+                    + "FROM ORDERS WHERE id > " + fromId);
+            while (resultSet.next()) {
+                deduplicator.add(OrderDeduplicator.fingerprint(resultSet.getString(1),
+                        resultSet.getLong(2),
+                        resultSet.getString(3),
+                        resultSet.getInt(4),
+                        resultSet.getBigDecimal(5)));
+            }
+        }
+    }
+
+    /**
+     * This method creates a report from the sketches maintained
+     * while the orders are saved. The sketches of the chosen clients
+     * are merged, so the time doesn't depend on the amount of orders.
+     *
+     * @param reportParams parameters of an approximate or percentile report.
+     * @return {@link Report} with the estimated value, or the list of
+     * estimated percentiles, as {@link String}.
+     * @see ReportParams#isSketched()
+     */
+    private Report<String> getSketchedReport(final ReportParams reportParams) {
+        Report<String> reportString = new Report<>();
+        /*
+            The sketches are updated after the commit, but before the committedId,
+            so they cover all of the orders up to the committedId
+            and possibly the orders of the batch which is being saved.
+         */
+        reportString.setDataVersion(committedId);
+        List<String> clientIds = reportParams.getClientIds();
+        switch (reportParams.getReportType()) {
+            case PRICE_PERCENTILES:
+                reportString.setReportData(getPercentiles(percentileSketches.getPrices(clientIds), 2));
+                break;
+            case QUANTITY_PERCENTILES:
+                reportString.setReportData(getPercentiles(percentileSketches.getQuantities(clientIds), 0));
+                break;
+            default:
+                reportString.setReportData(String.valueOf(requestIdSketches.estimate(clientIds)));
+                break;
+        }
+        reportString.setReportName(reportParams.getReportName());
+        reportString.setReportParams(reportParams);
+        return reportString;
+    }
+
+    /**
+     * This method formats the {@link #PERCENTILES} of a sketch.
+     *
+     * @param digest the sketch.
+     * @param scale amount of decimal places of the values.
+     * @return the percentiles, or {@code null} if the sketch is empty.
+     */
+    private static String getPercentiles(final TDigest digest, final int scale) {
+        if (digest.size() == 0) {
+            return null;
+        }
+        StringBuilder percentiles = new StringBuilder();
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            if (i > 0) {
+                percentiles.append(", ");
+            }
+            percentiles.append(PERCENTILE_NAMES[i])
+                    .append(": ")
+                    .append(BigDecimal.valueOf(digest.quantile(PERCENTILES[i]))
+                            .setScale(scale, RoundingMode.HALF_UP)
+                            .toPlainString());
+        }
+        return percentiles.toString();
+    }
+
+    /**
+     * This method adds the orders with the primary key greater
+     * than {@code fromId} to the {@link #requestIdSketches}
+     * and to the {@link #percentileSketches}.
+     *
+     * @param statement statement used to execute the query.
+     * @param fromId the last primary key which was already added.
+     * @throws SQLException if the query fails.
+     */
+    private void addToSketches(final Statement statement, final long fromId) throws SQLException {
+        ResultSet resultSet = statement.executeQuery("SELECT clientId, requestId, quantity, price "
+                + "FROM ORDERS WHERE id > " + fromId);
+        PercentileSketches batchSketches = new PercentileSketches();
+        while (resultSet.next()) {
+            requestIdSketches.add(resultSet.getString(1), resultSet.getLong(2));
+            batchSketches.add(resultSet.getString(1), resultSet.getInt(3), resultSet.getBigDecimal(4));
+        }
+        percentileSketches.merge(batchSketches);
     }
 
     /**
@@ -284,7 +1567,16 @@ public final class H2Database {
      * @see Connection
      */
     public void closeConnection() {
+        synchronized (this) {
+            if (reportExecutor != null) {
+                reportExecutor.shutdownNow();
+            }
+            if (reportPool != null) {
+                reportPool.close();
+            }
+        }
         try {
+            ingestConnection.close();
             connection.close();
         } catch (SQLException e) {
             System.out.println("Couldn't close the connection");
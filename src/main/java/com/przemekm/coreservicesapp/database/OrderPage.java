@@ -0,0 +1,44 @@
+package com.przemekm.coreservicesapp.database;
+
+import com.przemekm.coreservicesapp.datamodel.Order;
+
+/**
+ * Class to hold a page of orders retrieved from the database,
+ * together with the key of its last row.
+ * <p>
+ * The key is used to retrieve the next page without
+ * skipping the rows with {@code OFFSET}.
+ *
+ * @author Przemysław Motała
+ * @see H2Database#getDataPage(com.przemekm.coreservicesapp.datamodel.OrderFilter, String, boolean, OrderPage, long, int)
+ */
+public final class OrderPage {
+    private final Order[] orders;
+    private final Object lastSortValue;
+    private final long lastId;
+
+    /**
+     * This constructor creates an {@link OrderPage} object.
+     *
+     * @param orders orders of the page.
+     * @param lastSortValue value of the sorted column in the last row, or {@code null}.
+     * @param lastId primary key of the last row.
+     */
+    public OrderPage(final Order[] orders, final Object lastSortValue, final long lastId) {
+        this.orders = orders;
+        this.lastSortValue = lastSortValue;
+        this.lastId = lastId;
+    }
+
+    public Order[] getOrders() {
+        return orders;
+    }
+
+    public Object getLastSortValue() {
+        return lastSortValue;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+}
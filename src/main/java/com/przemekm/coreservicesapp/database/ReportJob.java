@@ -0,0 +1,112 @@
+package com.przemekm.coreservicesapp.database;
+
+import com.przemekm.coreservicesapp.datamodel.Report;
+import com.przemekm.coreservicesapp.datamodel.ReportParams;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Class representing a report generated in the background.
+ * <p>
+ * The generated report is passed to the {@link #getResult()} future.
+ * The job can be cancelled at any time - if its query is being executed,
+ * it is aborted with {@link Statement#cancel()}. The statements are cached
+ * by the connections and reused by the other jobs, so the statement is owned
+ * by the job only while its query is executed.
+ *
+ * @author Przemysław Motała
+ * @see H2Database#submitQuery(ReportParams, DoubleConsumer)
+ */
+public final class ReportJob {
+    private final ReportParams reportParams;
+    private final DoubleConsumer progressListener;
+    private final CompletableFuture<Report<?>> result = new CompletableFuture<>();
+    private Statement statement;
+
+    /**
+     * This constructor creates a {@link ReportJob} object.
+     *
+     * @param reportParams parameters of the report.
+     * @param progressListener listener called with the progress (from 0 to 1)
+     *                         of the job, or {@code null}. It is called
+     *                         by the thread generating the report.
+     */
+    public ReportJob(final ReportParams reportParams, final DoubleConsumer progressListener) {
+        this.reportParams = reportParams;
+        this.progressListener = progressListener;
+    }
+
+    public ReportParams getReportParams() {
+        return reportParams;
+    }
+
+    /**
+     * This method returns the future completed with the generated report,
+     * or with the exception thrown while generating it.
+     *
+     * @return the result of the job.
+     */
+    public CompletableFuture<Report<?>> getResult() {
+        return result;
+    }
+
+    public boolean isCancelled() {
+        return result.isCancelled();
+    }
+
+    /**
+     * This method cancels the job. If the query of the job
+     * is being executed, it is aborted by the database.
+     */
+    public void cancel() {
+        result.cancel(false);
+        cancelStatement();
+    }
+
+    /**
+     * This method sets the statement used to execute the query of the job.
+     * If the job has been cancelled already, the statement is cancelled immediately.
+     *
+     * @param statement the statement.
+     * @see #clearStatement()
+     */
+    synchronized void setStatement(final Statement statement) {
+        this.statement = statement;
+        if (isCancelled()) {
+            cancelStatement();
+        }
+    }
+
+    /**
+     * This method releases the statement after its query has been executed,
+     * so the statement isn't cancelled when it's used by another job.
+     */
+    synchronized void clearStatement() {
+        statement = null;
+    }
+
+    /**
+     * This method passes the progress of the job to the listener.
+     *
+     * @param progress the progress, from 0 to 1.
+     */
+    void setProgress(final double progress) {
+        if (progressListener != null) {
+            progressListener.accept(progress);
+        }
+    }
+
+    private synchronized void cancelStatement() {
+        if (statement != null) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                System.out.println("Couldn't cancel the query!");
+                e.printStackTrace();
+            }
+        }
+    }
+}
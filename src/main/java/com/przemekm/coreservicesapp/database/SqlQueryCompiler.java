@@ -0,0 +1,165 @@
+package com.przemekm.coreservicesapp.database;
+
+import com.przemekm.coreservicesapp.datamodel.OrderQuery;
+import com.przemekm.coreservicesapp.datamodel.OrderQuery.Aggregate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class used to compile an {@link OrderQuery} to SQL.
+ * <p>
+ * All of the filter values are passed as parameters, so the SQL depends only
+ * on the shape of the query, and queries of the same shape share one prepared
+ * statement. Sets of client's IDs and names are compiled to {@code IN} lists,
+ * which H2 resolves with index lookups.
+ * <p>
+ * Each query reads only the orders with the primary key up to the
+ * specified snapshot ID. If the orders are filtered by client's IDs or names
+ * and the index on the column exists, the index is chosen explicitly,
+ * as otherwise H2 would prefer the range of the primary key.
+ *
+ * @author Przemysław Motała
+ * @see StatementCache
+ */
+final class SqlQueryCompiler {
+    private SqlQueryCompiler() {
+    }
+
+    /**
+     * This method compiles the query to SQL.
+     *
+     * @param query the query.
+     * @param snapshotId the highest primary key of the orders read by the query.
+     * @param indexNames names of the indexes, which exist on the {@code ORDERS} table.
+     * @param parameters list, to which the values of the parameters are added.
+     * @return the SQL query.
+     */
+    static String compile(final OrderQuery query,
+                          final long snapshotId,
+                          final Set<String> indexNames,
+                          final List<Object> parameters) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        String from = compileFrom(query, indexNames);
+        String where = compileWhere(query, snapshotId, parameters);
+
+        if (query.isList()) {
+            sql.append("clientId, requestId, name, quantity, price")
+                    .append(from)
+                    .append(where)
+                    .append(" ORDER BY id");
+        } else if (!query.isGrouped()) {
+            sql.append(query.getAggregate().getSqlExpression())
+                    .append(from)
+                    .append(where);
+        } else {
+            String column = query.getGroupBy().getColumn();
+            sql.append(column);
+            for (Aggregate aggregate : Aggregate.values()) {
+                sql.append(", ").append(aggregate.getSqlExpression());
+            }
+            sql.append(from)
+                    .append(where)
+                    .append(" GROUP BY ").append(column)
+                    .append(" ORDER BY ");
+            if (query.getOrderBy() != null) {
+                sql.append(query.getOrderBy().getSqlExpression()).append(" DESC, ");
+            }
+            sql.append(column);
+            if (query.getLimit() > 0) {
+                sql.append(" LIMIT ").append(query.getLimit());
+            }
+        }
+
+        return sql.toString();
+    }
+
+    /**
+     * This method compiles a query counting the orders matching the filters of the query.
+     *
+     * @param query the query.
+     * @param snapshotId the highest primary key of the orders read by the query.
+     * @param indexNames names of the indexes, which exist on the {@code ORDERS} table.
+     * @param parameters list, to which the values of the parameters are added.
+     * @return the SQL query.
+     */
+    static String compileCount(final OrderQuery query,
+                               final long snapshotId,
+                               final Set<String> indexNames,
+                               final List<Object> parameters) {
+        return "SELECT COUNT(*)" + compileFrom(query, indexNames) + compileWhere(query, snapshotId, parameters);
+    }
+
+    /**
+     * This method compiles the {@code FROM} clause with the index
+     * of the first filtered column. If the index doesn't exist,
+     * the choice is left to the database.
+     *
+     * @param query the query.
+     * @param indexNames names of the indexes, which exist on the {@code ORDERS} table.
+     * @return the {@code FROM} clause.
+     */
+    private static String compileFrom(final OrderQuery query, final Set<String> indexNames) {
+        String column = null;
+        if (!query.getClientIds().isEmpty()) {
+            column = "clientId";
+        } else if (!query.getNames().isEmpty()) {
+            column = "name";
+        }
+        if (column != null && indexNames.contains(H2Database.getIndexName(column, false))) {
+            return " FROM ORDERS USE INDEX (" + H2Database.getIndexName(column, false) + ")";
+        }
+        return " FROM ORDERS";
+    }
+
+    /**
+     * This method compiles the filters of the query to the {@code WHERE} clause.
+     *
+     * @param query the query.
+     * @param snapshotId the highest primary key of the orders read by the query.
+     * @param parameters list, to which the values of the parameters are added.
+     * @return the {@code WHERE} clause.
+     */
+    private static String compileWhere(final OrderQuery query,
+                                       final long snapshotId,
+                                       final List<Object> parameters) {
+        List<String> conditions = new ArrayList<>();
+
+        addIn(conditions, parameters, "clientId", query.getClientIds());
+        addIn(conditions, parameters, "name", query.getNames());
+        addComparison(conditions, parameters, "requestId >= ?", query.getMinRequestId());
+        addComparison(conditions, parameters, "requestId <= ?", query.getMaxRequestId());
+        addComparison(conditions, parameters, "price >= ?", query.getMinPrice());
+        addComparison(conditions, parameters, "price <= ?", query.getMaxPrice());
+        addComparison(conditions, parameters, "quantity >= ?", query.getMinQuantity());
+        addComparison(conditions, parameters, "quantity <= ?", query.getMaxQuantity());
+        addComparison(conditions, parameters, "id <= ?", snapshotId);
+
+        return " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private static void addIn(final List<String> conditions,
+                              final List<Object> parameters,
+                              final String column,
+                              final Collection<String> values) {
+        if (values.size() == 1) {
+            conditions.add(column + " = ?");
+        } else if (values.size() > 1) {
+            conditions.add(column + " IN (" + String.join(", ", Collections.nCopies(values.size(), "?")) + ")");
+        }
+        parameters.addAll(values);
+    }
+
+    private static void addComparison(final List<String> conditions,
+                                      final List<Object> parameters,
+                                      final String condition,
+                                      final Object value) {
+        if (value != null) {
+            conditions.add(condition);
+            parameters.add(value);
+        }
+    }
+}
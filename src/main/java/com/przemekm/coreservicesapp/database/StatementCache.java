@@ -0,0 +1,104 @@
+package com.przemekm.coreservicesapp.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of prepared statements of a single connection.
+ * <p>
+ * Each SQL query is parsed and planned by the database only once,
+ * when it is prepared for the first time. Later executions of the
+ * query only bind new values of its parameters.
+ * <p>
+ * The filters of the reports produce a different query for each number
+ * of their values, so at most {@link #MAX_STATEMENTS} statements are cached.
+ * The least recently used statement is closed and removed from the cache
+ * when a new statement exceeds the limit.
+ * <p>
+ * The cache is not thread-safe - it should be used by one thread at a time,
+ * like the connection it belongs to.
+ *
+ * @author Przemysław Motała
+ * @see ConnectionPool
+ */
+final class StatementCache {
+    /**
+     * This parameter defines how many prepared statements
+     * are cached by a single connection.
+     */
+    static final int MAX_STATEMENTS = 64;
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements =
+            new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= MAX_STATEMENTS) {
+                        return false;
+                    }
+                    closeStatement(eldest.getValue());
+                    return true;
+                }
+            };
+
+    /**
+     * This constructor creates an empty {@link StatementCache}
+     * of the specified connection.
+     *
+     * @param connection the connection.
+     */
+    StatementCache(final Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * This method returns the prepared statement of the specified query,
+     * preparing it if it's not present in the cache yet.
+     * The statement is closed by the cache once it's the least recently
+     * used one and the limit of cached statements is exceeded.
+     *
+     * @param sql the SQL query with {@code ?} parameters.
+     * @return the prepared statement.
+     * @throws SQLException if the query can't be prepared.
+     */
+    PreparedStatement prepare(final String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    private static void closeStatement(final PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.out.println("Couldn't close the statement");
+            e.printStackTrace();
+        }
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * This method closes all of the cached statements and the connection.
+     */
+    void close() {
+        try {
+            for (PreparedStatement statement : statements.values()) {
+                statement.close();
+            }
+            statements.clear();
+            connection.close();
+        } catch (SQLException e) {
+            System.out.println("Couldn't close the connection");
+            e.printStackTrace();
+        }
+    }
+}
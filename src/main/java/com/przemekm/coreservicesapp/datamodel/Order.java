@@ -1,22 +1,53 @@
 package com.przemekm.coreservicesapp.datamodel;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
+import java.util.regex.Pattern;
 
 /**
  * Model class to hold order information.
+ * <p>
+ * Orders are immutable. The numbers are kept as primitives - the price
+ * as an amount of cents - and the hash is computed once, when the order
+ * is created, so reading an order with the primitive accessors
+ * ({@link #requestIdAsLong()}, {@link #quantityAsInt()} and {@link #priceInCents()})
+ * or formatting it with {@link #appendTo(Appendable)} doesn't create any objects.
+ * The getters of boxed values ({@link #getRequestId()}, {@link #getQuantity()}
+ * and {@link #getPrice()}) are adapters kept for {@link javafx.scene.control.TableView}
+ * and the callers which need the objects.
  *
  * @author Przemysław Motała
  */
 public final class Order {
-    private String clientId;
-    private long requestId;
-    private String name;
-    private int quantity;
-    private BigDecimal price;
+    /**
+     * This parameter defines the amount of bytes, other than the characters
+     * of the client's ID and name, which are written by {@link #appendTo(ByteBuffer)}
+     * (the numbers and the separators).
+     */
+    private static final int MAX_NUMBERS_LENGTH = 64;
+
+    /**
+     * These patterns define the format of the text fields and the price.
+     * The price format is the same as the one accepted by the bulk load of the database.
+     */
+    private static final Pattern CLIENT_ID_PATTERN = Pattern.compile("^[a-zA-Z0-9ĄąĆćĘęŁłŃńÓóŚśŹźŻż]{1,6}$");
+    private static final Pattern NAME_PATTERN = Pattern.compile("^[a-zA-Z0-9ĄąĆćĘęŁłŃńÓóŚśŹźŻż ]{1,255}$");
+    private static final Pattern PRICE_PATTERN = Pattern.compile("^0*[0-9]{1,10}\\.[0-9]{2}$");
+
+    private static final String MAX_LONG = Long.toString(Long.MAX_VALUE);
+    private static final String MAX_INT = Integer.toString(Integer.MAX_VALUE);
+
+    private final String clientId;
+    private final long requestId;
+    private final String name;
+    private final int quantity;
+    private final long priceInCents;
+    private final int hash;
 
     /**
      * This parameter specifies the list of parameters included in an order.
@@ -24,6 +55,15 @@ public final class Order {
     private static final List<String> PARAMS_LIST = new ArrayList<>(
             Arrays.asList("clientId", "requestId", "name", "quantity", "price"));
 
+    /**
+     * These parameters define the indexes of the parameters in {@link #PARAMS_LIST}.
+     */
+    private static final int CLIENT_ID = PARAMS_LIST.indexOf("clientId");
+    private static final int REQUEST_ID = PARAMS_LIST.indexOf("requestId");
+    private static final int NAME = PARAMS_LIST.indexOf("name");
+    private static final int QUANTITY = PARAMS_LIST.indexOf("quantity");
+    private static final int PRICE = PARAMS_LIST.indexOf("price");
+
     /**
      * This constructor creates {@link Order} object
      * with data provided as an array of {@link String} items.
@@ -32,18 +72,20 @@ public final class Order {
      * use of {@link #checkData(String[])} method.
      *
      * @param data array of order's parameters.
+     * @throws IllegalArgumentException if the data isn't valid.
      * @see #checkData(String[])
+     * @see #ofValidatedData(String[])
      */
     public Order(final String[] data) {
-        if (checkData(data)) {
-            clientId = data[PARAMS_LIST.indexOf("clientId")];
-            requestId = Long.parseLong(data[PARAMS_LIST.indexOf("requestId")]);
-            name = data[PARAMS_LIST.indexOf("name")];
-            quantity = Integer.parseInt(data[PARAMS_LIST.indexOf("quantity")]);
-            price = new BigDecimal(data[PARAMS_LIST.indexOf("price")]);
-        } else {
+        if (!checkData(data)) {
             throw new IllegalArgumentException("Arguments are not valid!");
         }
+        clientId = data[CLIENT_ID];
+        requestId = Long.parseLong(data[REQUEST_ID]);
+        name = data[NAME];
+        quantity = Integer.parseInt(data[QUANTITY]);
+        priceInCents = parseCents(data[PRICE]);
+        hash = computeHash();
     }
 
     /**
@@ -66,50 +108,193 @@ public final class Order {
                  final int quantity,
                  final BigDecimal price) {
 
-        if (checkData(new String[] {clientId,
+        if (!checkData(new String[] {clientId,
                 Long.toString(requestId),
                 name,
                 Integer.toString(quantity),
                 price.toString()}
                 )) {
-            this.clientId = clientId;
-            this.requestId = requestId;
-            this.name = name;
-            this.quantity = quantity;
-            this.price = price;
-        } else {
             throw new IllegalArgumentException("Arguments are not valid!");
         }
+        this.clientId = clientId;
+        this.requestId = requestId;
+        this.name = name;
+        this.quantity = quantity;
+        this.priceInCents = toCents(price);
+        this.hash = computeHash();
+    }
+
+    private Order(final String clientId,
+                  final long requestId,
+                  final String name,
+                  final int quantity,
+                  final long priceInCents) {
+        this.clientId = clientId;
+        this.requestId = requestId;
+        this.name = name;
+        this.quantity = quantity;
+        this.priceInCents = priceInCents;
+        this.hash = computeHash();
+    }
+
+    /**
+     * This method creates {@link Order} object without the validation
+     * of the data. It should be used only for the data which has been
+     * validated already, e.g. when orders are read from the database
+     * or from {@link com.przemekm.coreservicesapp.engine.OffHeapOrderStore}.
+     *
+     * @param clientId client's ID.
+     * @param requestId request's ID.
+     * @param name order's name.
+     * @param quantity order's quantity.
+     * @param priceInCents order's price, as an amount of cents.
+     * @return the created order.
+     */
+    public static Order ofTrustedData(final String clientId,
+                                      final long requestId,
+                                      final String name,
+                                      final int quantity,
+                                      final long priceInCents) {
+        return new Order(clientId, requestId, name, quantity, priceInCents);
+    }
+
+    /**
+     * This method creates {@link Order} object from the data which
+     * has been checked by the {@link #validate(String[])} method already,
+     * so the data isn't validated again.
+     *
+     * @param data array of order's parameters, for which
+     *             {@link #validate(String[])} returned a valid result.
+     * @return the created order.
+     * @see #validate(String[])
+     */
+    public static Order ofValidatedData(final String[] data) {
+        return new Order(data[CLIENT_ID],
+                Long.parseLong(data[REQUEST_ID]),
+                data[NAME],
+                Integer.parseInt(data[QUANTITY]),
+                parseCents(data[PRICE]));
+    }
+
+    /**
+     * This method returns the name of the order's parameter,
+     * as used in the CSV header and the XML tags.
+     *
+     * @param index index of the parameter in the loaded data.
+     * @return the name, e.g. {@code "clientId"}.
+     */
+    public static String getParamName(final int index) {
+        return PARAMS_LIST.get(index);
+    }
+
+    public static int getParamsAmount() {
+        return PARAMS_LIST.size();
     }
 
     public String getClientId() {
         return clientId;
     }
 
+    /**
+     * This method returns the request's ID as an object.
+     * Callers which don't need an object should use {@link #requestIdAsLong()}.
+     *
+     * @return the boxed request's ID.
+     */
     public Long getRequestId() {
         return requestId;
     }
 
+    public long requestIdAsLong() {
+        return requestId;
+    }
+
     public String getName() {
         return name;
     }
 
+    /**
+     * This method returns the quantity as an object.
+     * Callers which don't need an object should use {@link #quantityAsInt()}.
+     *
+     * @return the boxed quantity.
+     */
     public Integer getQuantity() {
         return quantity;
     }
 
+    public int quantityAsInt() {
+        return quantity;
+    }
+
+    /**
+     * This method returns the price as a new {@link BigDecimal} with two decimal places.
+     * Callers which don't need an object should use {@link #priceInCents()}.
+     *
+     * @return the price.
+     */
     public BigDecimal getPrice() {
-        return price;
+        return BigDecimal.valueOf(priceInCents, 2);
+    }
+
+    public long priceInCents() {
+        return priceInCents;
+    }
+
+    /**
+     * This method appends the order to the {@link Appendable} in CSV format
+     * (the same as the one returned by {@link #toString()}). The numbers are
+     * appended digit by digit, so no strings are created.
+     *
+     * @param appendable the destination, e.g. {@link StringBuilder} or {@link java.io.Writer}.
+     * @param <A> type of the destination.
+     * @return the destination.
+     * @throws IOException if the destination couldn't be written.
+     */
+    public <A extends Appendable> A appendTo(final A appendable) throws IOException {
+        appendable.append(clientId).append(',');
+        appendDigits(appendable, requestId, 1);
+        appendable.append(',').append(name).append(',');
+        appendDigits(appendable, quantity, 1);
+        appendable.append(',');
+        appendDigits(appendable, priceInCents / 100, 1);
+        appendable.append('.');
+        appendDigits(appendable, priceInCents % 100, 2);
+        return appendable;
+    }
+
+    /**
+     * This method writes the order to the buffer as UTF-8 encoded CSV line
+     * (without the line separator).
+     *
+     * @param buffer the buffer, with at least {@link #getMaxByteLength()} bytes remaining.
+     * @return the buffer.
+     * @throws java.nio.BufferOverflowException if the buffer doesn't have enough space.
+     * @see #appendTo(Appendable)
+     */
+    public ByteBuffer appendTo(final ByteBuffer buffer) {
+        try {
+            appendTo(new Utf8Appendable(buffer));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer;
+    }
+
+    /**
+     * This method returns the maximal amount of bytes
+     * written by the {@link #appendTo(ByteBuffer)} method.
+     *
+     * @return the amount of bytes.
+     */
+    public int getMaxByteLength() {
+        return 3 * (clientId.length() + name.length()) + MAX_NUMBERS_LENGTH;
     }
 
     /**
      * This method checks the validity of loaded data.
      * <p>
      * There are five elements included in an order, as specified in {@link #PARAMS_LIST}.
-     * Each of them is validated with a regular expression. The {@code requestId}, {@code quantity}
-     * and {@code price} values are checked with use of {@link #isStringLong(String)}, {@link #isStringInt(String)} and
-     * {@link #isStringBigDecimal(String)} methods to see if they can be parsed into the corresponding types.
-     * <p>
      * The data fields are validated as follows:
      * <pre>
      *  {@code clientId} - should be an alphanumeric {@link String} without spaces,
@@ -118,139 +303,243 @@ public final class Order {
      *  {@code name} - should be an alphanumeric {@link String} with spaces,
      *          not longer than 255 characters.
      *  {@code quantity} - should be a type of {@link Integer}.
-     *  {@code price} - should be a type of {@link BigDecimal} with double precision and total
-     *           number of digits equal to 12.
+     *  {@code price} - should be a type of {@link BigDecimal} with two decimal places
+     *           and no more than 10 digits before the point.
      * </pre>
+     * No exceptions are thrown or caught, and the returned results are shared instances,
+     * so checking data in a wrong format costs no more than checking proper data.
      *
      * @param data an array of type {@link String} which contains data of loaded order.
-     * @return {@code true} if the provided {@code data} is valid.
-     * @see #isStringLong(String)
-     * @see #isStringInt(String)
-     * @see #isStringBigDecimal(String)
+     * @return {@link ValidationResult#VALID}, or the result describing the first wrong field.
+     * @see ValidationResult
      */
-    private boolean checkData(final String[] data) {
-        if (data.length != PARAMS_LIST.size()) {
-            return false;
-        } else {
-            for (String paramName : PARAMS_LIST) {
-                if (data[PARAMS_LIST.indexOf(paramName)] == null) {
-                    return false;
-                }
+    public static ValidationResult validate(final String[] data) {
+        if (data == null || data.length != PARAMS_LIST.size()) {
+            return ValidationResult.of(ValidationResult.Code.WRONG_FIELDS_AMOUNT, -1);
+        }
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == null) {
+                return ValidationResult.of(ValidationResult.Code.MISSING_FIELD, i);
             }
+        }
 
-            if (data[PARAMS_LIST.indexOf("clientId")]
-                    .matches("^[a-zA-Z0-9ĄąĆćĘęŁłŃńÓóŚśŹźŻż]{1,6}$")
-                    && isStringLong(data[PARAMS_LIST.indexOf("requestId")])
-                    && data[PARAMS_LIST.indexOf("name")]
-                    .trim()
-                    .matches("^[a-zA-Z0-9ĄąĆćĘęŁłŃńÓóŚśŹźŻż ]{1,255}$")
-                    && isStringInt(data[PARAMS_LIST.indexOf("quantity")])
-                    && isStringBigDecimal(data[PARAMS_LIST.indexOf("price")])) {
-                return true;
-            }
+        if (!CLIENT_ID_PATTERN.matcher(data[CLIENT_ID]).matches()) {
+            return ValidationResult.of(ValidationResult.Code.WRONG_FORMAT, CLIENT_ID);
         }
-        return false;
+        ValidationResult result = checkNumber(data[REQUEST_ID], MAX_LONG, REQUEST_ID);
+        if (!result.isValid()) {
+            return result;
+        }
+        if (!NAME_PATTERN.matcher(data[NAME].trim()).matches()) {
+            return ValidationResult.of(ValidationResult.Code.WRONG_FORMAT, NAME);
+        }
+        result = checkNumber(data[QUANTITY], MAX_INT, QUANTITY);
+        if (!result.isValid()) {
+            return result;
+        }
+        if (!PRICE_PATTERN.matcher(data[PRICE]).matches()) {
+            return ValidationResult.of(ValidationResult.Code.WRONG_FORMAT, PRICE);
+        }
+        return ValidationResult.VALID;
+    }
+
+    /**
+     * This method checks the validity of loaded data.
+     *
+     * @param data an array of type {@link String} which contains data of loaded order.
+     * @return {@code true} if the provided {@code data} is valid.
+     * @see #validate(String[])
+     */
+    private static boolean checkData(final String[] data) {
+        return validate(data).isValid();
     }
 
     /**
-     * This method checks if a provided {@link String}
-     * can be parsed into a {@link Long} type.
+     * This method checks if a provided {@link String} holds a non-negative
+     * number not greater than the maximal value, without parsing it.
      *
      * @param string a value to be checked.
-     * @return {@code true} if a {@code string} is valid.
+     * @param maxValue the maximal value, e.g. {@link Long#MAX_VALUE} as a {@link String}.
+     * @param fieldIndex index of the checked field.
+     * @return {@link ValidationResult#VALID} if a {@code string} is valid.
      */
-    private boolean isStringLong(final String string) {
-        if (string.matches("^[0-9]+$")) {
-            try {
-                Long.parseLong(string);
-            } catch (NumberFormatException e) {
-                return false;
+    private static ValidationResult checkNumber(final String string,
+                                                final String maxValue,
+                                                final int fieldIndex) {
+        if (string.isEmpty()) {
+            return ValidationResult.of(ValidationResult.Code.WRONG_FORMAT, fieldIndex);
+        }
+        int firstDigit = string.length();
+        for (int i = 0; i < string.length(); i++) {
+            char character = string.charAt(i);
+            if (character < '0' || character > '9') {
+                return ValidationResult.of(ValidationResult.Code.WRONG_FORMAT, fieldIndex);
+            }
+            if (character != '0' && firstDigit == string.length()) {
+                firstDigit = i;
             }
-            return true;
         }
-        return false;
+
+        //The leading zeros are skipped, then the digits are compared with the maximal value.
+        int digits = string.length() - firstDigit;
+        if (digits < maxValue.length()) {
+            return ValidationResult.VALID;
+        }
+        if (digits > maxValue.length()) {
+            return ValidationResult.of(ValidationResult.Code.OUT_OF_RANGE, fieldIndex);
+        }
+        for (int i = 0; i < digits; i++) {
+            char character = string.charAt(firstDigit + i);
+            if (character != maxValue.charAt(i)) {
+                return character < maxValue.charAt(i)
+                        ? ValidationResult.VALID
+                        : ValidationResult.of(ValidationResult.Code.OUT_OF_RANGE, fieldIndex);
+            }
+        }
+        return ValidationResult.VALID;
     }
 
     /**
-     * This method checks if a provided {@link String}
-     * can be parsed into a {@link Integer} type.
+     * This method converts the price in the validated format into an amount of cents.
      *
-     * @param string a value to be checked.
-     * @return {@code true} if a {@code string} is valid.
+     * @param price price with two decimal places.
+     * @return the amount of cents.
      */
-    private boolean isStringInt(final String string) {
-        if (string.matches("^[0-9]+$")) {
-            try {
-                Integer.parseInt(string);
-            } catch (NumberFormatException e) {
-                return false;
+    private static long parseCents(final String price) {
+        long cents = 0;
+        for (int i = 0; i < price.length(); i++) {
+            char character = price.charAt(i);
+            if (character != '.') {
+                cents = cents * 10 + (character - '0');
             }
-            return true;
         }
-        return false;
+        return cents;
     }
 
     /**
-     * This method checks if a provided {@link String}
-     * can be parsed into a {@link BigDecimal} type.
+     * This method converts the price into an amount of cents.
      *
-     * @param string a value to be checked.
-     * @return {@code true} if a {@code string} is valid.
+     * @param price price with no more than two decimal places.
+     * @return the amount of cents.
+     * @throws IllegalArgumentException if the price has more decimal places.
      */
-    private boolean isStringBigDecimal(String string) {
-        /*
-            This part of code removes the leading zeros.
-         */
-        for (int i = 0; i < string.length(); i++) {
-            if (string.charAt(i) != '0') {
-                if ((string.charAt(i) == '.')
-                        && (i != 0)) {
-                    string = string.substring(i - 1);
-                    break;
-                } else {
-                    string = string.substring(i);
-                    break;
-                }
-            }
+    private static long toCents(final BigDecimal price) {
+        try {
+            return price.movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Arguments are not valid!");
         }
-        if (string.matches("^[0-9]{1,10}.[0-9]{2}$")) {
-            try {
-                new BigDecimal(string);
-            } catch (NumberFormatException e) {
-                return false;
-            }
-            return true;
+    }
+
+    private int computeHash() {
+        int result = clientId.hashCode();
+        result = 31 * result + Long.hashCode(requestId);
+        result = 31 * result + name.hashCode();
+        result = 31 * result + quantity;
+        return 31 * result + Long.hashCode(priceInCents);
+    }
+
+    /**
+     * This method appends the decimal digits of the value.
+     *
+     * @param appendable the destination.
+     * @param value the value.
+     * @param minDigits minimal amount of digits, padded with leading zeros.
+     * @throws IOException if the destination couldn't be written.
+     */
+    private static void appendDigits(final Appendable appendable,
+                                     final long value,
+                                     final int minDigits) throws IOException {
+        if (value < 0) {
+            appendable.append(Long.toString(value));
+            return;
+        }
+        long divisor = 1;
+        for (int digits = 1; digits < minDigits || value / divisor >= 10; digits++) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            appendable.append((char) ('0' + value / divisor % 10));
         }
-        return false;
     }
 
     @Override
     public String toString() {
-        return clientId
-                + "," + requestId
-                + "," + name
-                + "," + quantity
-                + "," + price;
+        try {
+            return appendTo(new StringBuilder(clientId.length() + name.length() + 40)).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @Override
     public boolean equals(final Object obj) {
-        if (obj == null) {
-            return false;
+        if (this == obj) {
+            return true;
         }
         if (obj instanceof Order) {
             Order otherOrder = (Order) obj;
-            return clientId.equals(otherOrder.clientId)
+            return hash == otherOrder.hash
                     && (requestId == otherOrder.requestId)
-                    && name.equals(otherOrder.name)
                     && (quantity == otherOrder.quantity)
-                    && price.equals(otherOrder.price);
+                    && (priceInCents == otherOrder.priceInCents)
+                    && clientId.equals(otherOrder.clientId)
+                    && name.equals(otherOrder.name);
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(clientId, requestId, name, quantity, price);
+        return hash;
+    }
+
+    /**
+     * Adapter encoding the appended characters as UTF-8 straight into a {@link ByteBuffer}.
+     */
+    private static final class Utf8Appendable implements Appendable {
+        private final ByteBuffer buffer;
+        private char highSurrogate;
+
+        private Utf8Appendable(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public Appendable append(final CharSequence text) {
+            return append(text, 0, text.length());
+        }
+
+        @Override
+        public Appendable append(final CharSequence text, final int start, final int end) {
+            for (int i = start; i < end; i++) {
+                append(text.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(final char character) {
+            if (character < 0x80) {
+                buffer.put((byte) character);
+            } else if (character < 0x800) {
+                buffer.put((byte) (0xC0 | character >> 6));
+                buffer.put((byte) (0x80 | character & 0x3F));
+            } else if (Character.isHighSurrogate(character)) {
+                highSurrogate = character;
+            } else if (Character.isLowSurrogate(character) && highSurrogate != 0) {
+                int codePoint = Character.toCodePoint(highSurrogate, character);
+                buffer.put((byte) (0xF0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+                highSurrogate = 0;
+            } else {
+                buffer.put((byte) (0xE0 | character >> 12));
+                buffer.put((byte) (0x80 | character >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | character & 0x3F));
+            }
+            return this;
+        }
     }
 }
@@ -0,0 +1,94 @@
+package com.przemekm.coreservicesapp.datamodel;
+
+import java.math.BigDecimal;
+
+/**
+ * Model class to hold conditions used to filter
+ * the orders displayed in the orders table.
+ * <p>
+ * Each condition is optional - a {@code null} value
+ * means that the orders are not filtered by the field.
+ *
+ * @author Przemysław Motała
+ * @see com.przemekm.coreservicesapp.database.H2Database#countData(OrderFilter)
+ */
+public final class OrderFilter {
+    private final String clientId;
+    private final String namePrefix;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final Integer minQuantity;
+    private final Integer maxQuantity;
+
+    /**
+     * This constructor creates an {@link OrderFilter} object
+     * with the specified conditions.
+     *
+     * @param clientId client's ID, or {@code null}.
+     * @param namePrefix prefix of product's name, or {@code null}.
+     * @param minPrice minimal price (inclusive), or {@code null}.
+     * @param maxPrice maximal price (inclusive), or {@code null}.
+     * @param minQuantity minimal quantity (inclusive), or {@code null}.
+     * @param maxQuantity maximal quantity (inclusive), or {@code null}.
+     */
+    public OrderFilter(final String clientId,
+                       final String namePrefix,
+                       final BigDecimal minPrice,
+                       final BigDecimal maxPrice,
+                       final Integer minQuantity,
+                       final Integer maxQuantity) {
+        this.clientId = clientId;
+        this.namePrefix = namePrefix;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.minQuantity = minQuantity;
+        this.maxQuantity = maxQuantity;
+    }
+
+    /**
+     * This method creates an {@link OrderFilter} object without any conditions.
+     *
+     * @return filter matching all of the orders.
+     */
+    public static OrderFilter none() {
+        return new OrderFilter(null, null, null, null, null, null);
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Integer getMinQuantity() {
+        return minQuantity;
+    }
+
+    public Integer getMaxQuantity() {
+        return maxQuantity;
+    }
+
+    /**
+     * This method checks if the filter has any conditions.
+     *
+     * @return {@code true} if all of the conditions are {@code null}.
+     */
+    public boolean isEmpty() {
+        return clientId == null
+                && namePrefix == null
+                && minPrice == null
+                && maxPrice == null
+                && minQuantity == null
+                && maxQuantity == null;
+    }
+}
@@ -0,0 +1,323 @@
+package com.przemekm.coreservicesapp.datamodel;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Model class describing a query over the orders.
+ * <p>
+ * The query consists of filters (sets of client's IDs and product's names,
+ * ranges of request's IDs, prices and quantities) and of the form of its
+ * result, which is one of:
+ * <ul>
+ * <li>a list of the matching orders, if neither the aggregate nor the grouping is set,</li>
+ * <li>a single value of the {@link Aggregate}, if only the aggregate is set,</li>
+ * <li>a list of {@link ReportRow} items, one per group, if the grouping is set.
+ * The rows are ordered by the key of the group, or by the aggregate
+ * in descending order, and optionally limited.</li>
+ * </ul>
+ * The query is compiled either to SQL by the database, or to a scan plan
+ * by the in-memory report engine.
+ *
+ * @author Przemysław Motała
+ * @see ReportType#getQuery()
+ */
+public final class OrderQuery {
+    /**
+     * Enum class of the values computed over a group of orders.
+     */
+    public enum Aggregate {
+        ORDERS_AMOUNT("COUNT(DISTINCT requestId)"),
+        TOTAL_QUANTITY("SUM(quantity)"),
+        TOTAL_PRICE("SUM(price)"),
+        AVERAGE_PRICE("CAST(AVG(price) AS DECIMAL(12,2))");
+
+        private final String sqlExpression;
+
+        Aggregate(final String sqlExpression) {
+            this.sqlExpression = sqlExpression;
+        }
+
+        public String getSqlExpression() {
+            return sqlExpression;
+        }
+    }
+
+    /**
+     * Enum class of the fields, by which the orders can be grouped.
+     */
+    public enum GroupBy {
+        CLIENT_ID("clientId", "Client_Id"),
+        NAME("name", "Name");
+
+        private final String column;
+        private final String keyName;
+
+        GroupBy(final String column, final String keyName) {
+            this.column = column;
+            this.keyName = keyName;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        /**
+         * This method returns the name of the key
+         * used in the header of the report.
+         *
+         * @return name of the key.
+         * @see ReportRow#getHeader()
+         */
+        public String getKeyName() {
+            return keyName;
+        }
+    }
+
+    private final Set<String> clientIds;
+    private final Set<String> names;
+    private final Long minRequestId;
+    private final Long maxRequestId;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final Integer minQuantity;
+    private final Integer maxQuantity;
+    private final Aggregate aggregate;
+    private final GroupBy groupBy;
+    private final Aggregate orderBy;
+    private final int limit;
+
+    private OrderQuery(final Builder builder) {
+        clientIds = Collections.unmodifiableSet(new TreeSet<>(builder.clientIds));
+        names = Collections.unmodifiableSet(new TreeSet<>(builder.names));
+        minRequestId = builder.minRequestId;
+        maxRequestId = builder.maxRequestId;
+        minPrice = builder.minPrice;
+        maxPrice = builder.maxPrice;
+        minQuantity = builder.minQuantity;
+        maxQuantity = builder.maxQuantity;
+        aggregate = builder.aggregate;
+        groupBy = builder.groupBy;
+        orderBy = builder.orderBy;
+        limit = builder.limit;
+    }
+
+    /**
+     * This method creates a {@link Builder} of a query
+     * returning the list of all orders.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * This method creates a {@link Builder} initialized
+     * with the parameters of this query.
+     *
+     * @return a new builder.
+     */
+    public Builder toBuilder() {
+        return new Builder()
+                .clientIds(clientIds)
+                .names(names)
+                .requestIdRange(minRequestId, maxRequestId)
+                .priceRange(minPrice, maxPrice)
+                .quantityRange(minQuantity, maxQuantity)
+                .aggregate(aggregate)
+                .groupBy(groupBy)
+                .orderBy(orderBy)
+                .limit(limit);
+    }
+
+    /**
+     * This method checks if the order matches all of the filters of the query.
+     *
+     * @param order the order.
+     * @return {@code true} if the order matches the query.
+     */
+    public boolean matches(final Order order) {
+        return (clientIds.isEmpty() || clientIds.contains(order.getClientId()))
+                && (names.isEmpty() || names.contains(order.getName()))
+                && (minRequestId == null || order.requestIdAsLong() >= minRequestId)
+                && (maxRequestId == null || order.requestIdAsLong() <= maxRequestId)
+                && (minPrice == null || order.getPrice().compareTo(minPrice) >= 0)
+                && (maxPrice == null || order.getPrice().compareTo(maxPrice) <= 0)
+                && (minQuantity == null || order.quantityAsInt() >= minQuantity)
+                && (maxQuantity == null || order.quantityAsInt() <= maxQuantity);
+    }
+
+    /**
+     * This method checks if the result of the query is a list of {@link ReportRow} items.
+     *
+     * @return {@code true} if the query is grouped.
+     */
+    public boolean isGrouped() {
+        return groupBy != null;
+    }
+
+    /**
+     * This method checks if the result of the query includes the amount
+     * of distinct orders, which requires the request IDs to be compared.
+     *
+     * @return {@code true} if the query is grouped,
+     * or its aggregate is {@link Aggregate#ORDERS_AMOUNT}.
+     */
+    public boolean isOrdersAmountSelected() {
+        return isGrouped() || aggregate == Aggregate.ORDERS_AMOUNT;
+    }
+
+    /**
+     * This method checks if the result of the query is a list of {@link Order} items.
+     *
+     * @return {@code true} if the query is neither grouped nor aggregated.
+     */
+    public boolean isList() {
+        return groupBy == null && aggregate == null;
+    }
+
+    public Set<String> getClientIds() {
+        return clientIds;
+    }
+
+    public Set<String> getNames() {
+        return names;
+    }
+
+    public Long getMinRequestId() {
+        return minRequestId;
+    }
+
+    public Long getMaxRequestId() {
+        return maxRequestId;
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Integer getMinQuantity() {
+        return minQuantity;
+    }
+
+    public Integer getMaxQuantity() {
+        return maxQuantity;
+    }
+
+    public Aggregate getAggregate() {
+        return aggregate;
+    }
+
+    public GroupBy getGroupBy() {
+        return groupBy;
+    }
+
+    public Aggregate getOrderBy() {
+        return orderBy;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Builder of {@link OrderQuery} objects.
+     * Each filter set to {@code null} (or to an empty collection) is not applied.
+     */
+    public static final class Builder {
+        private Set<String> clientIds = new TreeSet<>();
+        private Set<String> names = new TreeSet<>();
+        private Long minRequestId;
+        private Long maxRequestId;
+        private BigDecimal minPrice;
+        private BigDecimal maxPrice;
+        private Integer minQuantity;
+        private Integer maxQuantity;
+        private Aggregate aggregate;
+        private GroupBy groupBy;
+        private Aggregate orderBy;
+        private int limit;
+
+        private Builder() {
+        }
+
+        public Builder clientIds(final Collection<String> clientIds) {
+            this.clientIds = new TreeSet<>(clientIds);
+            return this;
+        }
+
+        public Builder names(final Collection<String> names) {
+            this.names = new TreeSet<>(names);
+            return this;
+        }
+
+        public Builder requestIdRange(final Long minRequestId, final Long maxRequestId) {
+            this.minRequestId = minRequestId;
+            this.maxRequestId = maxRequestId;
+            return this;
+        }
+
+        public Builder priceRange(final BigDecimal minPrice, final BigDecimal maxPrice) {
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+            return this;
+        }
+
+        public Builder quantityRange(final Integer minQuantity, final Integer maxQuantity) {
+            this.minQuantity = minQuantity;
+            this.maxQuantity = maxQuantity;
+            return this;
+        }
+
+        /**
+         * This method sets the value computed by the query, if it isn't grouped.
+         *
+         * @param aggregate the aggregate, or {@code null}.
+         * @return this builder.
+         */
+        public Builder aggregate(final Aggregate aggregate) {
+            this.aggregate = aggregate;
+            return this;
+        }
+
+        public Builder groupBy(final GroupBy groupBy) {
+            this.groupBy = groupBy;
+            return this;
+        }
+
+        /**
+         * This method sets the aggregate, by which the groups are
+         * ordered in descending order.
+         *
+         * @param orderBy the aggregate, or {@code null} to order the groups by their keys.
+         * @return this builder.
+         */
+        public Builder orderBy(final Aggregate orderBy) {
+            this.orderBy = orderBy;
+            return this;
+        }
+
+        /**
+         * This method sets the maximal amount of groups.
+         *
+         * @param limit the maximal amount, or {@code 0} if the groups are not limited.
+         * @return this builder.
+         */
+        public Builder limit(final int limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        public OrderQuery build() {
+            return new OrderQuery(this);
+        }
+    }
+}
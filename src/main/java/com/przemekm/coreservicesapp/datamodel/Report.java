@@ -4,6 +4,12 @@ import java.util.Objects;
 
 /**
  * Model class to hold report information.
+ * <p>
+ * A report generated from the orders is identified by its {@link ReportParams}
+ * and by the version of the data it was generated from (the last committed
+ * primary key of the orders), which are compared in constant time, so the data
+ * of the reports is never compared element by element. Reports without the
+ * parameters are compared by their names and data.
  *
  * @param <T> type of data stored in report.
  * @author Przemysław Motała
@@ -11,6 +17,9 @@ import java.util.Objects;
 public class Report<T> {
     private String reportName;
     private T reportData;
+    private boolean outdated;
+    private ReportParams reportParams;
+    private long dataVersion;
 
     public String getReportName() {
         return reportName;
@@ -28,8 +37,40 @@ public class Report<T> {
         this.reportData = reportData;
     }
 
+    public ReportParams getReportParams() {
+        return reportParams;
+    }
+
+    public void setReportParams(final ReportParams reportParams) {
+        this.reportParams = reportParams;
+    }
+
+    /**
+     * This method returns the version of the data the report was generated from.
+     *
+     * @return the last primary key of the orders visible to the report.
+     */
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    public void setDataVersion(final long dataVersion) {
+        this.dataVersion = dataVersion;
+    }
+
+    public boolean isOutdated() {
+        return outdated;
+    }
+
+    public void setOutdated(final boolean outdated) {
+        this.outdated = outdated;
+    }
+
     @Override
     public String toString() {
+        if (outdated) {
+            return reportName + " (outdated)";
+        }
         return reportName;
     }
 
@@ -40,14 +81,21 @@ public class Report<T> {
         }
         if (obj instanceof Report<?>) {
             Report<?> otherReport = (Report<?>) obj;
-            return reportName.equals(otherReport.reportName)
-                    && reportData.equals(otherReport.reportData);
+            if (reportParams != null || otherReport.reportParams != null) {
+                return dataVersion == otherReport.dataVersion
+                        && Objects.equals(reportParams, otherReport.reportParams);
+            }
+            return Objects.equals(reportName, otherReport.reportName)
+                    && Objects.equals(reportData, otherReport.reportData);
         }
         return false;
     }
 
     @Override
     public int hashCode() {
+        if (reportParams != null) {
+            return Objects.hash(reportParams, dataVersion);
+        }
         return Objects.hash(reportName, reportData);
     }
 }
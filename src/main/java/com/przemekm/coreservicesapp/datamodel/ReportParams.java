@@ -1,32 +1,160 @@
 package com.przemekm.coreservicesapp.datamodel;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
 /**
  * Model class to hold parameters needed
- * for report generation.
+ * for report generation. The parameters are immutable,
+ * so they can be used as keys of the reports.
  *
  * @author Przemysław Motała
  */
-public class ReportParams {
-    private ReportType reportType;
-    private String clientId;
+public final class ReportParams {
+    private final ReportType reportType;
+    private final List<String> clientIds;
+    private final boolean approximate;
 
     /**
      * This constructor creates a {@link ReportParams} object
      * with specified {@link ReportType} and client's ID parameters.
      *
      * @param reportType type of report.
-     * @param clientId chosen client's ID.
+     * @param clientId chosen client's ID, or {@code null}.
      */
     public ReportParams(final ReportType reportType, final String clientId) {
+        this(reportType, (clientId == null)
+                ? Collections.<String>emptyList()
+                : Collections.singletonList(clientId), false);
+    }
+
+    private ReportParams(final ReportType reportType,
+                         final Collection<String> clientIds,
+                         final boolean approximate) {
         this.reportType = reportType;
-        this.clientId = clientId;
+        this.clientIds = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(clientIds)));
+        this.approximate = approximate && reportType.isApproximable();
+    }
+
+    /**
+     * This method creates a {@link ReportParams} object
+     * with specified {@link ReportType} and client's IDs parameters.
+     *
+     * @param reportType type of report.
+     * @param clientIds chosen client's IDs, or an empty collection
+     *                  if the report should include all of the clients.
+     * @return the created {@link ReportParams} object.
+     */
+    public static ReportParams forClients(final ReportType reportType, final Collection<String> clientIds) {
+        return new ReportParams(reportType, clientIds, false);
+    }
+
+    /**
+     * This method creates a {@link ReportParams} object
+     * with specified {@link ReportType}, client's IDs and mode parameters.
+     *
+     * @param reportType type of report.
+     * @param clientIds chosen client's IDs, or an empty collection
+     *                  if the report should include all of the clients.
+     * @param approximate {@code true} if the report should be computed approximately,
+     *                    ignored if the {@link ReportType} doesn't support it.
+     * @return the created {@link ReportParams} object.
+     * @see ReportType#isApproximable()
+     */
+    public static ReportParams forClients(final ReportType reportType,
+                                          final Collection<String> clientIds,
+                                          final boolean approximate) {
+        return new ReportParams(reportType, clientIds, approximate);
     }
 
     public ReportType getReportType() {
         return reportType;
     }
 
-    public String getClientId() {
-        return clientId;
+    /**
+     * This method returns the chosen client's IDs.
+     *
+     * @return sorted list of client's IDs, empty if all of the clients are included.
+     */
+    public List<String> getClientIds() {
+        return clientIds;
+    }
+
+    /**
+     * This method checks if the report should be computed approximately.
+     *
+     * @return {@code true} if the approximate mode was chosen
+     * and the {@link ReportType} supports it.
+     * @see ReportType#isApproximable()
+     */
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    /**
+     * This method checks if the report is computed from the sketches
+     * maintained while the orders are saved, instead of the orders.
+     *
+     * @return {@code true} for approximate and percentile reports.
+     * @see ReportType#isPercentiles()
+     */
+    public boolean isSketched() {
+        return isApproximate() || reportType.isPercentiles();
+    }
+
+    /**
+     * This method creates the query of the {@link ReportType}
+     * filtered by the chosen client's IDs.
+     *
+     * @return the query of the report.
+     * @throws IllegalStateException if the report isn't computed by a query.
+     * @see ReportType#getQuery()
+     */
+    public OrderQuery getQuery() {
+        if (reportType.getQuery() == null) {
+            throw new IllegalStateException(reportType.getName() + " isn't computed by a query!");
+        }
+        return reportType.getQuery().toBuilder()
+                .clientIds(clientIds)
+                .build();
+    }
+
+    /**
+     * This method creates the name of a report
+     * generated with these parameters.
+     *
+     * @return name of the {@link ReportType}, followed by
+     * the chosen client's IDs if any were selected
+     * and by the information if the report is approximate.
+     */
+    public String getReportName() {
+        String reportName = reportType.getName();
+        if (!clientIds.isEmpty()) {
+            reportName += " (clientId: " + String.join(", ", clientIds) + ")";
+        }
+        if (isApproximate()) {
+            reportName += " (approximate)";
+        }
+        return reportName;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj instanceof ReportParams) {
+            ReportParams otherParams = (ReportParams) obj;
+            return reportType == otherParams.reportType
+                    && approximate == otherParams.approximate
+                    && clientIds.equals(otherParams.clientIds);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(reportType, clientIds, approximate);
     }
 }
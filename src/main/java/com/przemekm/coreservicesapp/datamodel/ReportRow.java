@@ -0,0 +1,112 @@
+package com.przemekm.coreservicesapp.datamodel;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Model class to hold a single row of a grouped report.
+ * <p>
+ * Each row contains aggregated values for one group
+ * of orders, i.e. for one client or one product.
+ *
+ * @author Przemysław Motała
+ * @see ReportType#isGrouped()
+ */
+public final class ReportRow {
+    private final String keyName;
+    private final String key;
+    private final long ordersAmount;
+    private final long totalQuantity;
+    private final BigDecimal totalPrice;
+    private final BigDecimal averagePrice;
+
+    /**
+     * This constructor creates a {@link ReportRow} object
+     * with specified aggregated values.
+     *
+     * @param keyName name of the grouping column (e.g. {@code Client_Id}).
+     * @param key value of the grouping column.
+     * @param ordersAmount amount of distinct orders in the group.
+     * @param totalQuantity total quantity of orders in the group.
+     * @param totalPrice total price of orders in the group.
+     * @param averagePrice average price of order in the group.
+     */
+    public ReportRow(final String keyName,
+                     final String key,
+                     final long ordersAmount,
+                     final long totalQuantity,
+                     final BigDecimal totalPrice,
+                     final BigDecimal averagePrice) {
+        this.keyName = keyName;
+        this.key = key;
+        this.ordersAmount = ordersAmount;
+        this.totalQuantity = totalQuantity;
+        this.totalPrice = totalPrice;
+        this.averagePrice = averagePrice;
+    }
+
+    public String getKeyName() {
+        return keyName;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getOrdersAmount() {
+        return ordersAmount;
+    }
+
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    public BigDecimal getTotalPrice() {
+        return totalPrice;
+    }
+
+    public BigDecimal getAveragePrice() {
+        return averagePrice;
+    }
+
+    /**
+     * This method returns the CSV header matching
+     * the format of {@link #toString()}.
+     *
+     * @return CSV header of the row.
+     */
+    public String getHeader() {
+        return keyName + ",Orders_Amount,Total_Quantity,Total_Price,Average_Price";
+    }
+
+    @Override
+    public String toString() {
+        return key
+                + "," + ordersAmount
+                + "," + totalQuantity
+                + "," + totalPrice
+                + "," + averagePrice;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (obj instanceof ReportRow) {
+            ReportRow otherRow = (ReportRow) obj;
+            return keyName.equals(otherRow.keyName)
+                    && key.equals(otherRow.key)
+                    && (ordersAmount == otherRow.ordersAmount)
+                    && (totalQuantity == otherRow.totalQuantity)
+                    && totalPrice.equals(otherRow.totalPrice)
+                    && averagePrice.equals(otherRow.averagePrice);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(keyName, key, ordersAmount, totalQuantity, totalPrice, averagePrice);
+    }
+}
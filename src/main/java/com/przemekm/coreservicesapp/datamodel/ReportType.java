@@ -1,51 +1,149 @@
 package com.przemekm.coreservicesapp.datamodel;
 
+import com.przemekm.coreservicesapp.datamodel.OrderQuery.Aggregate;
+import com.przemekm.coreservicesapp.datamodel.OrderQuery.GroupBy;
+
 /**
  * Enum class used as a container of
- * different SQL queries.
+ * different queries over the orders.
+ * <p>
+ * The percentile reports are estimated from the sketches
+ * maintained while the orders are saved, so they have no query.
  *
  * @author Przemysław Motała
+ * @see OrderQuery
  */
 public enum ReportType {
     /**
      * Query to get the total amount of orders.
      */
-    ORDERS_AMOUNT("Total amount of orders", "SELECT COUNT(DISTINCT requestId) FROM ORDERS"),
-    //ORDERS_AMOUNT("Total amount of orders", "SELECT COUNT(id) FROM ORDERS"),
+    ORDERS_AMOUNT("Total amount of orders", OrderQuery.builder()
+            .aggregate(Aggregate.ORDERS_AMOUNT)),
     /**
      * Query to get the total price of orders.
      */
-    TOTAL_PRICE("Total price of orders", "SELECT SUM(price) FROM ORDERS"),
+    TOTAL_PRICE("Total price of orders", OrderQuery.builder()
+            .aggregate(Aggregate.TOTAL_PRICE)),
     /**
      * Query to get the list of all orders.
      */
-    ORDERS_LIST("List of all orders", "SELECT * FROM ORDERS"),
+    ORDERS_LIST("List of all orders", OrderQuery.builder()),
     /**
      * Query to get the average price of order.
      */
-    AVERAGE_PRICE("Average price of order", "SELECT CAST(AVG(price) AS DECIMAL(12,2)) FROM ORDERS");
+    AVERAGE_PRICE("Average price of order", OrderQuery.builder()
+            .aggregate(Aggregate.AVERAGE_PRICE)),
+    /**
+     * Query to get the amount of orders, total quantity, total price
+     * and average price of order for each client.
+     */
+    CLIENTS_SUMMARY("Summary per client", OrderQuery.builder()
+            .groupBy(GroupBy.CLIENT_ID)),
+    /**
+     * Query to get the amount of orders, total quantity, total price
+     * and average price of order for each product.
+     */
+    PRODUCTS_SUMMARY("Summary per product", OrderQuery.builder()
+            .groupBy(GroupBy.NAME)),
+    /**
+     * Query to get the clients with the highest total price of orders.
+     */
+    TOP_CLIENTS("Top 10 clients by total price", OrderQuery.builder()
+            .groupBy(GroupBy.CLIENT_ID)
+            .orderBy(Aggregate.TOTAL_PRICE)
+            .limit(10)),
+    /**
+     * Query to get the products with the highest total price of orders.
+     */
+    TOP_PRODUCTS("Top 10 products by total price", OrderQuery.builder()
+            .groupBy(GroupBy.NAME)
+            .orderBy(Aggregate.TOTAL_PRICE)
+            .limit(10)),
+    /**
+     * Report of the median, 90th and 99th percentile of price of order,
+     * estimated from the sketches of prices.
+     */
+    PRICE_PERCENTILES("Percentiles of price"),
+    /**
+     * Report of the median, 90th and 99th percentile of quantity of order,
+     * estimated from the sketches of quantities.
+     */
+    QUANTITY_PERCENTILES("Percentiles of quantity");
 
     private String name;
-    private String sqlQuery;
+    private OrderQuery query;
+
+    /**
+     * This constructor creates a {@link ReportType} object
+     * with specified name and query parameters.
+     *
+     * @param name query's name.
+     * @param query builder of the query, without any filters.
+     */
+    ReportType(final String name, final OrderQuery.Builder query) {
+        this.name = name;
+        this.query = query.build();
+    }
 
     /**
      * This constructor creates a {@link ReportType} object
-     * with specified name and SQL query parameters.
+     * with specified name, computed without any query.
      *
-     * @param name SQL query's name.
-     * @param sqlQuery SQL query.
+     * @param name report's name.
+     * @see #isPercentiles()
      */
-    ReportType(final String name, final String sqlQuery) {
+    ReportType(final String name) {
         this.name = name;
-        this.sqlQuery = sqlQuery;
     }
 
     public String getName() {
         return name;
     }
 
-    public String getSqlQuery() {
-        return sqlQuery;
+    /**
+     * This method returns the query of the report, which can be
+     * extended with filters with use of {@link OrderQuery#toBuilder()} method.
+     *
+     * @return the query without any filters, or {@code null}
+     * for the {@link #isPercentiles()} reports.
+     */
+    public OrderQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * This method checks if the report can be computed approximately,
+     * from the sketches of request's IDs maintained while the orders are saved.
+     *
+     * @return {@code true} for the {@link #ORDERS_AMOUNT} report.
+     * @see ReportParams#isApproximate()
+     */
+    public boolean isApproximable() {
+        return this == ORDERS_AMOUNT;
+    }
+
+    /**
+     * This method checks if the report is a list of percentiles,
+     * estimated from the sketches of prices and quantities
+     * maintained while the orders are saved.
+     *
+     * @return {@code true} for the {@link #PRICE_PERCENTILES}
+     * and {@link #QUANTITY_PERCENTILES} reports.
+     * @see ReportParams#isSketched()
+     */
+    public boolean isPercentiles() {
+        return this == PRICE_PERCENTILES || this == QUANTITY_PERCENTILES;
+    }
+
+    /**
+     * This method checks if the report is grouped by
+     * {@code clientId} or product's name.
+     *
+     * @return {@code true} if the report returns a list of {@link ReportRow} items.
+     * @see ReportRow
+     */
+    public boolean isGrouped() {
+        return query != null && query.isGrouped();
     }
 
     @Override
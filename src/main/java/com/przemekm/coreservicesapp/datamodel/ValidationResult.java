@@ -0,0 +1,122 @@
+package com.przemekm.coreservicesapp.datamodel;
+
+/**
+ * Model class to hold the result of the validation of loaded data.
+ * <p>
+ * A result consists of a {@link Code} and the index of the wrong field
+ * ({@code -1} if the result doesn't concern a single field). All of the
+ * results are created up front and shared, so the validation
+ * doesn't create any objects.
+ *
+ * @author Przemysław Motała
+ * @see Order#validate(String[])
+ */
+public final class ValidationResult {
+    /**
+     * Reasons why the data isn't valid.
+     */
+    public enum Code {
+        /**
+         * The data is valid.
+         */
+        VALID,
+        /**
+         * The data has a wrong amount of fields.
+         */
+        WRONG_FIELDS_AMOUNT,
+        /**
+         * One of the fields is missing.
+         */
+        MISSING_FIELD,
+        /**
+         * One of the fields is in a wrong format.
+         */
+        WRONG_FORMAT,
+        /**
+         * One of the numbers is too big for its type.
+         */
+        OUT_OF_RANGE
+    }
+
+    public static final ValidationResult VALID = new ValidationResult(Code.VALID, -1);
+
+    /**
+     * Shared results, by the code and the index of the field increased by one.
+     */
+    private static final ValidationResult[][] RESULTS = createResults();
+
+    private final Code code;
+    private final int fieldIndex;
+
+    private ValidationResult(final Code code, final int fieldIndex) {
+        this.code = code;
+        this.fieldIndex = fieldIndex;
+    }
+
+    /**
+     * This method returns the shared result.
+     *
+     * @param code the reason.
+     * @param fieldIndex index of the wrong field, or {@code -1}.
+     * @return the result.
+     */
+    public static ValidationResult of(final Code code, final int fieldIndex) {
+        return RESULTS[code.ordinal()][fieldIndex + 1];
+    }
+
+    public boolean isValid() {
+        return code == Code.VALID;
+    }
+
+    public Code getCode() {
+        return code;
+    }
+
+    public int getFieldIndex() {
+        return fieldIndex;
+    }
+
+    /**
+     * This method returns the name of the wrong field.
+     *
+     * @return the name, or {@code null} if the result doesn't concern a single field.
+     */
+    public String getFieldName() {
+        return fieldIndex < 0 ? null : Order.getParamName(fieldIndex);
+    }
+
+    /**
+     * This method returns the description of the result, e.g. {@code "wrong format of price"}.
+     *
+     * @return the description.
+     */
+    public String getMessage() {
+        switch (code) {
+            case VALID:
+                return "valid";
+            case WRONG_FIELDS_AMOUNT:
+                return "wrong amount of fields";
+            case MISSING_FIELD:
+                return "missing " + getFieldName();
+            case OUT_OF_RANGE:
+                return getFieldName() + " out of range";
+            default:
+                return "wrong format of " + getFieldName();
+        }
+    }
+
+    private static ValidationResult[][] createResults() {
+        ValidationResult[][] results = new ValidationResult[Code.values().length][Order.getParamsAmount() + 1];
+        for (Code code : Code.values()) {
+            for (int i = 0; i < results[code.ordinal()].length; i++) {
+                results[code.ordinal()][i] = code == Code.VALID ? VALID : new ValidationResult(code, i - 1);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
@@ -0,0 +1,89 @@
+package com.przemekm.coreservicesapp.engine;
+
+/**
+ * Bloom filter of 64-bit fingerprints.
+ * <p>
+ * Each fingerprint sets {@code k} bits of a bit array, chosen with double
+ * hashing of the fingerprint. A fingerprint whose bits aren't all set has
+ * surely not been added, while a fingerprint whose bits are set has been
+ * added with the probability defined when the filter is created.
+ * The size of the filter depends only on the expected amount of fingerprints
+ * ({@code -n * ln(p) / ln(2)^2} bits, about 1.2 bytes per fingerprint for 1%).
+ *
+ * @author Przemysław Motała
+ * @see OrderDeduplicator
+ */
+public final class BloomFilter {
+    private final long[] bits;
+    private final long bitSize;
+    private final int hashFunctions;
+
+    /**
+     * This constructor creates an empty {@link BloomFilter}.
+     *
+     * @param expectedInsertions expected amount of fingerprints.
+     * @param falsePositiveRate expected rate of false positives, from {@code 0} to {@code 1}.
+     * @throws IllegalArgumentException if the parameters are out of range.
+     */
+    public BloomFilter(final long expectedInsertions, final double falsePositiveRate) {
+        if (expectedInsertions < 1 || !(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Wrong parameters of the Bloom filter!");
+        }
+        double ln2 = Math.log(2);
+        long words = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2) / Long.SIZE);
+        bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, words))];
+        bitSize = (long) bits.length * Long.SIZE;
+        hashFunctions = (int) Math.max(1, Math.round((double) bitSize / expectedInsertions * ln2));
+    }
+
+    /**
+     * This method adds the fingerprint to the filter.
+     *
+     * @param fingerprint the fingerprint.
+     */
+    public void put(final long fingerprint) {
+        long step = getStep(fingerprint);
+        long hash = fingerprint;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(hash, bitSize);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+            hash += step;
+        }
+    }
+
+    /**
+     * This method checks if the fingerprint might have been added to the filter.
+     *
+     * @param fingerprint the fingerprint.
+     * @return {@code false} if the fingerprint surely hasn't been added.
+     */
+    public boolean mightContain(final long fingerprint) {
+        long step = getStep(fingerprint);
+        long hash = fingerprint;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(hash, bitSize);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+            hash += step;
+        }
+        return true;
+    }
+
+    /**
+     * This method returns the size of the bit array.
+     *
+     * @return the size (in bytes).
+     */
+    public long getMemory() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    /**
+     * This method derives the second hash used for double hashing.
+     * It is odd, so it's never zero.
+     */
+    private static long getStep(final long fingerprint) {
+        return Long.rotateLeft(fingerprint * 0x9E3779B97F4A7C15L, 32) | 1;
+    }
+}
@@ -0,0 +1,71 @@
+package com.przemekm.coreservicesapp.engine;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Container of {@link HyperLogLog} sketches of request's IDs,
+ * one for all of the orders and one per client.
+ * <p>
+ * The sketches are updated while the orders are saved,
+ * so the approximate amount of orders can be read without
+ * scanning the orders. The precision of the sketches is defined by the
+ * {@link #ERROR_PROPERTY} system property (relative error, 0.02 by default).
+ *
+ * @author Przemysław Motała
+ * @see com.przemekm.coreservicesapp.database.H2Database#getQueryData(com.przemekm.coreservicesapp.datamodel.ReportParams)
+ */
+public final class DistinctCountSketches {
+    /**
+     * System property defining the relative error of the sketches.
+     */
+    public static final String ERROR_PROPERTY = "coreservicesapp.hll.error";
+
+    private static final double DEFAULT_ERROR = 0.02;
+
+    private final int precision = HyperLogLog.getPrecision(
+            Double.parseDouble(System.getProperty(ERROR_PROPERTY, String.valueOf(DEFAULT_ERROR))));
+    private HyperLogLog total = new HyperLogLog(precision);
+    private final Map<String, HyperLogLog> clients = new HashMap<>();
+
+    /**
+     * This method adds the request's ID of an order to the sketches.
+     *
+     * @param clientId client's ID of the order.
+     * @param requestId request's ID of the order.
+     */
+    public synchronized void add(final String clientId, final long requestId) {
+        total.add(requestId);
+        clients.computeIfAbsent(clientId, key -> new HyperLogLog(precision)).add(requestId);
+    }
+
+    /**
+     * This method estimates the amount of distinct request's IDs
+     * of the specified clients.
+     *
+     * @param clientIds client's IDs, or an empty collection to include all of the clients.
+     * @return the estimated amount of orders.
+     */
+    public synchronized long estimate(final Collection<String> clientIds) {
+        if (clientIds.isEmpty()) {
+            return total.estimate();
+        }
+        HyperLogLog union = new HyperLogLog(precision);
+        for (String clientId : clientIds) {
+            HyperLogLog client = clients.get(clientId);
+            if (client != null) {
+                union.merge(client);
+            }
+        }
+        return union.estimate();
+    }
+
+    /**
+     * This method removes all of the values from the sketches.
+     */
+    public synchronized void clear() {
+        total = new HyperLogLog(precision);
+        clients.clear();
+    }
+}
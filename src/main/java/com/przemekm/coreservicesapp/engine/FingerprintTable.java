@@ -0,0 +1,156 @@
+package com.przemekm.coreservicesapp.engine;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Set of 64-bit fingerprints kept in a single {@code long} array.
+ * <p>
+ * The fingerprints are placed with open addressing and linear probing,
+ * so no objects are created per fingerprint and a lookup usually reads
+ * one cache line. The array is doubled whenever it's filled in three quarters,
+ * up to the capacity allowed by the memory budget - then the table is full
+ * and no more fingerprints are added.
+ *
+ * @author Przemysław Motała
+ * @see OrderDeduplicator
+ */
+public final class FingerprintTable {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final double MAX_LOAD = 0.75;
+
+    /**
+     * This value marks an empty slot. The fingerprint equal
+     * to it is remembered by the {@link #hasEmptyValue} flag.
+     */
+    private static final long EMPTY = 0;
+
+    private final int maxCapacity;
+    private long[] slots = new long[INITIAL_CAPACITY];
+    private int size;
+    private boolean hasEmptyValue;
+
+    /**
+     * This constructor creates an empty {@link FingerprintTable}.
+     *
+     * @param memoryBudget maximal size of the table (in bytes).
+     */
+    public FingerprintTable(final long memoryBudget) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < MAX_CAPACITY && capacity * 2L * Long.BYTES <= memoryBudget) {
+            capacity *= 2;
+        }
+        maxCapacity = capacity;
+    }
+
+    /**
+     * This method checks if the fingerprint has been added to the table.
+     *
+     * @param fingerprint the fingerprint.
+     * @return {@code true} if the table contains the fingerprint.
+     */
+    public boolean contains(final long fingerprint) {
+        if (fingerprint == EMPTY) {
+            return hasEmptyValue;
+        }
+        int mask = slots.length - 1;
+        for (int slot = (int) fingerprint & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (slots[slot] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method adds the fingerprint to the table, unless the table is full.
+     *
+     * @param fingerprint the fingerprint.
+     * @return {@code true} if the fingerprint has been added,
+     * {@code false} if it was in the table already or the table is full.
+     * @see #isFull()
+     */
+    public boolean add(final long fingerprint) {
+        if (isFull()) {
+            return false;
+        }
+        if (fingerprint == EMPTY) {
+            if (hasEmptyValue) {
+                return false;
+            }
+            hasEmptyValue = true;
+            size++;
+            return true;
+        }
+        if (!insert(slots, fingerprint)) {
+            return false;
+        }
+        size++;
+        if (size > slots.length * MAX_LOAD && slots.length < maxCapacity) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * This method checks if the table has reached its memory budget.
+     *
+     * @return {@code true} if no more fingerprints can be added.
+     */
+    public boolean isFull() {
+        return slots.length == maxCapacity && size >= maxCapacity * MAX_LOAD;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * This method passes all of the fingerprints to the consumer.
+     *
+     * @param consumer the consumer of the fingerprints.
+     */
+    public void forEach(final LongConsumer consumer) {
+        if (hasEmptyValue) {
+            consumer.accept(EMPTY);
+        }
+        for (long fingerprint : slots) {
+            if (fingerprint != EMPTY) {
+                consumer.accept(fingerprint);
+            }
+        }
+    }
+
+    /**
+     * This method removes all of the fingerprints from the table
+     * and releases its memory.
+     */
+    public void clear() {
+        slots = new long[INITIAL_CAPACITY];
+        size = 0;
+        hasEmptyValue = false;
+    }
+
+    private void grow() {
+        long[] grownSlots = new long[slots.length * 2];
+        for (long fingerprint : slots) {
+            if (fingerprint != EMPTY) {
+                insert(grownSlots, fingerprint);
+            }
+        }
+        slots = grownSlots;
+    }
+
+    private static boolean insert(final long[] slots, final long fingerprint) {
+        int mask = slots.length - 1;
+        int slot = (int) fingerprint & mask;
+        while (slots[slot] != EMPTY) {
+            if (slots[slot] == fingerprint) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = fingerprint;
+        return true;
+    }
+}
@@ -0,0 +1,157 @@
+package com.przemekm.coreservicesapp.engine;
+
+/**
+ * HyperLogLog sketch estimating the amount of distinct {@code long} values.
+ * <p>
+ * Each value is hashed to 64 bits. The first {@link #getPrecision()} bits
+ * select one of the registers and the register keeps the maximal position
+ * of the first set bit among the remaining bits. The memory of the sketch
+ * is fixed (one byte per register), regardless of the amount of values.
+ * <p>
+ * The relative standard error of the estimate is about
+ * {@code 1.04 / sqrt(registers)}. Sketches with the same precision can be
+ * merged - the result estimates the amount of distinct values of both sketches.
+ *
+ * @author Przemysław Motała
+ * @see DistinctCountSketches
+ */
+public final class HyperLogLog {
+    /*
+        These parameters define the allowed range of precision.
+     */
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * This constructor creates an empty {@link HyperLogLog} sketch.
+     *
+     * @param precision amount of bits selecting the register, from 4 to 18.
+     * @throws IllegalArgumentException if the precision is out of range.
+     */
+    public HyperLogLog(final int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision has to be between "
+                    + MIN_PRECISION + " and " + MAX_PRECISION + "!");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * This method returns the lowest precision, with which
+     * the relative standard error doesn't exceed the specified bound.
+     *
+     * @param relativeError the error bound, e.g. {@code 0.01} for 1%.
+     * @return the precision, limited to the allowed range.
+     */
+    public static int getPrecision(final double relativeError) {
+        double registers = Math.pow(1.04 / relativeError, 2);
+        int precision = (int) Math.ceil(Math.log(registers) / Math.log(2));
+        return Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision));
+    }
+
+    /**
+     * This method adds a value to the sketch.
+     *
+     * @param value the value.
+     */
+    public void add(final long value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        //The sentinel bit limits the rank, when all of the remaining bits are zeros.
+        long remainingBits = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remainingBits) + 1);
+        if (registers[index] < rank) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * This method merges another sketch into this one.
+     *
+     * @param other the sketch to be merged into this one.
+     * @throws IllegalArgumentException if the precisions of the sketches differ.
+     */
+    public void merge(final HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Sketches with different precision can't be merged!");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * This method estimates the amount of distinct values added to the sketch.
+     * Small amounts are estimated with linear counting of the empty registers.
+     *
+     * @return the estimated amount of distinct values.
+     */
+    public long estimate() {
+        int registersAmount = registers.length;
+        double sum = 0;
+        int emptyRegisters = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                emptyRegisters++;
+            }
+        }
+
+        double estimate = getAlpha(registersAmount) * registersAmount * registersAmount / sum;
+        if (estimate <= 2.5 * registersAmount && emptyRegisters > 0) {
+            estimate = registersAmount * Math.log((double) registersAmount / emptyRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * This method returns a copy of the sketch.
+     *
+     * @return a new sketch with the same registers.
+     */
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+        return copy;
+    }
+
+    private static double getAlpha(final int registersAmount) {
+        switch (registersAmount) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / registersAmount);
+        }
+    }
+
+    /**
+     * This method mixes the bits of the value (finalizer of MurmurHash3),
+     * so consecutive values are spread evenly among the registers.
+     *
+     * @param value the value.
+     * @return 64-bit hash of the value.
+     */
+    private static long hash(final long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
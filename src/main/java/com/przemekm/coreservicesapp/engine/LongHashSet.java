@@ -0,0 +1,133 @@
+package com.przemekm.coreservicesapp.engine;
+
+/**
+ * Set of primitive {@code long} values based on open addressing
+ * with linear probing.
+ * <p>
+ * It is used instead of {@link java.util.HashSet} of {@link Long} items
+ * to count distinct values without boxing every element.
+ *
+ * @author Przemysław Motała
+ */
+public final class LongHashSet {
+    /**
+     * This parameter defines the initial capacity of the set.
+     * It has to be a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * This value marks an empty slot of the table.
+     * The value itself is stored in the {@link #hasEmptyValue} flag.
+     */
+    private static final long EMPTY = 0L;
+
+    private long[] table = new long[INITIAL_CAPACITY];
+    private int size;
+    private boolean hasEmptyValue;
+
+    /**
+     * This method adds a value to the set.
+     *
+     * @param value the value to be added.
+     * @return {@code true} if the set did not contain the value.
+     */
+    public boolean add(final long value) {
+        if (value == EMPTY) {
+            if (hasEmptyValue) {
+                return false;
+            }
+            hasEmptyValue = true;
+            size++;
+            return true;
+        }
+
+        int mask = table.length - 1;
+        int index = mix(value) & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+        size++;
+        if (size * 2 > table.length) {
+            resize();
+        }
+        return true;
+    }
+
+    /**
+     * This method checks if the set contains a value.
+     *
+     * @param value the value to be checked.
+     * @return {@code true} if the set contains the value.
+     */
+    public boolean contains(final long value) {
+        if (value == EMPTY) {
+            return hasEmptyValue;
+        }
+
+        int mask = table.length - 1;
+        int index = mix(value) & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * This method adds all values of another set to this set.
+     *
+     * @param other the set to be merged into this one.
+     */
+    public void addAll(final LongHashSet other) {
+        if (other.hasEmptyValue) {
+            add(EMPTY);
+        }
+        for (long value : other.table) {
+            if (value != EMPTY) {
+                add(value);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * This method doubles the capacity of the table
+     * and inserts all of the values again.
+     */
+    private void resize() {
+        long[] oldTable = table;
+        table = new long[oldTable.length * 2];
+        int mask = table.length - 1;
+        for (long value : oldTable) {
+            if (value != EMPTY) {
+                int index = mix(value) & mask;
+                while (table[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = value;
+            }
+        }
+    }
+
+    /**
+     * This method spreads the bits of a value, so sequential values
+     * don't end up in neighbouring slots of the table.
+     *
+     * @param value the value to be hashed.
+     * @return hash of the value.
+     */
+    private static int mix(final long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
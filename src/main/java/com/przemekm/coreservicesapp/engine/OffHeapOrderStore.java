@@ -0,0 +1,384 @@
+package com.przemekm.coreservicesapp.engine;
+
+import com.przemekm.coreservicesapp.datamodel.Order;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Store of orders kept outside of the Java heap.
+ * <p>
+ * Each order is saved as a fixed-width record of {@link #RECORD_SIZE} bytes
+ * in a segment of direct {@link ByteBuffer}. Client's IDs and names are
+ * saved as indexes of on-heap dictionaries, as there are few distinct values.
+ * The values of a dictionary are published as an array, which is grown
+ * only by the writer, so the values are read without any locks.
+ * When the direct memory exceeds the memory budget, new segments are mapped
+ * from the spill file. If no spill file is configured, an
+ * {@link IllegalStateException} is thrown instead.
+ * <p>
+ * Orders are appended by one thread and can be read by many threads at once.
+ * The records can be scanned sequentially or accessed randomly by row ID.
+ *
+ * @author Przemysław Motała
+ * @see ParallelReportEngine#getQueryData(OffHeapOrderStore, com.przemekm.coreservicesapp.datamodel.ReportParams)
+ */
+public final class OffHeapOrderStore extends AbstractList<Order> implements RandomAccess {
+    /**
+     * System property defining the budget of direct memory (in bytes).
+     */
+    public static final String MEMORY_BUDGET_PROPERTY = "coreservicesapp.offheap.budget";
+
+    /**
+     * System property defining the path of the spill file.
+     */
+    public static final String SPILL_FILE_PROPERTY = "coreservicesapp.offheap.spillFile";
+
+    /**
+     * This parameter defines the default budget of direct memory (256 MB).
+     */
+    static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+
+    /*
+        These parameters define the layout of a single record.
+     */
+    private static final int RECORD_SIZE = 32;
+    private static final int CLIENT_ID_OFFSET = 0;
+    private static final int NAME_OFFSET = 4;
+    private static final int REQUEST_ID_OFFSET = 8;
+    private static final int QUANTITY_OFFSET = 16;
+    private static final int SEQUENCE_OFFSET = 20;
+    private static final int PRICE_OFFSET = 24;
+
+    /**
+     * This parameter defines the amount of records
+     * in a segment as a power of two.
+     */
+    private static final int SEGMENT_SHIFT = 16;
+    private static final int SEGMENT_RECORDS = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_RECORDS - 1;
+    private static final int SEGMENT_BYTES = SEGMENT_RECORDS * RECORD_SIZE;
+
+    private final long memoryBudget;
+    private final Path spillFile;
+
+    private final List<ByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final Dictionary clientIds = new Dictionary();
+    private final Dictionary names = new Dictionary();
+
+    private long directBytes;
+    private FileChannel spillChannel;
+    private long spillBytes;
+    private volatile int size;
+
+    /**
+     * This constructor creates an empty {@link OffHeapOrderStore}.
+     *
+     * @param memoryBudget maximal amount of direct memory (in bytes).
+     * @param spillFile file used when the budget is exceeded, or {@code null}.
+     */
+    public OffHeapOrderStore(final long memoryBudget, final Path spillFile) {
+        this.memoryBudget = memoryBudget;
+        this.spillFile = spillFile;
+    }
+
+    /**
+     * This method creates an {@link OffHeapOrderStore} configured with the
+     * {@link #MEMORY_BUDGET_PROPERTY} and {@link #SPILL_FILE_PROPERTY} system properties.
+     *
+     * @return an empty store.
+     */
+    public static OffHeapOrderStore fromSystemProperties() {
+        long memoryBudget = Long.getLong(MEMORY_BUDGET_PROPERTY, DEFAULT_MEMORY_BUDGET);
+        String spillFile = System.getProperty(SPILL_FILE_PROPERTY);
+        return new OffHeapOrderStore(memoryBudget, (spillFile == null) ? null : Paths.get(spillFile));
+    }
+
+    /**
+     * This method appends an order to the store.
+     *
+     * @param order the order to be appended.
+     * @return {@code true}, as specified by {@link List#add(Object)}.
+     * @throws IllegalStateException if the memory budget is exceeded
+     *                               and the spill file can't be used.
+     */
+    @Override
+    public synchronized boolean add(final Order order) {
+        return add(order, size);
+    }
+
+    /**
+     * This method appends an order to the store with the specified
+     * sequence number, which defines the order of the orders
+     * in the {@link PartitionedOrderStore} the store belongs to.
+     *
+     * @param order the order to be appended.
+     * @param sequence sequence number of the order.
+     * @return {@code true}, as specified by {@link List#add(Object)}.
+     * @throws IllegalStateException if the memory budget is exceeded
+     *                               and the spill file can't be used.
+     * @see #getSequence(int)
+     */
+    synchronized boolean add(final Order order, final int sequence) {
+        int row = size;
+        if ((row & SEGMENT_MASK) == 0 && (row >>> SEGMENT_SHIFT) == segments.size()) {
+            segments.add(allocateSegment());
+        }
+        ByteBuffer segment = segments.get(row >>> SEGMENT_SHIFT);
+        int offset = (row & SEGMENT_MASK) * RECORD_SIZE;
+
+        segment.putInt(offset + CLIENT_ID_OFFSET, clientIds.getIndex(order.getClientId()));
+        segment.putInt(offset + NAME_OFFSET, names.getIndex(order.getName()));
+        segment.putLong(offset + REQUEST_ID_OFFSET, order.requestIdAsLong());
+        segment.putInt(offset + QUANTITY_OFFSET, order.quantityAsInt());
+        segment.putInt(offset + SEQUENCE_OFFSET, sequence);
+        segment.putLong(offset + PRICE_OFFSET, order.priceInCents());
+
+        //The record becomes visible to the readers after the size is updated.
+        size = row + 1;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * This method returns the order with the specified row ID.
+     * <p>
+     * A new {@link Order} object is created for each call.
+     * Scans which don't need whole orders should use the accessors
+     * of single fields, e.g. {@link #getRequestId(int)}.
+     *
+     * @param row row ID of the order.
+     * @return the order.
+     */
+    @Override
+    public Order get(final int row) {
+        checkRow(row);
+        return Order.ofTrustedData(getClientId(row),
+                getRequestId(row),
+                getName(row),
+                getQuantity(row),
+                getPriceCents(row));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * This method removes all of the orders from the store
+     * and releases its segments.
+     */
+    @Override
+    public synchronized void clear() {
+        size = 0;
+        segments.clear();
+        clientIds.clear();
+        names.clear();
+        directBytes = 0;
+        spillBytes = 0;
+        if (spillChannel != null) {
+            try {
+                spillChannel.close();
+            } catch (IOException e) {
+                System.out.println("Couldn't close the spill file!");
+                e.printStackTrace();
+            }
+            spillChannel = null;
+        }
+        modCount++;
+    }
+
+    public String getClientId(final int row) {
+        return clientIds.getValue(getSegment(row).getInt(getOffset(row) + CLIENT_ID_OFFSET));
+    }
+
+    /**
+     * This method returns the index of the client's ID in the dictionary,
+     * which can be compared with {@link #getClientIdIndex(int)} values.
+     *
+     * @param clientId client's ID.
+     * @return the index, or {@code -1} if there are no orders of the client.
+     */
+    public int getClientIdIndex(final String clientId) {
+        return clientIds.findIndex(clientId);
+    }
+
+    public int getClientIdIndex(final int row) {
+        return getSegment(row).getInt(getOffset(row) + CLIENT_ID_OFFSET);
+    }
+
+    /**
+     * This method returns the index of the product's name in the dictionary,
+     * which can be compared with {@link #getNameIndex(int)} values.
+     *
+     * @param name product's name.
+     * @return the index, or {@code -1} if there are no orders of the product.
+     */
+    public int getNameIndex(final String name) {
+        return names.findIndex(name);
+    }
+
+    public int getNameIndex(final int row) {
+        return getSegment(row).getInt(getOffset(row) + NAME_OFFSET);
+    }
+
+    public String getName(final int row) {
+        return names.getValue(getSegment(row).getInt(getOffset(row) + NAME_OFFSET));
+    }
+
+    public long getRequestId(final int row) {
+        return getSegment(row).getLong(getOffset(row) + REQUEST_ID_OFFSET);
+    }
+
+    public int getQuantity(final int row) {
+        return getSegment(row).getInt(getOffset(row) + QUANTITY_OFFSET);
+    }
+
+    public long getPriceCents(final int row) {
+        return getSegment(row).getLong(getOffset(row) + PRICE_OFFSET);
+    }
+
+    /**
+     * This method returns the sequence number of the order,
+     * which is equal to the row ID, unless the store is
+     * a partition of a {@link PartitionedOrderStore}.
+     *
+     * @param row row ID of the order.
+     * @return the sequence number.
+     */
+    public int getSequence(final int row) {
+        return getSegment(row).getInt(getOffset(row) + SEQUENCE_OFFSET);
+    }
+
+    /**
+     * This method returns the amount of direct memory
+     * used by the segments of the store.
+     *
+     * @return used direct memory (in bytes).
+     */
+    public synchronized long getDirectBytes() {
+        return directBytes;
+    }
+
+    /**
+     * This method returns the amount of bytes
+     * of the spill file mapped by the store.
+     *
+     * @return used part of the spill file (in bytes).
+     */
+    public synchronized long getSpillBytes() {
+        return spillBytes;
+    }
+
+    private ByteBuffer getSegment(final int row) {
+        return segments.get(row >>> SEGMENT_SHIFT);
+    }
+
+    private static int getOffset(final int row) {
+        return (row & SEGMENT_MASK) * RECORD_SIZE;
+    }
+
+    private void checkRow(final int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+        }
+    }
+
+    /**
+     * This method allocates a new segment - in direct memory if the
+     * budget allows it, otherwise in the mapped spill file.
+     *
+     * @return the new segment.
+     * @throws IllegalStateException if the segment can't be allocated.
+     */
+    private ByteBuffer allocateSegment() {
+        if (directBytes + SEGMENT_BYTES <= memoryBudget) {
+            directBytes += SEGMENT_BYTES;
+            return ByteBuffer.allocateDirect(SEGMENT_BYTES);
+        }
+        if (spillFile == null) {
+            throw new IllegalStateException("Memory budget of "
+                    + memoryBudget + " bytes exceeded and no spill file is configured!");
+        }
+        try {
+            if (spillChannel == null) {
+                spillChannel = FileChannel.open(spillFile,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+            }
+            ByteBuffer segment = spillChannel.map(FileChannel.MapMode.READ_WRITE, spillBytes, SEGMENT_BYTES);
+            spillBytes += SEGMENT_BYTES;
+            return segment;
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't map the spill file!", e);
+        }
+    }
+
+    /**
+     * Dictionary of the client's IDs or product's names of the store.
+     * <p>
+     * New values are added only by the thread appending the orders.
+     * The array of values is copied when it's full and the new value
+     * is published by the volatile write of the array, before the record
+     * referencing it is published, so the readers don't take any locks.
+     */
+    private static final class Dictionary {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[INITIAL_CAPACITY];
+        private int size;
+
+        /**
+         * This method returns the index of a value in the dictionary,
+         * adding the value if it's not present yet. It should be called
+         * only by the thread appending the orders.
+         *
+         * @param value the value.
+         * @return index of the value.
+         */
+        private int getIndex(final String value) {
+            Integer index = indexes.get(value);
+            if (index == null) {
+                String[] currentValues = values;
+                if (size == currentValues.length) {
+                    currentValues = Arrays.copyOf(currentValues, size * 2);
+                }
+                index = size++;
+                currentValues[index] = value;
+                values = currentValues;
+                indexes.put(value, index);
+            }
+            return index;
+        }
+
+        private int findIndex(final String value) {
+            Integer index = indexes.get(value);
+            return (index == null) ? -1 : index;
+        }
+
+        private String getValue(final int index) {
+            return values[index];
+        }
+
+        private void clear() {
+            indexes.clear();
+            values = new String[INITIAL_CAPACITY];
+            size = 0;
+        }
+    }
+}
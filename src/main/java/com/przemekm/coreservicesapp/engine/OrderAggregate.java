@@ -0,0 +1,152 @@
+package com.przemekm.coreservicesapp.engine;
+
+import com.przemekm.coreservicesapp.datamodel.Order;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Partial aggregate of a group of orders.
+ * <p>
+ * It holds the amount of orders, the set of distinct request IDs,
+ * the total quantity and the total price (in cents) of the group.
+ * The set of request IDs grows with the amount of orders, so it is kept
+ * only if the amount of distinct orders is selected by the query.
+ * Aggregates computed by separate threads are combined
+ * with use of {@link #merge(OrderAggregate)} method.
+ *
+ * @author Przemysław Motała
+ * @see ReportAccumulator
+ */
+public final class OrderAggregate {
+    /**
+     * This parameter defines the scale of prices.
+     */
+    private static final int PRICE_SCALE = 2;
+
+    private long rows;
+    private final LongHashSet requestIds;
+    private long totalQuantity;
+    private long totalPriceCents;
+
+    /**
+     * This parameter holds the part of the total price which
+     * didn't fit into {@link #totalPriceCents}.
+     */
+    private BigDecimal overflowPrice = BigDecimal.ZERO;
+
+    /**
+     * This constructor creates an empty {@link OrderAggregate}.
+     *
+     * @param isCountingOrders {@code true} if the distinct request IDs
+     *                         should be kept to count the orders.
+     * @see com.przemekm.coreservicesapp.datamodel.OrderQuery#isOrdersAmountSelected()
+     */
+    public OrderAggregate(final boolean isCountingOrders) {
+        requestIds = isCountingOrders ? new LongHashSet() : null;
+    }
+
+    /**
+     * This method adds an order to the aggregate.
+     *
+     * @param order the order to be added.
+     */
+    public void add(final Order order) {
+        add(order.requestIdAsLong(),
+                order.quantityAsInt(),
+                order.priceInCents());
+    }
+
+    /**
+     * This method adds the values of an order to the aggregate.
+     *
+     * @param requestId request's ID.
+     * @param quantity order's quantity.
+     * @param priceCents order's price in cents.
+     */
+    public void add(final long requestId, final int quantity, final long priceCents) {
+        rows++;
+        if (requestIds != null) {
+            requestIds.add(requestId);
+        }
+        totalQuantity += quantity;
+        addPriceCents(priceCents);
+    }
+
+    /**
+     * This method adds all of the values of another aggregate to this one.
+     *
+     * @param other the aggregate to be merged into this one.
+     */
+    public void merge(final OrderAggregate other) {
+        rows += other.rows;
+        if (requestIds != null) {
+            requestIds.addAll(other.requestIds);
+        }
+        totalQuantity += other.totalQuantity;
+        addPriceCents(other.totalPriceCents);
+        overflowPrice = overflowPrice.add(other.overflowPrice);
+    }
+
+    /**
+     * This method adds a price to the {@link #totalPriceCents}.
+     * If the sum overflows, the current total is moved to the {@link #overflowPrice}.
+     *
+     * @param priceCents the price in cents.
+     */
+    private void addPriceCents(final long priceCents) {
+        try {
+            totalPriceCents = Math.addExact(totalPriceCents, priceCents);
+        } catch (ArithmeticException e) {
+            overflowPrice = overflowPrice.add(BigDecimal.valueOf(totalPriceCents, PRICE_SCALE));
+            totalPriceCents = priceCents;
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * This method returns the amount of distinct orders,
+     * as counted by their request IDs.
+     *
+     * @return the amount of orders.
+     * @throws IllegalStateException if the aggregate doesn't count the orders.
+     */
+    public long getOrdersAmount() {
+        if (requestIds == null) {
+            throw new IllegalStateException("The orders aren't counted by the aggregate!");
+        }
+        return requestIds.size();
+    }
+
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    /**
+     * This method returns the total price of the orders.
+     *
+     * @return the total price, or {@code null} if the aggregate is empty.
+     */
+    public BigDecimal getTotalPrice() {
+        if (rows == 0) {
+            return null;
+        }
+        return BigDecimal.valueOf(totalPriceCents, PRICE_SCALE).add(overflowPrice);
+    }
+
+    /**
+     * This method returns the average price of order
+     * rounded to two decimal places.
+     *
+     * @return the average price, or {@code null} if the aggregate is empty.
+     */
+    public BigDecimal getAveragePrice() {
+        if (rows == 0) {
+            return null;
+        }
+        return getTotalPrice().divide(BigDecimal.valueOf(rows), PRICE_SCALE, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,269 @@
+package com.przemekm.coreservicesapp.engine;
+
+import java.math.BigDecimal;
+
+/**
+ * Class used to detect orders which have been saved already
+ * (with the same client's ID, request's ID, name, quantity and price).
+ * <p>
+ * Each order is reduced to a 64-bit fingerprint, which is computed
+ * from the fields without creating any objects. The fingerprints are kept
+ * in a {@link FingerprintTable} limited by the {@link #MEMORY_PROPERTY} budget.
+ * When the table is full, the following fingerprints are added only to a
+ * {@link BloomFilter} sized for {@link #EXPECTED_ORDERS_PROPERTY} orders.
+ * Then an order which isn't in the table, but might be in the filter, can't be
+ * classified in memory and has to be verified by the caller (in the database).
+ * Most of the new orders are rejected by the filter, so only about one percent
+ * of them is verified. The filter can be created from the start with the
+ * {@link #BLOOM_FILTER_PROPERTY} property, so its memory is reserved up front
+ * instead of when the table overflows.
+ * <p>
+ * An order whose fingerprint is in the table is treated as a duplicate
+ * without comparing its fields. Two distinct orders have the same fingerprint
+ * with the probability of about {@code 2^-64}, so the probability of skipping
+ * any distinct order among {@code n} saved orders is about {@code n^2 / 2^65},
+ * e.g. less than {@code 0.03%} for 100 million orders, which is accepted.
+ * <p>
+ * The deduplicator covers the orders of a single file, or all of the orders
+ * of the database, as defined by the {@link #SCOPE_PROPERTY} system property.
+ *
+ * @author Przemysław Motała
+ * @see com.przemekm.coreservicesapp.database.H2Database#saveData(java.util.List, OrderDeduplicator)
+ */
+public final class OrderDeduplicator {
+    /**
+     * System property defining the {@link Scope} of the deduplication.
+     */
+    public static final String SCOPE_PROPERTY = "coreservicesapp.dedup";
+
+    /**
+     * System property defining the maximal size (in bytes) of the fingerprint table.
+     */
+    public static final String MEMORY_PROPERTY = "coreservicesapp.dedup.memory";
+
+    /**
+     * System property which enables the Bloom filter in front of the fingerprint table.
+     */
+    public static final String BLOOM_FILTER_PROPERTY = "coreservicesapp.dedup.bloom";
+
+    /**
+     * System property defining the amount of orders the Bloom filter is sized for.
+     */
+    public static final String EXPECTED_ORDERS_PROPERTY = "coreservicesapp.dedup.expected";
+
+    private static final long DEFAULT_MEMORY = 256L * 1024 * 1024;
+    private static final long DEFAULT_EXPECTED_ORDERS = 100_000_000L;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * Orders checked for duplicates.
+     */
+    public enum Scope {
+        /**
+         * Duplicates aren't detected.
+         */
+        NONE,
+        /**
+         * Orders are compared with the orders of the same file.
+         */
+        FILE,
+        /**
+         * Orders are compared with all of the saved orders.
+         */
+        GLOBAL
+    }
+
+    /**
+     * Result of the {@link #check(long)} method.
+     */
+    public enum Status {
+        /**
+         * The order hasn't been saved before.
+         */
+        NEW,
+        /**
+         * The order has been saved before.
+         */
+        DUPLICATE,
+        /**
+         * The order has to be verified in the database.
+         */
+        UNKNOWN
+    }
+
+    private final FingerprintTable table;
+    private final long expectedOrders;
+    private final boolean isBloomFilterUsed;
+    private BloomFilter bloomFilter;
+    private long fromId = -1;
+    private long duplicates;
+
+    /**
+     * This constructor creates an empty {@link OrderDeduplicator}.
+     *
+     * @param memoryBudget maximal size (in bytes) of the fingerprint table.
+     * @param isBloomFilterUsed {@code true} if the Bloom filter should be created from the start,
+     *                          instead of when the table is full.
+     * @param expectedOrders amount of orders the Bloom filter is sized for.
+     */
+    public OrderDeduplicator(final long memoryBudget, final boolean isBloomFilterUsed, final long expectedOrders) {
+        this.table = new FingerprintTable(memoryBudget);
+        this.expectedOrders = expectedOrders;
+        this.isBloomFilterUsed = isBloomFilterUsed;
+        if (isBloomFilterUsed) {
+            bloomFilter = new BloomFilter(expectedOrders, FALSE_POSITIVE_RATE);
+        }
+    }
+
+    /**
+     * This method returns the scope defined by the {@link #SCOPE_PROPERTY} system property.
+     *
+     * @return the scope, {@link Scope#NONE} by default.
+     */
+    public static Scope getScope() {
+        return Scope.valueOf(System.getProperty(SCOPE_PROPERTY, Scope.NONE.name()).toUpperCase());
+    }
+
+    /**
+     * This method creates an {@link OrderDeduplicator} configured with the
+     * {@link #MEMORY_PROPERTY}, {@link #BLOOM_FILTER_PROPERTY}
+     * and {@link #EXPECTED_ORDERS_PROPERTY} system properties.
+     *
+     * @return an empty deduplicator.
+     */
+    public static OrderDeduplicator fromSystemProperties() {
+        return new OrderDeduplicator(Long.getLong(MEMORY_PROPERTY, DEFAULT_MEMORY),
+                Boolean.getBoolean(BLOOM_FILTER_PROPERTY),
+                Long.getLong(EXPECTED_ORDERS_PROPERTY, DEFAULT_EXPECTED_ORDERS));
+    }
+
+    /**
+     * This method computes the fingerprint of an order.
+     * Orders with equal fields have equal fingerprints, while two different
+     * orders share a fingerprint with a negligible probability (about {@code 2^-64}).
+     *
+     * @param clientId client's ID.
+     * @param requestId request's ID.
+     * @param name name of the product.
+     * @param quantity quantity.
+     * @param price price with two decimal places.
+     * @return the fingerprint.
+     */
+    public static long fingerprint(final String clientId,
+                                   final long requestId,
+                                   final String name,
+                                   final int quantity,
+                                   final BigDecimal price) {
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, clientId);
+        hash = mix(hash, requestId);
+        hash = mix(hash, name);
+        hash = mix(hash, quantity);
+        hash = mix(hash, price.unscaledValue().longValue());
+        hash = mix(hash, price.scale());
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * This method checks if the order with the fingerprint has been added before.
+     *
+     * @param fingerprint fingerprint of the order.
+     * @return {@link Status#UNKNOWN} if the order has to be verified in the database.
+     */
+    public Status check(final long fingerprint) {
+        if (bloomFilter != null && !bloomFilter.mightContain(fingerprint)) {
+            return Status.NEW;
+        }
+        if (table.contains(fingerprint)) {
+            return Status.DUPLICATE;
+        }
+        return table.isFull() ? Status.UNKNOWN : Status.NEW;
+    }
+
+    /**
+     * This method adds the fingerprint of a saved order.
+     * The Bloom filter is created when the table becomes full.
+     *
+     * @param fingerprint fingerprint of the order.
+     */
+    public void add(final long fingerprint) {
+        table.add(fingerprint);
+        if (bloomFilter != null) {
+            bloomFilter.put(fingerprint);
+        } else if (table.isFull()) {
+            bloomFilter = new BloomFilter(expectedOrders, FALSE_POSITIVE_RATE);
+            table.forEach(bloomFilter::put);
+        }
+    }
+
+    /**
+     * This method checks if some orders can't be classified in memory anymore.
+     *
+     * @return {@code true} if the fingerprint table is full.
+     */
+    public boolean isOverflowing() {
+        return table.isFull();
+    }
+
+    /**
+     * This method sets the primary key after which the orders of the scope start,
+     * unless it has been set already.
+     *
+     * @param id the last primary key before the first order of the scope.
+     */
+    public void startAfter(final long id) {
+        if (fromId < 0) {
+            fromId = id;
+        }
+    }
+
+    public long getFromId() {
+        return fromId;
+    }
+
+    /**
+     * This method adds the amount of duplicates found in a committed batch.
+     *
+     * @param amount amount of skipped orders.
+     */
+    public void addDuplicates(final long amount) {
+        duplicates += amount;
+    }
+
+    /**
+     * This method returns the amount of skipped orders.
+     *
+     * @return amount of duplicates found since the deduplicator was created.
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * This method removes all of the fingerprints and resets the scope.
+     * The amount of found duplicates is kept.
+     */
+    public void clear() {
+        table.clear();
+        bloomFilter = isBloomFilterUsed ? new BloomFilter(expectedOrders, FALSE_POSITIVE_RATE) : null;
+        fromId = -1;
+    }
+
+    private static long mix(final long hash, final String value) {
+        long mixed = hash;
+        for (int i = 0; i < value.length(); i++) {
+            mixed = (mixed ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        //The length separates the fields, so "ab"+"c" and "a"+"bc" differ.
+        return (mixed ^ value.length()) * 0x100000001b3L;
+    }
+
+    private static long mix(final long hash, final long value) {
+        return Long.rotateLeft((hash ^ value) * 0x9E3779B97F4A7C15L, 27);
+    }
+}
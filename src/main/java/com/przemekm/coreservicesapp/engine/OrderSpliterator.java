@@ -0,0 +1,92 @@
+package com.przemekm.coreservicesapp.engine;
+
+import com.przemekm.coreservicesapp.datamodel.Order;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * {@link Spliterator} over a range of a random access list of orders.
+ * <p>
+ * The range is split in halves until it's smaller than
+ * {@link #MIN_SPLIT_SIZE}, so each task of the fork-join pool
+ * processes a block of orders big enough to amortize the cost of the task.
+ *
+ * @author Przemysław Motała
+ * @see ParallelReportEngine
+ */
+public final class OrderSpliterator implements Spliterator<Order> {
+    /**
+     * This parameter defines the minimal amount of orders
+     * in a range which can be split.
+     */
+    private static final int MIN_SPLIT_SIZE = 8192;
+
+    private final List<Order> orders;
+    private int origin;
+    private final int fence;
+
+    /**
+     * This constructor creates an {@link OrderSpliterator}
+     * over all of the orders in the list.
+     *
+     * @param orders random access list of orders.
+     */
+    public OrderSpliterator(final List<Order> orders) {
+        this(orders, 0, orders.size());
+    }
+
+    /**
+     * This constructor creates an {@link OrderSpliterator}
+     * over the specified range of the list.
+     *
+     * @param orders random access list of orders.
+     * @param origin index of the first order (inclusive).
+     * @param fence index of the last order (exclusive).
+     */
+    private OrderSpliterator(final List<Order> orders, final int origin, final int fence) {
+        this.orders = orders;
+        this.origin = origin;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super Order> action) {
+        if (origin < fence) {
+            action.accept(orders.get(origin++));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super Order> action) {
+        for (int i = origin; i < fence; i++) {
+            action.accept(orders.get(i));
+        }
+        origin = fence;
+    }
+
+    @Override
+    public Spliterator<Order> trySplit() {
+        int size = fence - origin;
+        if (size < MIN_SPLIT_SIZE * 2) {
+            return null;
+        }
+        int middle = origin + (size >>> 1);
+        Spliterator<Order> prefix = new OrderSpliterator(orders, origin, middle);
+        origin = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - origin;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+}
@@ -0,0 +1,264 @@
+package com.przemekm.coreservicesapp.engine;
+
+import com.przemekm.coreservicesapp.database.ReportJob;
+import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.OrderQuery;
+import com.przemekm.coreservicesapp.datamodel.Report;
+import com.przemekm.coreservicesapp.datamodel.ReportParams;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Class used to compute reports over the loaded orders in memory,
+ * without querying the H2 database.
+ * <p>
+ * The orders are split with {@link OrderSpliterator} and processed
+ * in parallel on the common {@link ForkJoinPool}. Each thread fills
+ * its own {@link ReportAccumulator}, which are merged at the end.
+ * Orders of a {@link PartitionedOrderStore} are scattered between the
+ * partitions and the partial results are gathered the same way.
+ *
+ * @author Przemysław Motała
+ * @see OrderSpliterator
+ * @see ReportAccumulator
+ * @see PartitionedOrderStore
+ */
+public final class ParallelReportEngine {
+    /**
+     * This method computes a report over the orders
+     * based on the specified {@link ReportParams}.
+     *
+     * @param orders random access list of orders.
+     * @param reportParams an object containing the type of report and optional client's ID.
+     * @return {@link Report} with the same type of data as the one returned by
+     * {@link com.przemekm.coreservicesapp.database.H2Database#getQueryData(ReportParams)}.
+     * @throws IllegalArgumentException if the report is computed from the sketches.
+     * @see ReportAccumulator#toReport(ReportParams)
+     */
+    public Report<?> getQueryData(final List<Order> orders, final ReportParams reportParams) {
+        OrderQuery query = getQuery(reportParams);
+
+        ReportAccumulator accumulator = StreamSupport.stream(new OrderSpliterator(orders), true)
+                .filter(query::matches)
+                .collect(() -> new ReportAccumulator(query),
+                        ReportAccumulator::accept,
+                        ReportAccumulator::combine);
+
+        return accumulator.toReport(reportParams);
+    }
+
+    /**
+     * This method computes a report over the orders saved in the
+     * {@link OffHeapOrderStore} based on the specified {@link ReportParams}.
+     * <p>
+     * The range of row IDs is split between the threads of the common
+     * {@link ForkJoinPool}. The filters of the query are compiled to a
+     * {@link ScanPlan}, which compares client's IDs and names by their indexes
+     * in the dictionaries of the store, so the records are scanned
+     * without creating any objects.
+     *
+     * @param store the store of orders.
+     * @param reportParams an object containing the type of report and optional client's ID.
+     * @return {@link Report} with the same type of data as the one returned by
+     * {@link com.przemekm.coreservicesapp.database.H2Database#getQueryData(ReportParams)}.
+     * @throws IllegalArgumentException if the report is computed from the sketches.
+     * @see ReportAccumulator#accept(OffHeapOrderStore, int)
+     */
+    public Report<?> getQueryData(final OffHeapOrderStore store, final ReportParams reportParams) {
+        return accumulate(store, store.size(), getQuery(reportParams)).toReport(reportParams);
+    }
+
+    /**
+     * This method computes a report over the orders saved in the
+     * {@link PartitionedOrderStore} based on the specified {@link ReportParams}.
+     * <p>
+     * Only the partitions holding the chosen clients are scanned (all of them,
+     * if no client was chosen). The partitions are scanned in parallel, as in
+     * {@link #getQueryData(OffHeapOrderStore, ReportParams)}, and their
+     * accumulators are merged. The orders of a list report are merged
+     * by their sequence numbers, so they keep the order in which
+     * they were added to the store. Only the orders of the last published
+     * snapshot of the store are read and its version becomes the data version of the report.
+     *
+     * @param store the partitioned store of orders.
+     * @param reportParams an object containing the type of report and optional client's IDs.
+     * @return {@link Report} with the same type of data as the one returned by
+     * {@link com.przemekm.coreservicesapp.database.H2Database#getQueryData(ReportParams)}.
+     * @throws IllegalArgumentException if the report is computed from the sketches.
+     * @throws IllegalStateException if the store doesn't hold all of the added orders.
+     * @see PartitionedOrderStore#getPartitionIndexes(java.util.Collection)
+     * @see PartitionedOrderStore#isIncomplete()
+     */
+    public Report<?> getQueryData(final PartitionedOrderStore store, final ReportParams reportParams) {
+        if (store.isIncomplete()) {
+            throw new IllegalStateException("The store doesn't hold all of the orders!");
+        }
+        OrderQuery query = getQuery(reportParams);
+        int[] partitions = store.getPartitionIndexes(query.getClientIds());
+        PartitionedOrderStore.Snapshot snapshot = store.getSnapshot();
+        ReportAccumulator accumulator;
+        if (query.isList() && partitions.length > 1) {
+            accumulator = mergeLists(store, snapshot, partitions, query);
+        } else {
+            accumulator = Arrays.stream(partitions)
+                    .parallel()
+                    .mapToObj(partition -> accumulate(store.getPartition(partition),
+                            snapshot.getSize(partition),
+                            query))
+                    .reduce((first, second) -> {
+                        first.combine(second);
+                        return first;
+                    })
+                    .orElseGet(() -> new ReportAccumulator(query));
+        }
+
+        Report<?> report = accumulator.toReport(reportParams);
+        report.setDataVersion(snapshot.getVersion());
+        return report;
+    }
+
+    /**
+     * This method computes a report over the orders saved in the
+     * {@link OffHeapOrderStore} in the background.
+     * <p>
+     * A cancelled job doesn't stop the computation, but its result is discarded.
+     *
+     * @param store the store of orders.
+     * @param reportParams an object containing the type of report and optional client's ID.
+     * @return {@link ReportJob} which can be used to wait for the report or to cancel it.
+     * @see #getQueryData(OffHeapOrderStore, ReportParams)
+     */
+    public ReportJob submitQuery(final OffHeapOrderStore store, final ReportParams reportParams) {
+        return submitQuery(reportParams, () -> getQueryData(store, reportParams));
+    }
+
+    /**
+     * This method computes a report over the orders saved in the
+     * {@link PartitionedOrderStore} in the background.
+     * <p>
+     * A cancelled job doesn't stop the computation, but its result is discarded.
+     *
+     * @param store the partitioned store of orders.
+     * @param reportParams an object containing the type of report and optional client's IDs.
+     * @return {@link ReportJob} which can be used to wait for the report or to cancel it.
+     * @see #getQueryData(PartitionedOrderStore, ReportParams)
+     */
+    public ReportJob submitQuery(final PartitionedOrderStore store, final ReportParams reportParams) {
+        return submitQuery(reportParams, () -> getQueryData(store, reportParams));
+    }
+
+    private static ReportJob submitQuery(final ReportParams reportParams, final Supplier<Report<?>> reportSupplier) {
+        getQuery(reportParams);
+        ReportJob job = new ReportJob(reportParams, null);
+        CompletableFuture.supplyAsync(reportSupplier)
+                .whenComplete((report, throwable) -> {
+                    if (throwable == null) {
+                        job.getResult().complete(report);
+                    } else {
+                        job.getResult().completeExceptionally(throwable);
+                    }
+                });
+        return job;
+    }
+
+    /**
+     * This method returns the query of the report. The approximate and percentile
+     * reports are estimated from the sketches maintained by the database,
+     * so they can't be computed by the engine.
+     *
+     * @param reportParams parameters of the report.
+     * @return the query of the report.
+     * @throws IllegalArgumentException if the report is computed from the sketches.
+     * @see ReportParams#isSketched()
+     */
+    private static OrderQuery getQuery(final ReportParams reportParams) {
+        if (reportParams.isSketched()) {
+            throw new IllegalArgumentException(reportParams.getReportName() + " is computed from the sketches!");
+        }
+        return reportParams.getQuery();
+    }
+
+    /**
+     * This method scans the orders saved in the {@link OffHeapOrderStore}.
+     * <p>
+     * The range of row IDs is split between the threads of the common
+     * {@link ForkJoinPool}. The filters of the query are compiled to a
+     * {@link ScanPlan}, which compares client's IDs and names by their indexes
+     * in the dictionaries of the store, so the records are scanned
+     * without creating any objects.
+     *
+     * @param store the store of orders.
+     * @param size amount of the orders to be scanned.
+     * @param query the query.
+     * @return accumulator of the matching orders.
+     * @see ReportAccumulator#accept(OffHeapOrderStore, int)
+     */
+    private static ReportAccumulator accumulate(final OffHeapOrderStore store,
+                                                final int size,
+                                                final OrderQuery query) {
+        ScanPlan plan = new ScanPlan(query, store);
+        if (plan.isEmpty()) {
+            //None of the orders can match the query.
+            return new ReportAccumulator(query);
+        }
+
+        return IntStream.range(0, size)
+                .parallel()
+                .filter(plan::test)
+                .collect(() -> new ReportAccumulator(query),
+                        (partialAccumulator, row) -> partialAccumulator.accept(store, row),
+                        ReportAccumulator::combine);
+    }
+
+    /**
+     * This method collects the orders of a list report from several partitions.
+     * The matching rows of each partition are found in parallel and then
+     * merged by their sequence numbers.
+     *
+     * @param store the partitioned store of orders.
+     * @param snapshot snapshot of the sizes of the partitions.
+     * @param partitions indexes of the partitions to be scanned.
+     * @param query the query returning a list of orders.
+     * @return accumulator of the matching orders.
+     */
+    private static ReportAccumulator mergeLists(final PartitionedOrderStore store,
+                                                final PartitionedOrderStore.Snapshot snapshot,
+                                                final int[] partitions,
+                                                final OrderQuery query) {
+        int[][] rows = new int[partitions.length][];
+        IntStream.range(0, partitions.length).parallel().forEach(i -> {
+            OffHeapOrderStore partition = store.getPartition(partitions[i]);
+            ScanPlan plan = new ScanPlan(query, partition);
+            rows[i] = plan.isEmpty() ? new int[0] : IntStream.range(0, snapshot.getSize(partitions[i]))
+                    .parallel()
+                    .filter(plan::test)
+                    .toArray();
+        });
+
+        ReportAccumulator accumulator = new ReportAccumulator(query);
+        int[] positions = new int[partitions.length];
+        while (true) {
+            int next = -1;
+            int nextSequence = 0;
+            for (int i = 0; i < partitions.length; i++) {
+                if (positions[i] < rows[i].length) {
+                    int sequence = store.getPartition(partitions[i]).getSequence(rows[i][positions[i]]);
+                    if (next == -1 || sequence < nextSequence) {
+                        next = i;
+                        nextSequence = sequence;
+                    }
+                }
+            }
+            if (next == -1) {
+                return accumulator;
+            }
+            accumulator.accept(store.getPartition(partitions[next]), rows[next][positions[next]++]);
+        }
+    }
+}
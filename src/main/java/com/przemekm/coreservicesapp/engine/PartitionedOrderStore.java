@@ -0,0 +1,236 @@
+package com.przemekm.coreservicesapp.engine;
+
+import com.przemekm.coreservicesapp.datamodel.Order;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Store of orders split into partitions by the hash of client's ID.
+ * <p>
+ * Each partition is a separate {@link OffHeapOrderStore} with its own part
+ * of the memory budget, so orders of different clients are appended without
+ * contending on a single store. All of the orders of a client are kept in
+ * one partition, so reports of chosen clients scan only their partitions.
+ * Each order is given a sequence number, which keeps the order in which
+ * the orders were added across the partitions.
+ * <p>
+ * Added orders become visible to the reports when they're published with
+ * {@link #publish(long)} method. Each report reads the {@link Snapshot}
+ * captured by the last publication, so it sees a consistent snapshot of the
+ * store, while new orders are appended after the end of the snapshot.
+ * If an order couldn't be appended, the store is marked as incomplete
+ * until it is cleared, and the reports can't be computed over it.
+ * <p>
+ * The amount of partitions is defined by the {@link #PARTITIONS_PROPERTY}
+ * system property. With a single partition the store behaves like
+ * one {@link OffHeapOrderStore}.
+ *
+ * @author Przemysław Motała
+ * @see ParallelReportEngine#getQueryData(PartitionedOrderStore, com.przemekm.coreservicesapp.datamodel.ReportParams)
+ */
+public final class PartitionedOrderStore {
+    /**
+     * System property defining the amount of partitions.
+     */
+    public static final String PARTITIONS_PROPERTY = "coreservicesapp.partitions";
+
+    private static final int DEFAULT_PARTITIONS = 1;
+
+    private final OffHeapOrderStore[] partitions;
+    private final AtomicInteger sequence = new AtomicInteger();
+    private volatile Snapshot snapshot;
+    private volatile boolean isIncomplete;
+
+    /**
+     * Sizes of the partitions captured by the {@link #publish(long)} method,
+     * together with the version of the data they hold.
+     */
+    public static final class Snapshot {
+        private final int[] sizes;
+        private final long version;
+
+        private Snapshot(final int[] sizes, final long version) {
+            this.sizes = sizes;
+            this.version = version;
+        }
+
+        /**
+         * This method returns the amount of published orders of the partition.
+         *
+         * @param partition index of the partition.
+         * @return the size of the partition.
+         */
+        public int getSize(final int partition) {
+            return sizes[partition];
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * This constructor creates an empty {@link PartitionedOrderStore}.
+     *
+     * @param partitionsAmount amount of partitions, at least {@code 1}.
+     * @param memoryBudget maximal amount of direct memory (in bytes),
+     * divided equally between the partitions.
+     * @param spillFile file used when the budget is exceeded, or {@code null}.
+     * Each partition uses its own file, with the index of the partition appended to the name.
+     * @throws IllegalArgumentException if the amount of partitions is lower than {@code 1}.
+     */
+    public PartitionedOrderStore(final int partitionsAmount, final long memoryBudget, final Path spillFile) {
+        if (partitionsAmount < 1) {
+            throw new IllegalArgumentException("Amount of partitions has to be at least 1!");
+        }
+        partitions = new OffHeapOrderStore[partitionsAmount];
+        for (int i = 0; i < partitionsAmount; i++) {
+            Path partitionSpillFile = spillFile;
+            if (spillFile != null && partitionsAmount > 1) {
+                partitionSpillFile = Paths.get(spillFile.toString() + "." + i);
+            }
+            partitions[i] = new OffHeapOrderStore(memoryBudget / partitionsAmount, partitionSpillFile);
+        }
+        snapshot = new Snapshot(new int[partitionsAmount], 0);
+    }
+
+    /**
+     * This method creates a {@link PartitionedOrderStore} configured with the
+     * {@link #PARTITIONS_PROPERTY}, {@link OffHeapOrderStore#MEMORY_BUDGET_PROPERTY}
+     * and {@link OffHeapOrderStore#SPILL_FILE_PROPERTY} system properties.
+     *
+     * @return an empty store.
+     */
+    public static PartitionedOrderStore fromSystemProperties() {
+        int partitionsAmount = Integer.getInteger(PARTITIONS_PROPERTY, DEFAULT_PARTITIONS);
+        long memoryBudget = Long.getLong(OffHeapOrderStore.MEMORY_BUDGET_PROPERTY,
+                OffHeapOrderStore.DEFAULT_MEMORY_BUDGET);
+        String spillFile = System.getProperty(OffHeapOrderStore.SPILL_FILE_PROPERTY);
+        return new PartitionedOrderStore(partitionsAmount,
+                memoryBudget,
+                (spillFile == null) ? null : Paths.get(spillFile));
+    }
+
+    /**
+     * This method appends an order to the partition of its client.
+     * Only the partition is locked, while the order is appended.
+     *
+     * @param order the order to be appended.
+     * @throws IllegalStateException if the memory budget of the partition
+     *                               is exceeded and the spill file can't be used.
+     *                               The store is marked as incomplete then.
+     * @see #isIncomplete()
+     */
+    public void add(final Order order) {
+        OffHeapOrderStore partition = partitions[getPartitionIndex(order.getClientId())];
+        synchronized (partition) {
+            try {
+                partition.add(order, sequence.getAndIncrement());
+            } catch (IllegalStateException e) {
+                isIncomplete = true;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * This method checks if any of the added orders couldn't be appended.
+     *
+     * @return {@code true} if the store doesn't hold all of the added orders
+     * and it has to be cleared before it is used again.
+     */
+    public boolean isIncomplete() {
+        return isIncomplete;
+    }
+
+    /**
+     * This method makes all of the added orders visible to the reports.
+     * The sizes of the partitions are copied to a new snapshot,
+     * so the snapshots read by running reports aren't changed.
+     *
+     * @param version version of the data, such as the last primary key of the added orders.
+     */
+    public synchronized void publish(final long version) {
+        int[] sizes = new int[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+            sizes[i] = partitions[i].size();
+        }
+        snapshot = new Snapshot(sizes, version);
+    }
+
+    /**
+     * This method returns the snapshot
+     * captured by the last {@link #publish(long)} call.
+     *
+     * @return the snapshot.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * This method returns the index of the partition,
+     * which holds the orders of the client.
+     *
+     * @param clientId client's ID.
+     * @return index of the partition.
+     */
+    public int getPartitionIndex(final String clientId) {
+        return Math.floorMod(clientId.hashCode(), partitions.length);
+    }
+
+    /**
+     * This method returns the indexes of the partitions,
+     * which hold the orders of the specified clients.
+     *
+     * @param clientIds client's IDs, or an empty collection to include all of the clients.
+     * @return sorted indexes of the partitions.
+     */
+    public int[] getPartitionIndexes(final Collection<String> clientIds) {
+        if (clientIds.isEmpty()) {
+            return IntStream.range(0, partitions.length).toArray();
+        }
+        return clientIds.stream()
+                .mapToInt(this::getPartitionIndex)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    public OffHeapOrderStore getPartition(final int index) {
+        return partitions[index];
+    }
+
+    public int getPartitionsAmount() {
+        return partitions.length;
+    }
+
+    /**
+     * This method returns the amount of orders in all of the partitions.
+     *
+     * @return the amount of orders.
+     */
+    public int size() {
+        int size = 0;
+        for (OffHeapOrderStore partition : partitions) {
+            size += partition.size();
+        }
+        return size;
+    }
+
+    /**
+     * This method removes all of the orders from the partitions.
+     */
+    public synchronized void clear() {
+        snapshot = new Snapshot(new int[partitions.length], 0);
+        for (OffHeapOrderStore partition : partitions) {
+            partition.clear();
+        }
+        sequence.set(0);
+        isIncomplete = false;
+    }
+}
@@ -0,0 +1,131 @@
+package com.przemekm.coreservicesapp.engine;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Container of {@link TDigest} sketches of prices and quantities,
+ * one pair for all of the orders and one pair per client.
+ * <p>
+ * The sketches are updated while the orders are saved, so the percentiles
+ * can be read without sorting the orders. A batch of orders can be added
+ * to its own container first and then merged with {@link #merge(PercentileSketches)},
+ * so the shared sketches are locked only once per batch. The accuracy of the
+ * sketches is defined by the {@link #COMPRESSION_PROPERTY} system property
+ * ({@code 100} by default).
+ *
+ * @author Przemysław Motała
+ * @see com.przemekm.coreservicesapp.database.H2Database#getQueryData(com.przemekm.coreservicesapp.datamodel.ReportParams)
+ */
+public final class PercentileSketches {
+    /**
+     * System property defining the compression of the sketches.
+     */
+    public static final String COMPRESSION_PROPERTY = "coreservicesapp.tdigest.compression";
+
+    private static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression = Double.parseDouble(
+            System.getProperty(COMPRESSION_PROPERTY, String.valueOf(DEFAULT_COMPRESSION)));
+    private Sketches total = new Sketches(compression);
+    private final Map<String, Sketches> clients = new HashMap<>();
+
+    /**
+     * Pair of sketches of a group of orders.
+     */
+    private static final class Sketches {
+        private final TDigest prices;
+        private final TDigest quantities;
+
+        private Sketches(final double compression) {
+            prices = new TDigest(compression);
+            quantities = new TDigest(compression);
+        }
+
+        private void add(final int quantity, final double price) {
+            prices.add(price);
+            quantities.add(quantity);
+        }
+
+        private void merge(final Sketches other) {
+            prices.merge(other.prices);
+            quantities.merge(other.quantities);
+        }
+    }
+
+    /**
+     * This method adds the price and quantity of an order to the sketches.
+     *
+     * @param clientId client's ID of the order.
+     * @param quantity order's quantity.
+     * @param price order's price.
+     */
+    public synchronized void add(final String clientId, final int quantity, final BigDecimal price) {
+        double priceValue = price.doubleValue();
+        total.add(quantity, priceValue);
+        clients.computeIfAbsent(clientId, key -> new Sketches(compression)).add(quantity, priceValue);
+    }
+
+    /**
+     * This method adds all of the values of another container to this one.
+     *
+     * @param other the container to be merged into this one,
+     * which isn't modified by other threads.
+     */
+    public synchronized void merge(final PercentileSketches other) {
+        total.merge(other.total);
+        for (Map.Entry<String, Sketches> entry : other.clients.entrySet()) {
+            clients.computeIfAbsent(entry.getKey(), key -> new Sketches(compression)).merge(entry.getValue());
+        }
+    }
+
+    /**
+     * This method returns the sketch of prices of the specified clients.
+     *
+     * @param clientIds client's IDs, or an empty collection to include all of the clients.
+     * @return a new sketch, which isn't updated by this container.
+     */
+    public synchronized TDigest getPrices(final Collection<String> clientIds) {
+        if (clientIds.isEmpty()) {
+            return total.prices.copy();
+        }
+        TDigest union = new TDigest(compression);
+        for (String clientId : clientIds) {
+            Sketches client = clients.get(clientId);
+            if (client != null) {
+                union.merge(client.prices);
+            }
+        }
+        return union;
+    }
+
+    /**
+     * This method returns the sketch of quantities of the specified clients.
+     *
+     * @param clientIds client's IDs, or an empty collection to include all of the clients.
+     * @return a new sketch, which isn't updated by this container.
+     */
+    public synchronized TDigest getQuantities(final Collection<String> clientIds) {
+        if (clientIds.isEmpty()) {
+            return total.quantities.copy();
+        }
+        TDigest union = new TDigest(compression);
+        for (String clientId : clientIds) {
+            Sketches client = clients.get(clientId);
+            if (client != null) {
+                union.merge(client.quantities);
+            }
+        }
+        return union;
+    }
+
+    /**
+     * This method removes all of the values from the sketches.
+     */
+    public synchronized void clear() {
+        total = new Sketches(compression);
+        clients.clear();
+    }
+}
@@ -0,0 +1,215 @@
+package com.przemekm.coreservicesapp.engine;
+
+import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.OrderQuery;
+import com.przemekm.coreservicesapp.datamodel.Report;
+import com.przemekm.coreservicesapp.datamodel.ReportParams;
+import com.przemekm.coreservicesapp.datamodel.ReportRow;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mutable container used to compute a report from a part of the orders.
+ * <p>
+ * Each thread of the fork-join pool fills its own accumulator
+ * with use of {@link #accept(Order)} method. The partial accumulators
+ * are merged at the end with {@link #combine(ReportAccumulator)} method.
+ *
+ * @author Przemysław Motała
+ * @see ParallelReportEngine
+ */
+public final class ReportAccumulator {
+    private final OrderQuery query;
+    private final boolean isCountingOrders;
+    private final OrderAggregate total;
+    private final Map<String, OrderAggregate> groups = new HashMap<>();
+    private final List<Order> orders = new ArrayList<>();
+
+    /**
+     * This constructor creates an empty {@link ReportAccumulator}
+     * for the specified {@link OrderQuery}. The orders passed to the
+     * accumulator should match the filters of the query.
+     *
+     * @param query query to be computed.
+     */
+    public ReportAccumulator(final OrderQuery query) {
+        this.query = query;
+        isCountingOrders = query.isOrdersAmountSelected();
+        total = new OrderAggregate(isCountingOrders);
+    }
+
+    /**
+     * This method adds an order to the accumulator.
+     *
+     * @param order the order to be added.
+     */
+    public void accept(final Order order) {
+        if (query.isList()) {
+            orders.add(order);
+        } else if (query.isGrouped()) {
+            groups.computeIfAbsent(getGroupKey(order), key -> new OrderAggregate(isCountingOrders)).add(order);
+        } else {
+            total.add(order);
+        }
+    }
+
+    /**
+     * This method adds an order saved in the {@link OffHeapOrderStore}
+     * to the accumulator. Only the list of orders requires creation
+     * of {@link Order} objects, other reports read single fields of the record.
+     *
+     * @param store the store of orders.
+     * @param row row ID of the order.
+     */
+    public void accept(final OffHeapOrderStore store, final int row) {
+        if (query.isList()) {
+            orders.add(store.get(row));
+            return;
+        }
+        OrderAggregate aggregate = total;
+        if (query.isGrouped()) {
+            String key = isGroupedByClient() ? store.getClientId(row) : store.getName(row);
+            aggregate = groups.computeIfAbsent(key, groupKey -> new OrderAggregate(isCountingOrders));
+        }
+        aggregate.add(store.getRequestId(row), store.getQuantity(row), store.getPriceCents(row));
+    }
+
+    /**
+     * This method merges another accumulator into this one.
+     * The orders of the {@code other} accumulator are placed after
+     * the orders of this accumulator.
+     *
+     * @param other the accumulator to be merged into this one.
+     */
+    public void combine(final ReportAccumulator other) {
+        orders.addAll(other.orders);
+        total.merge(other.total);
+        for (Map.Entry<String, OrderAggregate> entry : other.groups.entrySet()) {
+            OrderAggregate group = groups.get(entry.getKey());
+            if (group == null) {
+                groups.put(entry.getKey(), entry.getValue());
+            } else {
+                group.merge(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * This method creates a report from the accumulated data.
+     * <p>
+     * The data of the report has the same format as the data
+     * returned by {@link com.przemekm.coreservicesapp.database.H2Database#getQueryData(ReportParams)}.
+     *
+     * @param reportParams parameters of the report.
+     * @return the created report.
+     */
+    public Report<?> toReport(final ReportParams reportParams) {
+        Report<?> report;
+
+        if (query.isList()) {
+            Report<List<Order>> reportList = new Report<>();
+            reportList.setReportData(new ArrayList<>(orders));
+            report = reportList;
+        } else if (query.isGrouped()) {
+            Report<List<ReportRow>> reportRows = new Report<>();
+            reportRows.setReportData(getRows());
+            report = reportRows;
+        } else {
+            Report<String> reportString = new Report<>();
+            reportString.setReportData(getScalar());
+            report = reportString;
+        }
+
+        report.setReportName(reportParams.getReportName());
+        report.setReportParams(reportParams);
+        return report;
+    }
+
+    /**
+     * This method creates the sorted rows of a grouped report.
+     *
+     * @return list of {@link ReportRow} items.
+     */
+    private List<ReportRow> getRows() {
+        String keyName = query.getGroupBy().getKeyName();
+        List<ReportRow> rows = new ArrayList<>(groups.size());
+        for (Map.Entry<String, OrderAggregate> entry : groups.entrySet()) {
+            OrderAggregate group = entry.getValue();
+            rows.add(new ReportRow(keyName,
+                    entry.getKey(),
+                    group.getOrdersAmount(),
+                    group.getTotalQuantity(),
+                    group.getTotalPrice(),
+                    group.getAveragePrice()));
+        }
+
+        Comparator<ReportRow> byKey = Comparator.comparing(ReportRow::getKey);
+        if (query.getOrderBy() == null) {
+            rows.sort(byKey);
+        } else {
+            rows.sort(getAggregateComparator(query.getOrderBy()).reversed().thenComparing(byKey));
+        }
+        if (query.getLimit() > 0 && rows.size() > query.getLimit()) {
+            rows = new ArrayList<>(rows.subList(0, query.getLimit()));
+        }
+        return rows;
+    }
+
+    private static Comparator<ReportRow> getAggregateComparator(final OrderQuery.Aggregate aggregate) {
+        switch (aggregate) {
+            case ORDERS_AMOUNT:
+                return Comparator.comparingLong(ReportRow::getOrdersAmount);
+            case TOTAL_QUANTITY:
+                return Comparator.comparingLong(ReportRow::getTotalQuantity);
+            case TOTAL_PRICE:
+                return Comparator.comparing(ReportRow::getTotalPrice);
+            case AVERAGE_PRICE:
+                return Comparator.comparing(ReportRow::getAveragePrice);
+            default:
+                throw new IllegalArgumentException("Unsupported aggregate: " + aggregate);
+        }
+    }
+
+    /**
+     * This method returns the value of a scalar report.
+     *
+     * @return the value as {@link String}, or {@code null} if there is no value.
+     */
+    private String getScalar() {
+        BigDecimal value;
+        switch (query.getAggregate()) {
+            case ORDERS_AMOUNT:
+                return Long.toString(total.getOrdersAmount());
+            case TOTAL_QUANTITY:
+                return (total.getRows() == 0) ? null : Long.toString(total.getTotalQuantity());
+            case TOTAL_PRICE:
+                value = total.getTotalPrice();
+                break;
+            case AVERAGE_PRICE:
+                value = total.getAveragePrice();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported aggregate: " + query.getAggregate());
+        }
+        return (value == null) ? null : value.toPlainString();
+    }
+
+    /**
+     * This method returns the key of the group the order belongs to.
+     *
+     * @param order the order.
+     * @return client's ID or product's name.
+     */
+    private String getGroupKey(final Order order) {
+        return isGroupedByClient() ? order.getClientId() : order.getName();
+    }
+
+    private boolean isGroupedByClient() {
+        return query.getGroupBy() == OrderQuery.GroupBy.CLIENT_ID;
+    }
+}
@@ -0,0 +1,143 @@
+package com.przemekm.coreservicesapp.engine;
+
+import com.przemekm.coreservicesapp.datamodel.OrderQuery;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.function.ToIntFunction;
+
+/**
+ * Plan of a scan of the {@link OffHeapOrderStore} matching the filters of an {@link OrderQuery}.
+ * <p>
+ * The filters are pushed down to the layout of the records: the sets of client's IDs
+ * and names are translated to masks of the dictionary indexes and the price range
+ * is translated to a range of cents, so each record is tested by comparing
+ * primitive fields only, without creating any objects.
+ *
+ * @author Przemysław Motała
+ * @see ParallelReportEngine#getQueryData(OffHeapOrderStore, com.przemekm.coreservicesapp.datamodel.ReportParams)
+ */
+final class ScanPlan {
+    private final OffHeapOrderStore store;
+    private final boolean[] clientIdMask;
+    private final boolean[] nameMask;
+    private final long minRequestId;
+    private final long maxRequestId;
+    private final long minPriceCents;
+    private final long maxPriceCents;
+    private final int minQuantity;
+    private final int maxQuantity;
+    private final boolean empty;
+
+    /**
+     * This constructor compiles the filters of the query to a plan of scan of the store.
+     *
+     * @param query the query.
+     * @param store the store of orders.
+     */
+    ScanPlan(final OrderQuery query, final OffHeapOrderStore store) {
+        this.store = store;
+        clientIdMask = toMask(query.getClientIds(), store::getClientIdIndex);
+        nameMask = toMask(query.getNames(), store::getNameIndex);
+        minRequestId = (query.getMinRequestId() == null) ? Long.MIN_VALUE : query.getMinRequestId();
+        maxRequestId = (query.getMaxRequestId() == null) ? Long.MAX_VALUE : query.getMaxRequestId();
+        minPriceCents = toCents(query.getMinPrice(), RoundingMode.CEILING, Long.MIN_VALUE);
+        maxPriceCents = toCents(query.getMaxPrice(), RoundingMode.FLOOR, Long.MAX_VALUE);
+        minQuantity = (query.getMinQuantity() == null) ? Integer.MIN_VALUE : query.getMinQuantity();
+        maxQuantity = (query.getMaxQuantity() == null) ? Integer.MAX_VALUE : query.getMaxQuantity();
+        empty = (clientIdMask != null && clientIdMask.length == 0)
+                || (nameMask != null && nameMask.length == 0)
+                || minRequestId > maxRequestId
+                || minPriceCents > maxPriceCents
+                || minQuantity > maxQuantity;
+    }
+
+    /**
+     * This method checks if no record can match the plan,
+     * e.g. if none of the chosen clients has any orders.
+     *
+     * @return {@code true} if the scan can be skipped.
+     */
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * This method checks if the record matches the filters of the query.
+     *
+     * @param row row ID of the record.
+     * @return {@code true} if the record matches the query.
+     */
+    boolean test(final int row) {
+        if (clientIdMask != null && !isSet(clientIdMask, store.getClientIdIndex(row))) {
+            return false;
+        }
+        if (nameMask != null && !isSet(nameMask, store.getNameIndex(row))) {
+            return false;
+        }
+        long requestId = store.getRequestId(row);
+        if (requestId < minRequestId || requestId > maxRequestId) {
+            return false;
+        }
+        long priceCents = store.getPriceCents(row);
+        if (priceCents < minPriceCents || priceCents > maxPriceCents) {
+            return false;
+        }
+        int quantity = store.getQuantity(row);
+        return quantity >= minQuantity && quantity <= maxQuantity;
+    }
+
+    private static boolean isSet(final boolean[] mask, final int index) {
+        //Values added to the dictionary after the plan was created are not in the mask.
+        return index < mask.length && mask[index];
+    }
+
+    /**
+     * This method creates a mask of the dictionary indexes of the values.
+     *
+     * @param values the values, or an empty collection if the field is not filtered.
+     * @param indexOf function returning the dictionary index of a value, or {@code -1}.
+     * @return the mask, an empty mask if none of the values is in the dictionary,
+     * or {@code null} if the field is not filtered.
+     */
+    private static boolean[] toMask(final Collection<String> values, final ToIntFunction<String> indexOf) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        int maxIndex = -1;
+        for (String value : values) {
+            maxIndex = Math.max(maxIndex, indexOf.applyAsInt(value));
+        }
+        boolean[] mask = new boolean[maxIndex + 1];
+        for (String value : values) {
+            int index = indexOf.applyAsInt(value);
+            if (index >= 0) {
+                mask[index] = true;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * This method converts a price to cents, rounding it to the cents of the stored prices.
+     *
+     * @param price the price, or {@code null}.
+     * @param roundingMode direction of rounding.
+     * @param defaultValue value returned if the price is {@code null} or doesn't fit in {@code long}.
+     * @return the price in cents.
+     */
+    private static long toCents(final BigDecimal price, final RoundingMode roundingMode, final long defaultValue) {
+        if (price == null) {
+            return defaultValue;
+        }
+        BigDecimal cents = price.movePointRight(2).setScale(0, roundingMode);
+        if (cents.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) > 0) {
+            return Long.MAX_VALUE;
+        }
+        if (cents.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) < 0) {
+            return Long.MIN_VALUE;
+        }
+        return cents.longValue();
+    }
+}
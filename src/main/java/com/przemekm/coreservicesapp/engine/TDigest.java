@@ -0,0 +1,200 @@
+package com.przemekm.coreservicesapp.engine;
+
+import java.util.Arrays;
+
+/**
+ * Merging t-digest sketch estimating the quantiles of {@code double} values.
+ * <p>
+ * The values are kept as centroids (mean and weight). New values are
+ * collected in a buffer, which is merged with the centroids when it's full.
+ * The size of the centroids is limited by the scale function
+ * {@code k(q) = compression / (2 * PI) * asin(2 * q - 1)}, so the centroids
+ * near the median are large and the centroids at the tails hold only a few
+ * values. Thus the memory of the sketch depends only on the compression
+ * and the estimates of extreme quantiles are the most accurate.
+ * <p>
+ * Sketches can be merged - the result estimates the quantiles
+ * of the values of both sketches.
+ *
+ * @author Przemysław Motała
+ * @see PercentileSketches
+ */
+public final class TDigest {
+    /**
+     * This parameter defines the minimal compression of the sketch.
+     */
+    private static final double MIN_COMPRESSION = 10;
+
+    private final double compression;
+    private double[] means = new double[0];
+    private double[] weights = new double[0];
+    private final double[] bufferMeans;
+    private final double[] bufferWeights;
+    private int buffered;
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * This constructor creates an empty {@link TDigest} sketch.
+     *
+     * @param compression maximal amount of centroids, at least {@code 10}.
+     * Higher compression gives more accurate estimates.
+     * @throws IllegalArgumentException if the compression is too low.
+     */
+    public TDigest(final double compression) {
+        if (!(compression >= MIN_COMPRESSION)) {
+            throw new IllegalArgumentException("Compression has to be at least " + MIN_COMPRESSION + "!");
+        }
+        this.compression = compression;
+        this.bufferMeans = new double[(int) Math.ceil(compression) * 5];
+        this.bufferWeights = new double[bufferMeans.length];
+    }
+
+    /**
+     * This method adds a value to the sketch.
+     *
+     * @param value the value.
+     */
+    public void add(final double value) {
+        add(value, 1);
+    }
+
+    /**
+     * This method adds all of the values of another sketch to this one.
+     *
+     * @param other the sketch to be merged into this one.
+     */
+    public void merge(final TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.means.length; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * This method estimates the value of the specified quantile.
+     * The estimate is interpolated between the centers of the centroids,
+     * and between the extreme values and the first and last centroid.
+     *
+     * @param quantile the quantile, from {@code 0} to {@code 1}.
+     * @return the estimated value, or {@link Double#NaN} if the sketch is empty.
+     */
+    public double quantile(final double quantile) {
+        compress();
+        if (means.length == 0) {
+            return Double.NaN;
+        }
+        double index = Math.max(0, Math.min(1, quantile)) * totalWeight;
+
+        double cumulative = weights[0] / 2;
+        if (index < cumulative) {
+            return min + (means[0] - min) * index / cumulative;
+        }
+        for (int i = 0; i < means.length - 1; i++) {
+            double distance = (weights[i] + weights[i + 1]) / 2;
+            if (index < cumulative + distance) {
+                return means[i] + (means[i + 1] - means[i]) * (index - cumulative) / distance;
+            }
+            cumulative += distance;
+        }
+        int last = means.length - 1;
+        return means[last] + (max - means[last]) * Math.min(1, (index - cumulative) / (weights[last] / 2));
+    }
+
+    /**
+     * This method returns the amount of values added to the sketch.
+     *
+     * @return the total weight of the centroids.
+     */
+    public long size() {
+        return (long) totalWeight;
+    }
+
+    public double getCompression() {
+        return compression;
+    }
+
+    /**
+     * This method creates a copy of the sketch.
+     *
+     * @return a new sketch with the same values.
+     */
+    public TDigest copy() {
+        TDigest copy = new TDigest(compression);
+        copy.merge(this);
+        return copy;
+    }
+
+    private void add(final double mean, final double weight) {
+        if (buffered == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[buffered] = mean;
+        bufferWeights[buffered] = weight;
+        buffered++;
+        totalWeight += weight;
+        min = Math.min(min, mean);
+        max = Math.max(max, mean);
+    }
+
+    /**
+     * This method merges the buffer with the centroids. Neighbouring centroids
+     * (ordered by mean) are merged as long as the merged centroid spans
+     * at most one unit of the scale function.
+     */
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        int amount = means.length + buffered;
+        double[] allMeans = Arrays.copyOf(means, amount);
+        double[] allWeights = Arrays.copyOf(weights, amount);
+        System.arraycopy(bufferMeans, 0, allMeans, means.length, buffered);
+        System.arraycopy(bufferWeights, 0, allWeights, means.length, buffered);
+        buffered = 0;
+
+        Integer[] order = new Integer[amount];
+        for (int i = 0; i < amount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (first, second) -> Double.compare(allMeans[first], allMeans[second]));
+
+        double[] mergedMeans = new double[amount];
+        double[] mergedWeights = new double[amount];
+        int merged = 0;
+        double mean = allMeans[order[0]];
+        double weight = allWeights[order[0]];
+        double weightSoFar = 0;
+        double kLeft = scale(0);
+        for (int i = 1; i < amount; i++) {
+            double nextMean = allMeans[order[i]];
+            double nextWeight = allWeights[order[i]];
+            double proposedWeight = weight + nextWeight;
+            if (scale((weightSoFar + proposedWeight) / totalWeight) - kLeft <= 1) {
+                mean += (nextMean - mean) * nextWeight / proposedWeight;
+                weight = proposedWeight;
+            } else {
+                mergedMeans[merged] = mean;
+                mergedWeights[merged] = weight;
+                merged++;
+                weightSoFar += weight;
+                kLeft = scale(weightSoFar / totalWeight);
+                mean = nextMean;
+                weight = nextWeight;
+            }
+        }
+        mergedMeans[merged] = mean;
+        mergedWeights[merged] = weight;
+        merged++;
+
+        means = Arrays.copyOf(mergedMeans, merged);
+        weights = Arrays.copyOf(mergedWeights, merged);
+    }
+
+    private double scale(final double quantile) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.max(0, Math.min(1, quantile)) - 1);
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains classes used to compute reports
+ * in memory, in parallel to the H2 database.
+ */
+package com.przemekm.coreservicesapp.engine;
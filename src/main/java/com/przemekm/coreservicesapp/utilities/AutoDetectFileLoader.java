@@ -0,0 +1,312 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import com.przemekm.coreservicesapp.controllers.MainWindow;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Class used to load files with orders, which detects
+ * the format of the file based on its content.
+ * <p>
+ * Plain CSV and XML files are passed to {@link CSVFileLoader} and
+ * {@link XMLFileLoader}. GZIP files and ZIP bundles are decompressed
+ * while being read - the decompression runs in a separate thread,
+ * so it overlaps with parsing of the already decompressed data.
+ *
+ * @author Przemysław Motała
+ * @see CSVFileLoader
+ * @see XMLFileLoader
+ */
+public class AutoDetectFileLoader implements FileLoader {
+    /**
+     * This parameter defines the amount of bytes
+     * checked to detect the format of data.
+     */
+    private static final int SNIFF_SIZE = 64;
+
+    /**
+     * This parameter defines the size of the buffer between
+     * the decompressing thread and the parsing thread.
+     */
+    private static final int PIPE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Formats of data recognized by the {@link AutoDetectFileLoader}.
+     */
+    private enum Format {
+        GZIP, ZIP, XML, CSV, UNKNOWN
+    }
+
+    private long savedOrders;
+
+    /**
+     * This method loads data from the file, detecting its format.
+     *
+     * @param file the {@link File} to read from.
+     * @return {@code true} if the file has at least one order in proper format.
+     * @see #load(InputStream, String)
+     */
+    @Override
+    public boolean load(File file) {
+        try (InputStream input = new FileInputStream(file)) {
+            return load(input, file.getName());
+        } catch (IOException e) {
+            System.out.println("Couldn't read the file!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * This method loads data from the {@link InputStream}, detecting its format.
+     * <p>
+     * The format is detected with use of {@link #detectFormat(InputStream)} method.
+     * Compressed data is decompressed and its content is detected again.
+     * Each entry of a ZIP bundle is loaded separately.
+     *
+     * @param input the {@link InputStream} to read from.
+     * @param sourceName name of the source displayed in messages.
+     * @return {@code true} if the stream has at least one order in proper format.
+     * @see #detectFormat(InputStream)
+     */
+    @Override
+    public boolean load(InputStream input, String sourceName) {
+        savedOrders = 0;
+        return loadDetected(input, sourceName);
+    }
+
+    @Override
+    public long getSavedOrders() {
+        return savedOrders;
+    }
+
+    /**
+     * This method loads data from the {@link InputStream}, detecting its format,
+     * and adds the amount of saved orders to the {@link #savedOrders}.
+     *
+     * @param input the {@link InputStream} to read from.
+     * @param sourceName name of the source displayed in messages.
+     * @return {@code true} if the stream has at least one order in proper format.
+     * @see #load(InputStream, String)
+     */
+    private boolean loadDetected(final InputStream input, final String sourceName) {
+        try {
+            InputStream bufferedInput = new BufferedInputStream(input);
+            switch (detectFormat(bufferedInput)) {
+                case GZIP:
+                    return loadDecompressed(new GZIPInputStream(bufferedInput, PIPE_BUFFER_SIZE),
+                            stripSuffix(sourceName, ".gz"));
+                case ZIP:
+                    return loadZip(new ZipInputStream(bufferedInput), sourceName);
+                case XML:
+                    return loadWith(new XMLFileLoader(), bufferedInput, sourceName);
+                case CSV:
+                    return loadWith(new CSVFileLoader(), bufferedInput, sourceName);
+                default:
+                    MainWindow.setTextToDisplay("Wrong file type of file "
+                            + sourceName
+                            + System.lineSeparator());
+                    return false;
+            }
+        } catch (IOException e) {
+            System.out.println("Couldn't read the file!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private boolean loadWith(final FileLoader loader, final InputStream input, final String sourceName) {
+        boolean isLoaded = loader.load(input, sourceName);
+        savedOrders += loader.getSavedOrders();
+        return isLoaded;
+    }
+
+    /**
+     * This method loads all of the entries of a ZIP bundle.
+     *
+     * @param zipInput the {@link ZipInputStream} to read from.
+     * @param sourceName name of the ZIP bundle.
+     * @return {@code true} if at least one of the entries has orders in proper format.
+     * @throws IOException if the bundle couldn't be read.
+     */
+    private boolean loadZip(final ZipInputStream zipInput, final String sourceName) throws IOException {
+        boolean isBundleGood = false;
+
+        try (ZipInputStream bundle = zipInput) {
+            ZipEntry entry;
+            while ((entry = bundle.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    isBundleGood |= loadDecompressed(new FilterInputStream(bundle) {
+                        @Override
+                        public void close() {
+                            //The bundle is closed after the last entry.
+                        }
+                    }, sourceName + "/" + entry.getName());
+                }
+            }
+        }
+        return isBundleGood;
+    }
+
+    /**
+     * This method reads the decompressed data in a separate thread
+     * and passes it through a pipe to the loader detected with
+     * {@link #loadDetected(InputStream, String)} method.
+     * <p>
+     * The pipe is closed when the decompression fails, so the loader would
+     * treat truncated or corrupted data as a proper end of data.
+     * The error is checked after the thread ends and the load fails then.
+     *
+     * @param decompressedInput the stream which decompresses the data.
+     * @param sourceName name of the decompressed source.
+     * @return {@code true} if the data has been decompressed
+     * and has at least one order in proper format.
+     * @throws IOException if the pipe couldn't be created.
+     * @see PipedInputStream
+     */
+    private boolean loadDecompressed(final InputStream decompressedInput,
+                                     final String sourceName) throws IOException {
+        PipedInputStream pipedInput = new PipedInputStream(PIPE_BUFFER_SIZE);
+        Decompressor decompressor = new Decompressor(decompressedInput, new PipedOutputStream(pipedInput));
+
+        Thread decompressingThread = new Thread(decompressor, "decompression");
+        decompressingThread.setDaemon(true);
+        decompressingThread.start();
+
+        boolean isLoaded;
+        try (InputStream input = pipedInput) {
+            isLoaded = loadDetected(input, sourceName);
+        } finally {
+            try {
+                decompressingThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (decompressor.getError() != null) {
+            System.out.println("Couldn't decompress " + sourceName + ": " + decompressor.getError().getMessage());
+            MainWindow.setTextToDisplay("File "
+                    + sourceName
+                    + " is corrupted or truncated!"
+                    + System.lineSeparator());
+            return false;
+        }
+        return isLoaded;
+    }
+
+    /**
+     * This class copies the decompressed data to the pipe
+     * and keeps the error of decompression, if it occurs.
+     * <p>
+     * Writing to the pipe fails when the loader stops reading
+     * before the end of data, which isn't treated as an error.
+     */
+    private static class Decompressor implements Runnable {
+        private final InputStream decompressedInput;
+        private final OutputStream pipedOutput;
+        private volatile IOException error;
+
+        private Decompressor(final InputStream decompressedInput, final OutputStream pipedOutput) {
+            this.decompressedInput = decompressedInput;
+            this.pipedOutput = pipedOutput;
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[PIPE_BUFFER_SIZE];
+            int length;
+            try (InputStream source = decompressedInput; OutputStream output = pipedOutput) {
+                while ((length = source.read(buffer)) != -1) {
+                    try {
+                        output.write(buffer, 0, length);
+                    } catch (IOException e) {
+                        //The loader has stopped reading.
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+        private IOException getError() {
+            return error;
+        }
+    }
+
+    /**
+     * This method detects the format of data based on its first bytes.
+     * <p>
+     * The stream is reset to its initial position afterwards.
+     * GZIP and ZIP data is recognized by magic numbers. Text data
+     * starting with {@code <} (after an optional byte order mark and white spaces)
+     * is treated as XML, other text data is treated as CSV.
+     *
+     * @param input the stream supporting {@link InputStream#mark(int)}.
+     * @return detected format of data.
+     * @throws IOException if the stream couldn't be read.
+     */
+    private Format detectFormat(final InputStream input) throws IOException {
+        byte[] header = new byte[SNIFF_SIZE];
+        input.mark(SNIFF_SIZE);
+        int length = 0;
+        int readBytes;
+        while (length < SNIFF_SIZE
+                && (readBytes = input.read(header, length, SNIFF_SIZE - length)) != -1) {
+            length += readBytes;
+        }
+        input.reset();
+
+        if (length >= 2 && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B) {
+            return Format.GZIP;
+        }
+        if (length >= 4 && header[0] == 'P' && header[1] == 'K' && header[2] == 3 && header[3] == 4) {
+            return Format.ZIP;
+        }
+
+        int i = 0;
+        if (length >= 3 && (header[0] & 0xFF) == 0xEF
+                && (header[1] & 0xFF) == 0xBB && (header[2] & 0xFF) == 0xBF) {
+            i = 3; //Skip the UTF-8 byte order mark.
+        }
+        while (i < length && Character.isWhitespace(header[i])) {
+            i++;
+        }
+        if (i < length && header[i] == '<') {
+            return Format.XML;
+        }
+        for (int j = i; j < length; j++) {
+            if (header[j] >= 0 && header[j] < ' ' && header[j] != '\t'
+                    && header[j] != '\r' && header[j] != '\n') {
+                return Format.UNKNOWN;
+            }
+        }
+        return Format.CSV;
+    }
+
+    /**
+     * This method removes the specified suffix from the name of the source.
+     *
+     * @param sourceName name of the source.
+     * @param suffix suffix to be removed.
+     * @return name of the source without the suffix.
+     */
+    private String stripSuffix(final String sourceName, final String suffix) {
+        if (sourceName.toLowerCase().endsWith(suffix)) {
+            return sourceName.substring(0, sourceName.length() - suffix.length());
+        }
+        return sourceName;
+    }
+}
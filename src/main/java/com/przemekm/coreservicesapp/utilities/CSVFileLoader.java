@@ -3,18 +3,31 @@ package com.przemekm.coreservicesapp.utilities;
 import com.przemekm.coreservicesapp.controllers.MainWindow;
 import com.przemekm.coreservicesapp.database.H2Database;
 import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.ValidationResult;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 public class CSVFileLoader implements FileLoader {
+    /**
+     * This parameter defines the initial size of a buffer
+     * used for reading a single line of the file.
+     */
+    private static final int LINE_BUFFER_SIZE = 256;
+
+    private long savedOrders;
+
     /**
      * This method loads data from the CSV file.
      * <p>
      * Each line of proper data is saved in a H2 database
-     * with use of {@link H2Database#saveData(Order)} method.
-     * If the file has no proper data or one of the lines is in a wrong format,
-     * an {@link IllegalArgumentException} is caught and a message is displayed.
+     * in batches with use of {@link OrderBatchWriter}.
+     * Lines in a wrong format are written to the file of the rejected lines
+     * by {@link RejectWriter}, and their amount is displayed when the file is loaded.
      * <p>
      * It is assumed that the format of CSV file is as follows:
      * <pre>
@@ -26,54 +39,199 @@ public class CSVFileLoader implements FileLoader {
      *
      * @param file the {@link File} to read from.
      * @return {@code true} if the file has at least one line of data in proper format.
-     * @see H2Database#saveData(Order)
-     * @see BufferedReader
-     * @see InputStreamReader
-     * @see FileInputStream
+     * @see H2Database#saveData(java.util.List)
+     * @see OrderBatchWriter
+     * @see RejectWriter
      */
     @Override
     public boolean load(File file) {
-        boolean isFileNotEmpty = false;
+        try (InputStream input = new FileInputStream(file)) {
+            return load(input, file.getName());
+        } catch (IOException e) {
+            System.out.println("Couldn't read the file!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * This method loads data in CSV format from the {@link InputStream}.
+     * <p>
+     * The data is processed in the same way as in the {@link #load(File)} method.
+     *
+     * @param input the {@link InputStream} to read from.
+     * @param sourceName name of the source displayed in messages.
+     * @return {@code true} if the stream has at least one line of data in proper format.
+     * @see #load(File)
+     */
+    @Override
+    public boolean load(InputStream input, String sourceName) {
+        OrderBatchWriter writer = new OrderBatchWriter();
+        RejectWriter.Source rejects = RejectWriter.getInstance().forSource(sourceName);
+
+        try {
+            loadLines(input, 0, true, writer, rejects);
+        } catch (IOException e) {
+            System.out.println("Couldn't read the file!");
+            e.printStackTrace();
+            return false;
+        } finally {
+            savedOrders = writer.getSavedOrders();
+        }
+
+        if (writer.getSavedOrders() == 0 && writer.getDuplicateOrders() > 0) {
+            MainWindow.setTextToDisplay("All orders in CSV file "
+                    + sourceName
+                    + " have been loaded before - "
+                    + writer.getDuplicateOrders() + " duplicates skipped!"
+                    + rejects.getSummary()
+                    + System.lineSeparator());
+            return false;
+        } else if (writer.getSavedOrders() == 0) {
+            MainWindow.setTextToDisplay("No suitable lines found in CSV file "
+                    + sourceName + "!"
+                    + rejects.getSummary()
+                    + System.lineSeparator());
+            return false;
+        } else {
+            MainWindow.setTextToDisplay("CSV file "
+                    + sourceName
+                    + " loaded successfully!"
+                    + (writer.getDuplicateOrders() > 0
+                    ? " " + writer.getDuplicateOrders() + " duplicates skipped."
+                    : "")
+                    + rejects.getSummary()
+                    + System.lineSeparator());
+            return true;
+        }
+    }
+
+    /**
+     * This method loads data appended to the CSV file
+     * after the specified byte offset.
+     * <p>
+     * Only complete lines (terminated with a line separator) are loaded,
+     * so a file which is still being written can be read again later.
+     * If the writer has been created for the file, the offset after the
+     * loaded lines is committed together with each batch of orders.
+     * The header line is skipped only if the {@code offset} is equal to {@code 0}.
+     * The numbers of the rejected lines are counted from the {@code offset}.
+     *
+     * @param file the {@link File} to read from.
+     * @param offset the byte offset of the first line to be loaded.
+     * @param writer the {@link OrderBatchWriter} used to save loaded orders.
+     * @return the byte offset right after the last committed line.
+     * @throws IOException if the file couldn't be read.
+     * @see #load(File)
+     */
+    public long load(final File file, final long offset, final OrderBatchWriter writer)
+            throws IOException {
+        RejectWriter.Source rejects = RejectWriter.getInstance().forSource(file.getName());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return loadLines(Channels.newInputStream(channel.position(offset)), offset, false, writer, rejects);
+        } finally {
+            if (rejects.getRejectedLines() > 0) {
+                MainWindow.setTextToDisplay("CSV file "
+                        + file.getName()
+                        + " has lines in a wrong format!"
+                        + rejects.getSummary()
+                        + System.lineSeparator());
+            }
+        }
+    }
+
+    /**
+     * This method reads the CSV data line by line and saves each
+     * line of proper data with use of {@link OrderBatchWriter}.
+     * The lines are checked with {@link Order#validate(String[])}, so the lines
+     * in a wrong format are passed to the {@link RejectWriter} without any exceptions.
+     * <p>
+     * The returned offset is moved forward only when the batch
+     * containing the read lines has been committed to the database.
+     *
+     * @param source the {@link InputStream} to read from.
+     * @param offset the byte offset of the first line in the source.
+     * @param readLastLine {@code true} if the last line without a line separator should be loaded too.
+     * @param writer the {@link OrderBatchWriter} used to save loaded orders.
+     * @param rejects the counter of the rejected lines of the source.
+     * @return the byte offset right after the last committed line.
+     * @throws IOException if the source couldn't be read.
+     * @see OrderBatchWriter
+     */
+    private long loadLines(final InputStream source,
+                           final long offset,
+                           final boolean readLastLine,
+                           final OrderBatchWriter writer,
+                           final RejectWriter.Source rejects) throws IOException {
+        long committedOffset = offset;
+        long position = offset;
+        boolean isHeaderLine = (offset == 0);
+        byte[] lineBuffer = new byte[LINE_BUFFER_SIZE];
+        int lineLength = 0;
+        long lineNumber = 0;
 
-        try (BufferedReader reader
-                     = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
-            String line;
+        try (InputStream input = new BufferedInputStream(source)) {
+            int currentByte;
+
+            while (true) {
+                currentByte = input.read();
+                if (currentByte == -1 && !(readLastLine && lineLength > 0)) {
+                    break;
+                }
+                if (currentByte != -1) {
+                    position++;
+                    if (currentByte != '\n') {
+                        if (lineLength == lineBuffer.length) {
+                            lineBuffer = Arrays.copyOf(lineBuffer, lineLength * 2);
+                        }
+                        lineBuffer[lineLength++] = (byte) currentByte;
+                        continue;
+                    }
+                }
 
-            //Skip the first line (CSV headers).
-            line = reader.readLine();
+                /*
+                    A complete line has been read.
+                    The trailing carriage return is removed.
+                 */
+                if (lineLength > 0 && lineBuffer[lineLength - 1] == '\r') {
+                    lineLength--;
+                }
+                String line = new String(lineBuffer, 0, lineLength, StandardCharsets.UTF_8);
+                lineLength = 0;
+                lineNumber++;
+                writer.setOffset(position);
 
-            while ((line = reader.readLine()) != null) {
-                if (line.length() > 0) {
+                if (isHeaderLine) {
+                    //Skip the first line (CSV headers).
+                    isHeaderLine = false;
+                } else if (line.length() > 0) {
                     String[] data = line.split(",");
+                    ValidationResult result = Order.validate(data);
 
-                    try {
-                        H2Database.getInstance()
-                                .saveData(new Order(data));
-                        isFileNotEmpty = true;
-                    } catch (IllegalArgumentException e) {
-                        MainWindow.setTextToDisplay("Line \""
-                                + line
-                                + "\" skipped - wrong format!"
-                                + System.lineSeparator());
+                    if (!result.isValid()) {
+                        rejects.reject(lineNumber, result.getMessage(), line);
+                    } else if (!writer.add(Order.ofValidatedData(data))) {
+                        return committedOffset;
                     }
                 }
-            }
 
-            if (!isFileNotEmpty) {
-                MainWindow.setTextToDisplay("No suitable lines found in CSV file "
-                        + file.getName() + "!"
-                        + System.lineSeparator());
-                return false;
-            } else {
-                MainWindow.setTextToDisplay("CSV file "
-                        + file.getName()
-                        + " loaded successfully!" + System.lineSeparator());
-                return true;
+                if (currentByte == -1) {
+                    break;
+                }
+                if (writer.getPendingOrders() == 0) {
+                    committedOffset = position;
+                }
             }
-        } catch (IOException e) {
-            System.out.println("Couldn't read the file!");
-            e.printStackTrace();
-            return false;
         }
+
+        if (writer.flush()) {
+            committedOffset = position - lineLength;
+        }
+        return committedOffset;
+    }
+
+    @Override
+    public long getSavedOrders() {
+        return savedOrders;
     }
 }
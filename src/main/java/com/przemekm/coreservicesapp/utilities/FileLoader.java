@@ -1,6 +1,9 @@
 package com.przemekm.coreservicesapp.utilities;
 
 import java.io.File;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -10,4 +13,28 @@ public interface FileLoader {
             Arrays.asList("clientId", "requestId", "name", "quantity", "price"));
 
     boolean load(File file);
+
+    boolean load(InputStream input, String sourceName);
+
+    /**
+     * This method loads data from the {@link ReadableByteChannel},
+     * such as a pipe or a socket, without saving it in a file first.
+     * The channel is read until its end.
+     *
+     * @param channel the {@link ReadableByteChannel} to read from.
+     * @param sourceName name of the source displayed in messages.
+     * @return {@code true} if the channel has at least one order in proper format.
+     * @see #load(InputStream, String)
+     */
+    default boolean load(final ReadableByteChannel channel, final String sourceName) {
+        return load(Channels.newInputStream(channel), sourceName);
+    }
+
+    /**
+     * This method returns the amount of orders saved in the database
+     * by the last call of a {@code load} method.
+     *
+     * @return amount of saved orders, without the skipped duplicates.
+     */
+    long getSavedOrders();
 }
@@ -0,0 +1,242 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import com.przemekm.coreservicesapp.controllers.MainWindow;
+import com.przemekm.coreservicesapp.database.H2Database;
+import com.przemekm.coreservicesapp.engine.OrderDeduplicator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class used to watch a directory for new or growing files with orders.
+ * <p>
+ * New XML and compressed files are loaded once they can be parsed. CSV files are tailed -
+ * only the lines appended after the last committed byte offset are loaded.
+ * The offset of a CSV file is committed in the database in the same transaction
+ * as each batch of its orders, so every line is loaded exactly once.
+ * XML and compressed files can't be tailed, so the changes of a file
+ * which has been loaded already are skipped, instead of loading its orders again.
+ * <p>
+ * The offsets are kept in the same in-memory database as the orders,
+ * so all of the files are loaded again after the application is restarted.
+ *
+ * @author Przemysław Motała
+ * @see WatchService
+ * @see CSVFileLoader#load(File, long, OrderBatchWriter)
+ * @see H2Database#getCommittedOffset(String)
+ */
+public class FolderWatcher implements Runnable {
+    /**
+     * This parameter defines how long (in seconds) the watcher waits for
+     * new events before the directory is scanned again.
+     */
+    private static final long POLL_TIMEOUT_SECONDS = 1;
+
+    private final Path directory;
+    private final Runnable onOrdersLoaded;
+    private final CSVFileLoader csvFileLoader = new CSVFileLoader();
+    private final AutoDetectFileLoader autoDetectFileLoader = new AutoDetectFileLoader();
+
+    /**
+     * This map contains the deduplicators of the tailed CSV files, so the appended
+     * lines are compared with all of the lines loaded from the same file.
+     */
+    private final Map<String, OrderDeduplicator> deduplicators = new HashMap<>();
+
+    /**
+     * This set contains the loaded XML and compressed files, which have
+     * been changed afterwards, so the message is displayed only once.
+     */
+    private final Set<String> changedFiles = new HashSet<>();
+    private volatile boolean isRunning;
+
+    /**
+     * This constructor creates a {@link FolderWatcher} object
+     * for the specified directory.
+     *
+     * @param directory the directory to be watched.
+     * @param onOrdersLoaded action called (from the watcher's thread)
+     *                       whenever new orders have been saved in the database.
+     */
+    public FolderWatcher(final Path directory, final Runnable onOrdersLoaded) {
+        this.directory = directory;
+        this.onOrdersLoaded = onOrdersLoaded;
+    }
+
+    /**
+     * This method starts watching the directory
+     * in a new daemon thread.
+     */
+    public void start() {
+        isRunning = true;
+        Thread thread = new Thread(this, "folder-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * This method stops watching the directory.
+     * Files which are being loaded at the moment are loaded completely.
+     */
+    public void stop() {
+        isRunning = false;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * This method registers the directory in a {@link WatchService}
+     * and loads files for each reported event until {@link #stop()} is called.
+     * <p>
+     * All of the files in the directory are checked at the start
+     * and whenever the events overflow.
+     *
+     * @see WatchService
+     */
+    @Override
+    public void run() {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            scanDirectory();
+
+            while (isRunning) {
+                WatchKey key = watchService.poll(POLL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                if (key == null) {
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        scanDirectory();
+                    } else {
+                        loadFile(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    MainWindow.setTextToDisplay("Directory "
+                            + directory
+                            + " is no longer accessible!"
+                            + System.lineSeparator());
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Couldn't watch the directory!");
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * This method loads new data from all of the files in the directory.
+     *
+     * @throws IOException if the directory couldn't be read.
+     * @see #loadFile(Path)
+     */
+    private void scanDirectory() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                loadFile(path);
+            }
+        }
+    }
+
+    /**
+     * This method loads new data from the specified file.
+     * <p>
+     * CSV files are loaded from the last committed offset.
+     * XML and compressed files are loaded completely, if they haven't been
+     * loaded successfully yet. Otherwise, if their size has changed, a message is displayed.
+     *
+     * @param path the file to be loaded.
+     */
+    private void loadFile(final Path path) {
+        String fileName = path.getFileName().toString();
+        File file = path.toFile();
+        if (!file.isFile()) {
+            return;
+        }
+        String source = path.toAbsolutePath().toString();
+        long committedOffset = H2Database.getInstance().getCommittedOffset(source);
+        long fileLength = file.length();
+
+        if (fileName.toLowerCase().endsWith(".csv")) {
+            long offset = Math.max(committedOffset, 0);
+            if (fileLength < offset) {
+                MainWindow.setTextToDisplay("CSV file "
+                        + fileName
+                        + " has been truncated - loading from the beginning!"
+                        + System.lineSeparator());
+                offset = 0;
+                deduplicators.remove(fileName);
+            }
+            if (fileLength == offset) {
+                return;
+            }
+            if (!deduplicators.containsKey(fileName)) {
+                deduplicators.put(fileName, H2Database.getInstance().newDeduplicator());
+            }
+            OrderBatchWriter writer = new OrderBatchWriter(deduplicators.get(fileName), source);
+            try {
+                csvFileLoader.load(file, offset, writer);
+            } catch (IOException e) {
+                System.out.println("Couldn't read the file!");
+                e.printStackTrace();
+            }
+            notifyOrdersLoaded(fileName, writer.getSavedOrders());
+        } else if (fileName.toLowerCase().endsWith(".xml")
+                || fileName.toLowerCase().endsWith(".gz")
+                || fileName.toLowerCase().endsWith(".zip")) {
+            if (committedOffset >= 0) {
+                if (committedOffset != fileLength && changedFiles.add(source)) {
+                    MainWindow.setTextToDisplay("File "
+                            + fileName
+                            + " has been changed after it was loaded - the changes are skipped!"
+                            + System.lineSeparator());
+                }
+                return;
+            }
+            /*
+                An XML or compressed file which is still being written can't be parsed,
+                so it's loaded again after the next modification.
+             */
+            if (autoDetectFileLoader.load(file)) {
+                H2Database.getInstance().saveCommittedOffset(source, fileLength);
+                notifyOrdersLoaded(fileName, autoDetectFileLoader.getSavedOrders());
+            }
+        }
+    }
+
+    /**
+     * This method displays a message and calls the {@link #onOrdersLoaded}
+     * action if any orders have been loaded from the file.
+     *
+     * @param fileName name of the loaded file.
+     * @param savedOrders amount of saved orders.
+     */
+    private void notifyOrdersLoaded(final String fileName, final long savedOrders) {
+        if (savedOrders > 0) {
+            MainWindow.setTextToDisplay("New orders loaded from watched file "
+                    + fileName
+                    + System.lineSeparator());
+            onOrdersLoaded.run();
+        }
+    }
+}
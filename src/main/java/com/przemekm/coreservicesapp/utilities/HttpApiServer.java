@@ -0,0 +1,442 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import com.przemekm.coreservicesapp.database.H2Database;
+import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.Report;
+import com.przemekm.coreservicesapp.datamodel.ReportParams;
+import com.przemekm.coreservicesapp.datamodel.ReportRow;
+import com.przemekm.coreservicesapp.datamodel.ReportType;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class used to serve a local HTTP API for loading orders and generating reports.
+ * <p>
+ * The server listens only on the loopback address and handles the requests
+ * on a bounded pool of {@link #THREADS_PROPERTY} threads. When all of the
+ * threads are busy and the queue is full, the requests are handled by the
+ * accepting thread, so new connections wait until the server catches up.
+ * <p>
+ * Endpoints:
+ * <ul>
+ * <li>{@code POST /orders?name=orders.csv} - loads the orders from the body of the request
+ * with use of {@link AutoDetectFileLoader}, so CSV, XML, GZIP and ZIP data is accepted,</li>
+ * <li>{@code GET /reports} - returns the names of the {@link ReportType} constants,</li>
+ * <li>{@code GET /reports/ORDERS_LIST?clientId=C1&clientId=C2&format=csv} - returns the
+ * report as JSON (default) or CSV. The list of orders is streamed with chunked
+ * transfer encoding. Approximate reports are requested with {@code approximate=true},</li>
+ * <li>{@code GET /clients} - returns the client's IDs of the loaded orders.</li>
+ * </ul>
+ *
+ * @author Przemysław Motała
+ * @see H2Database#submitQuery(ReportParams, java.util.function.DoubleConsumer)
+ * @see H2Database#streamQueryData(ReportParams, java.util.function.Consumer)
+ */
+public class HttpApiServer {
+    /**
+     * System property defining the port of the server.
+     * The server is started only if the property is set.
+     */
+    public static final String PORT_PROPERTY = "coreservicesapp.http.port";
+
+    /**
+     * System property defining the amount of threads handling the requests.
+     */
+    public static final String THREADS_PROPERTY = "coreservicesapp.http.threads";
+
+    private static final int DEFAULT_THREADS = 8;
+
+    /**
+     * This parameter defines the amount of requests
+     * waiting for a free thread.
+     */
+    private static final int QUEUE_SIZE = 64;
+
+    private static final String JSON_TYPE = "application/json; charset=UTF-8";
+    private static final String CSV_TYPE = "text/csv; charset=UTF-8";
+
+    private final int port;
+    private final Runnable onOrdersLoaded;
+    private final AutoDetectFileLoader fileLoader = new AutoDetectFileLoader();
+    private HttpServer server;
+    private ThreadPoolExecutor executor;
+
+    /**
+     * This constructor creates a {@link HttpApiServer} object.
+     *
+     * @param port port of the server, or {@code 0} to choose a free port.
+     * @param onOrdersLoaded action called (from the thread of the request)
+     *                       whenever new orders have been saved in the database.
+     */
+    public HttpApiServer(final int port, final Runnable onOrdersLoaded) {
+        this.port = port;
+        this.onOrdersLoaded = onOrdersLoaded;
+    }
+
+    /**
+     * This method starts the server.
+     *
+     * @throws IOException if the server couldn't be bound to the port.
+     */
+    public void start() throws IOException {
+        int threads = Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads,
+                threads,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "http-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/orders", this::handleOrders);
+        server.createContext("/reports", this::handleReports);
+        server.createContext("/clients", this::handleClients);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * This method stops the server.
+     * The requests which are being handled are interrupted.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * This method returns the port the server is listening on.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * This method loads the orders from the body of the request.
+     *
+     * @param exchange the request.
+     * @throws IOException if the response couldn't be sent.
+     */
+    private void handleOrders(final HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Method not allowed!");
+                return;
+            }
+            List<String> names = getParameters(exchange, "name");
+            String sourceName = names.isEmpty() ? "uploaded data" : names.get(0);
+
+            boolean isLoaded;
+            try (InputStream input = exchange.getRequestBody()) {
+                isLoaded = fileLoader.load(input, sourceName);
+            }
+            if (isLoaded) {
+                onOrdersLoaded.run();
+                sendText(exchange, 200, JSON_TYPE, "{\"loaded\":true}");
+            } else {
+                sendText(exchange, 422, JSON_TYPE, "{\"loaded\":false}");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * This method generates the report chosen in the path of the request.
+     *
+     * @param exchange the request.
+     * @throws IOException if the response couldn't be sent.
+     */
+    private void handleReports(final HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Method not allowed!");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath().replaceFirst("^/reports/?", "");
+            if (path.isEmpty()) {
+                List<String> reportTypes = new ArrayList<>();
+                for (ReportType reportType : ReportType.values()) {
+                    reportTypes.add(reportType.name());
+                }
+                sendText(exchange, 200, JSON_TYPE, toJsonArray(reportTypes));
+                return;
+            }
+
+            ReportType reportType;
+            try {
+                reportType = ReportType.valueOf(path);
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 404, "Unknown report type: " + path);
+                return;
+            }
+            ReportParams reportParams = ReportParams.forClients(reportType,
+                    getParameters(exchange, "clientId"),
+                    getParameters(exchange, "approximate").contains("true"));
+            boolean isCsv = getParameters(exchange, "format").contains("csv");
+
+            if (!reportParams.isSketched() && reportParams.getQuery().isList()) {
+                streamOrders(exchange, reportParams, isCsv);
+            } else {
+                Report<?> report = H2Database.getInstance().submitQuery(reportParams, null).getResult().get();
+                sendText(exchange, 200, isCsv ? CSV_TYPE : JSON_TYPE, isCsv ? toCsv(report) : toJson(report));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.out.println("Couldn't generate the report!");
+            e.printStackTrace();
+            sendError(exchange, 500, "Couldn't generate the report!");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * This method returns the client's IDs of the loaded orders.
+     *
+     * @param exchange the request.
+     * @throws IOException if the response couldn't be sent.
+     */
+    private void handleClients(final HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Method not allowed!");
+                return;
+            }
+            sendText(exchange, 200, JSON_TYPE, toJsonArray(H2Database.getInstance().getClientIdData()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * This method streams the orders of a list report with chunked
+     * transfer encoding, while they're read from the database.
+     * <p>
+     * If the query fails after the response has been started,
+     * the response is ended without the closing bracket (or with
+     * the last complete line of CSV), so it can't be mistaken for a complete one.
+     *
+     * @param exchange the request.
+     * @param reportParams parameters of the report.
+     * @param isCsv {@code true} if the orders should be sent as CSV.
+     * @throws IOException if the response couldn't be sent.
+     * @throws InterruptedException if the thread is interrupted while waiting for a connection.
+     */
+    private void streamOrders(final HttpExchange exchange,
+                              final ReportParams reportParams,
+                              final boolean isCsv) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", isCsv ? CSV_TYPE : JSON_TYPE);
+        exchange.sendResponseHeaders(200, 0);
+
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            if (isCsv) {
+                writer.write("Client_Id,Request_Id,Name,Quantity,Price\n");
+            } else {
+                writer.write("{\"report\":" + toJsonString(reportParams.getReportName()) + ",\"data\":[");
+            }
+            AtomicInteger written = new AtomicInteger();
+            H2Database.getInstance().streamQueryData(reportParams, order -> {
+                try {
+                    if (isCsv) {
+                        order.appendTo(writer).write('\n');
+                    } else {
+                        if (written.getAndIncrement() > 0) {
+                            writer.write(',');
+                        }
+                        writer.write(toJson(order));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (!isCsv) {
+                writer.write("]}");
+            }
+        } catch (SQLException e) {
+            System.out.println("Couldn't generate the report!");
+            e.printStackTrace();
+        } catch (UncheckedIOException e) {
+            //The client has closed the connection.
+            System.out.println("Couldn't send the report!");
+        }
+    }
+
+    private static void sendError(final HttpExchange exchange,
+                                  final int status,
+                                  final String message) throws IOException {
+        sendText(exchange, status, JSON_TYPE, "{\"error\":" + toJsonString(message) + "}");
+    }
+
+    private static void sendText(final HttpExchange exchange,
+                                 final int status,
+                                 final String contentType,
+                                 final String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * This method returns all of the values of the query parameter.
+     *
+     * @param exchange the request.
+     * @param name name of the parameter.
+     * @return the decoded values, in the order of the query.
+     */
+    private static List<String> getParameters(final HttpExchange exchange, final String name) {
+        List<String> values = new ArrayList<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return values;
+        }
+        try {
+            for (String parameter : query.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0 && URLDecoder.decode(parameter.substring(0, separator), "UTF-8").equals(name)) {
+                    values.add(URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return values;
+    }
+
+    /**
+     * This method formats the report as CSV, in the same format as the saved reports.
+     *
+     * @param report the report.
+     * @return the CSV text.
+     */
+    private static String toCsv(final Report<?> report) {
+        StringBuilder csv = new StringBuilder();
+        if (report.getReportData() instanceof List<?>) {
+            List<?> data = (List<?>) report.getReportData();
+            csv.append(data.isEmpty() ? "" : ((ReportRow) data.get(0)).getHeader() + "\n");
+            for (Object item : data) {
+                csv.append(item).append('\n');
+            }
+        } else {
+            csv.append(report.getReportName()).append(":\n").append(report.getReportData()).append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * This method formats the report as JSON. Values of scalar reports
+     * are sent as strings, as they're returned by the database.
+     *
+     * @param report the report.
+     * @return the JSON object.
+     */
+    private static String toJson(final Report<?> report) {
+        StringBuilder json = new StringBuilder("{\"report\":")
+                .append(toJsonString(report.getReportName()))
+                .append(",\"data\":");
+        if (report.getReportData() instanceof List<?>) {
+            json.append('[');
+            List<?> data = (List<?>) report.getReportData();
+            for (int i = 0; i < data.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                ReportRow row = (ReportRow) data.get(i);
+                json.append('{')
+                        .append(toJsonString(row.getKeyName())).append(':').append(toJsonString(row.getKey()))
+                        .append(",\"Orders_Amount\":").append(row.getOrdersAmount())
+                        .append(",\"Total_Quantity\":").append(row.getTotalQuantity())
+                        .append(",\"Total_Price\":").append(toJsonNumber(row.getTotalPrice()))
+                        .append(",\"Average_Price\":").append(toJsonNumber(row.getAveragePrice()))
+                        .append('}');
+            }
+            json.append(']');
+        } else {
+            json.append(toJsonString((String) report.getReportData()));
+        }
+        return json.append('}').toString();
+    }
+
+    private static String toJson(final Order order) {
+        return "{\"Client_Id\":" + toJsonString(order.getClientId())
+                + ",\"Request_Id\":" + order.requestIdAsLong()
+                + ",\"Name\":" + toJsonString(order.getName())
+                + ",\"Quantity\":" + order.quantityAsInt()
+                + ",\"Price\":" + toJsonNumber(order.getPrice()) + "}";
+    }
+
+    private static String toJsonArray(final List<String> values) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(toJsonString(values.get(i)));
+        }
+        return json.append(']').toString();
+    }
+
+    private static String toJsonNumber(final BigDecimal value) {
+        return (value == null) ? "null" : value.toPlainString();
+    }
+
+    /**
+     * This method formats the text as a JSON string,
+     * escaping quotes, backslashes and control characters.
+     *
+     * @param text the text, or {@code null}.
+     * @return the JSON string, or {@code null} literal.
+     */
+    private static String toJsonString(final String text) {
+        if (text == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char character = text.charAt(i);
+            if (character == '"' || character == '\\') {
+                json.append('\\').append(character);
+            } else if (character < ' ') {
+                json.append(String.format("\\u%04x", (int) character));
+            } else {
+                json.append(character);
+            }
+        }
+        return json.append('"').toString();
+    }
+}
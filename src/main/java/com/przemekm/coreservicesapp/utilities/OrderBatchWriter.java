@@ -0,0 +1,156 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import com.przemekm.coreservicesapp.database.H2Database;
+import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.engine.OrderDeduplicator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class used to collect loaded orders and save them
+ * in the H2 database in batches.
+ * <p>
+ * Orders which have been saved already are skipped,
+ * if the deduplication has been enabled.
+ * <p>
+ * A writer of a tailed file commits the offset of the file
+ * in the same transaction as each batch of its orders.
+ *
+ * @author Przemysław Motała
+ * @see H2Database#saveData(List)
+ */
+public class OrderBatchWriter {
+    /**
+     * This parameter defines the amount of orders saved in one batch.
+     */
+    public static final int BATCH_SIZE = 1000;
+
+    private final List<Order> batch = new ArrayList<>(BATCH_SIZE);
+    private final OrderDeduplicator deduplicator;
+    private final String source;
+    private long offset;
+    private boolean isOffsetPending;
+    private long savedOrders;
+    private long duplicateOrders;
+
+    /**
+     * This constructor creates an {@link OrderBatchWriter} object
+     * for the orders of a new file.
+     *
+     * @see H2Database#newDeduplicator()
+     */
+    public OrderBatchWriter() {
+        this(H2Database.getInstance().newDeduplicator());
+    }
+
+    /**
+     * This constructor creates an {@link OrderBatchWriter} object,
+     * which skips the duplicates detected by the specified deduplicator.
+     *
+     * @param deduplicator the deduplicator, or {@code null} to save all of the orders.
+     */
+    public OrderBatchWriter(final OrderDeduplicator deduplicator) {
+        this(deduplicator, null);
+    }
+
+    /**
+     * This constructor creates an {@link OrderBatchWriter} object,
+     * which commits the offset of the source together with the orders.
+     *
+     * @param deduplicator the deduplicator, or {@code null} to save all of the orders.
+     * @param source the source of the orders, such as the path of a file,
+     *               or {@code null} if the offsets shouldn't be saved.
+     * @see H2Database#getCommittedOffset(String)
+     */
+    public OrderBatchWriter(final OrderDeduplicator deduplicator, final String source) {
+        this.deduplicator = deduplicator;
+        this.source = source;
+    }
+
+    /**
+     * This method sets the position in the source right after the line
+     * which is added next (or skipped). The offset is committed with the
+     * next batch, or on its own by {@link #flush()}, if there are no more orders.
+     *
+     * @param offset the offset in the source.
+     */
+    public void setOffset(final long offset) {
+        if (source != null) {
+            this.offset = offset;
+            isOffsetPending = true;
+        }
+    }
+
+    /**
+     * This method adds an order to the current batch.
+     * If the batch is full, it is saved in the database
+     * with use of {@link #flush()} method.
+     *
+     * @param order an order to be saved in the database.
+     * @return {@code false} if the batch was full and couldn't be saved.
+     * @see #flush()
+     */
+    public boolean add(final Order order) {
+        batch.add(order);
+        if (batch.size() >= BATCH_SIZE) {
+            return flush();
+        }
+        return true;
+    }
+
+    /**
+     * This method saves all of the collected orders in the database
+     * with use of {@link H2Database#saveData(List, OrderDeduplicator, String, long)} method.
+     *
+     * @return {@code true} if the batch has been committed or was empty.
+     * @see H2Database#saveData(List, OrderDeduplicator, String, long)
+     */
+    public boolean flush() {
+        if (batch.isEmpty() && !isOffsetPending) {
+            return true;
+        }
+        int batchSavedOrders = H2Database.getInstance().saveData(batch,
+                deduplicator,
+                isOffsetPending ? source : null,
+                offset);
+        boolean isCommitted = batchSavedOrders >= 0;
+        if (isCommitted) {
+            isOffsetPending = false;
+            savedOrders += batchSavedOrders;
+            duplicateOrders += batch.size() - batchSavedOrders;
+        }
+        batch.clear();
+        return isCommitted;
+    }
+
+    /**
+     * This method returns the amount of orders
+     * collected in the current batch, which are not saved yet.
+     *
+     * @return amount of pending orders.
+     */
+    public int getPendingOrders() {
+        return batch.size();
+    }
+
+    /**
+     * This method returns the amount of orders
+     * committed to the database by this writer.
+     *
+     * @return amount of saved orders.
+     */
+    public long getSavedOrders() {
+        return savedOrders;
+    }
+
+    /**
+     * This method returns the amount of orders
+     * skipped by this writer as duplicates.
+     *
+     * @return amount of duplicated orders.
+     */
+    public long getDuplicateOrders() {
+        return duplicateOrders;
+    }
+}
@@ -0,0 +1,346 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import com.przemekm.coreservicesapp.controllers.MainWindow;
+import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.ValidationResult;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class used to load orders continuously from streams of newline-delimited CSV lines,
+ * such as the standard input or TCP connections.
+ * <p>
+ * Each stream is read in its own thread. The lines are validated
+ * and the orders are put into a bounded queue, which is drained by
+ * a single writer thread saving the orders with {@link OrderBatchWriter}.
+ * The writer saves whatever is queued as soon as it's idle, so a slow
+ * producer sees its orders in the database without waiting for a full batch,
+ * while a fast producer fills the batches completely. When the queue is full,
+ * the readers stop reading, so the producers are slowed down by the
+ * flow control of the stream instead of buffering the orders in memory.
+ * <p>
+ * A header line ({@code Client_Id,...}) may be sent at the start of a stream,
+ * but it isn't required. Lines in a wrong format are passed to the {@link RejectWriter},
+ * and their amount is displayed when the stream is closed.
+ *
+ * @author Przemysław Motała
+ * @see OrderBatchWriter
+ * @see RejectWriter
+ * @see FileLoader#load(ReadableByteChannel, String)
+ */
+public class OrderStreamIngester {
+    /**
+     * System property defining the local TCP port
+     * on which the orders are received.
+     */
+    public static final String PORT_PROPERTY = "coreservicesapp.ingest.port";
+
+    /**
+     * System property which enables loading orders from the standard input.
+     */
+    public static final String STDIN_PROPERTY = "coreservicesapp.ingest.stdin";
+
+    /**
+     * This parameter defines the amount of orders waiting in the queue.
+     */
+    private static final int QUEUE_SIZE = OrderBatchWriter.BATCH_SIZE * 4;
+
+    /**
+     * This parameter defines the size of a buffer used for reading a stream.
+     */
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    /**
+     * This parameter defines the maximal length (in bytes) of a single line.
+     * Longer lines can't hold a proper order, so they're skipped
+     * instead of being buffered.
+     */
+    private static final int MAX_LINE_LENGTH = 4096;
+
+    /**
+     * This parameter defines how long (in milliseconds) the writer
+     * waits for new orders before checking if it has been stopped.
+     */
+    private static final long POLL_TIMEOUT_MILLIS = 500;
+
+    private final Runnable onOrdersLoaded;
+    private final BlockingQueue<Order> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Set<ReadableByteChannel> openChannels = ConcurrentHashMap.newKeySet();
+    private ServerSocketChannel serverChannel;
+    private volatile boolean isRunning;
+
+    /**
+     * This constructor creates an {@link OrderStreamIngester} object.
+     *
+     * @param onOrdersLoaded action called (from the writer's thread)
+     *                       whenever new orders have been saved in the database.
+     */
+    public OrderStreamIngester(final Runnable onOrdersLoaded) {
+        this.onOrdersLoaded = onOrdersLoaded;
+    }
+
+    /**
+     * This method starts the writer in a new daemon thread.
+     * It has to be called before any stream is read.
+     */
+    public void start() {
+        isRunning = true;
+        startThread(this::writeOrders, "stream-writer");
+    }
+
+    /**
+     * This method starts listening for TCP connections on the loopback address.
+     * Each connection is read in a new daemon thread.
+     *
+     * @param port the port, or {@code 0} to choose a free port.
+     * @return the port the server is listening on.
+     * @throws IOException if the server couldn't be bound to the port.
+     */
+    public int listen(final int port) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        startThread(this::acceptConnections, "stream-acceptor");
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * This method starts reading the standard input in a new daemon thread.
+     */
+    public void readStandardInput() {
+        startThread(() -> read(Channels.newChannel(System.in), "standard input"), "stream-stdin");
+    }
+
+    /**
+     * This method stops accepting connections and closes the open streams.
+     * The orders which are already in the queue are saved before the writer stops.
+     */
+    public void stop() {
+        isRunning = false;
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+            for (ReadableByteChannel channel : openChannels) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Couldn't close the stream!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * This method reads the orders from the channel until its end
+     * and puts them into the queue of the writer.
+     * It blocks while the queue is full.
+     *
+     * @param channel the channel to read from, which is closed at the end.
+     * @param sourceName name of the source displayed in messages.
+     * @return amount of orders in proper format.
+     * @throws InterruptedException if the thread is interrupted while the queue is full.
+     */
+    public long ingest(final ReadableByteChannel channel, final String sourceName) throws InterruptedException {
+        return ingest(channel, RejectWriter.getInstance().forSource(sourceName));
+    }
+
+    /**
+     * This method reads the orders from the channel until its end
+     * and puts them into the queue of the writer.
+     *
+     * @param channel the channel to read from, which is closed at the end.
+     * @param rejects the counter of the rejected lines of the stream.
+     * @return amount of orders in proper format.
+     * @throws InterruptedException if the thread is interrupted while the queue is full.
+     * @see #ingest(ReadableByteChannel, String)
+     */
+    private long ingest(final ReadableByteChannel channel,
+                        final RejectWriter.Source rejects) throws InterruptedException {
+        openChannels.add(channel);
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        byte[] lineBuffer = new byte[MAX_LINE_LENGTH];
+        int lineLength = 0;
+        boolean isLineTooLong = false;
+        long lineNumber = 0;
+        long acceptedOrders = 0;
+
+        try (ReadableByteChannel source = channel) {
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte currentByte = buffer.get();
+                    if (currentByte != '\n') {
+                        if (lineLength < lineBuffer.length) {
+                            lineBuffer[lineLength++] = currentByte;
+                        } else {
+                            isLineTooLong = true;
+                        }
+                        continue;
+                    }
+                    lineNumber++;
+                    if (isLineTooLong) {
+                        rejects.reject(lineNumber, "line too long",
+                                new String(lineBuffer, 0, lineLength, StandardCharsets.UTF_8));
+                    } else if (offer(lineBuffer, lineLength, lineNumber, rejects)) {
+                        acceptedOrders++;
+                    }
+                    lineLength = 0;
+                    isLineTooLong = false;
+                }
+                buffer.clear();
+            }
+            if (lineLength > 0 && !isLineTooLong && offer(lineBuffer, lineLength, lineNumber + 1, rejects)) {
+                acceptedOrders++;
+            }
+        } catch (ClosedChannelException e) {
+            //The stream has been closed by the stop() method.
+        } catch (IOException e) {
+            System.out.println("Couldn't read the stream!");
+            e.printStackTrace();
+        } finally {
+            openChannels.remove(channel);
+        }
+        return acceptedOrders;
+    }
+
+    /**
+     * This method parses a single line and puts the order into the queue.
+     *
+     * @param lineBuffer the bytes of the line.
+     * @param lineLength length of the line.
+     * @param lineNumber number of the line in the stream.
+     * @param rejects the counter of the rejected lines of the stream.
+     * @return {@code true} if the line holds an order in proper format.
+     * @throws InterruptedException if the thread is interrupted while the queue is full.
+     */
+    private boolean offer(final byte[] lineBuffer,
+                          final int lineLength,
+                          final long lineNumber,
+                          final RejectWriter.Source rejects) throws InterruptedException {
+        int length = lineLength;
+        if (length > 0 && lineBuffer[length - 1] == '\r') {
+            length--;
+        }
+        if (length == 0) {
+            return false;
+        }
+        String line = new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
+        if (line.startsWith("Client_Id")) {
+            //Skip the CSV headers.
+            return false;
+        }
+
+        String[] data = line.split(",");
+        ValidationResult result = Order.validate(data);
+        if (!result.isValid()) {
+            rejects.reject(lineNumber, result.getMessage(), line);
+            return false;
+        }
+        queue.put(Order.ofValidatedData(data));
+        return true;
+    }
+
+    /**
+     * This method accepts TCP connections until the server is closed.
+     */
+    private void acceptConnections() {
+        try {
+            while (isRunning) {
+                SocketChannel connection = serverChannel.accept();
+                String sourceName = connection.getRemoteAddress().toString();
+                startThread(() -> read(connection, sourceName), "stream-" + sourceName);
+            }
+        } catch (ClosedChannelException e) {
+            //The server has been closed by the stop() method.
+        } catch (IOException e) {
+            System.out.println("Couldn't accept the connection!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * This method reads a stream and displays a message when it ends.
+     *
+     * @param channel the channel to read from.
+     * @param sourceName name of the source displayed in messages.
+     */
+    private void read(final ReadableByteChannel channel, final String sourceName) {
+        try {
+            RejectWriter.Source rejects = RejectWriter.getInstance().forSource(sourceName);
+            long acceptedOrders = ingest(channel, rejects);
+            MainWindow.setTextToDisplay("Stream from "
+                    + sourceName
+                    + " closed - "
+                    + acceptedOrders
+                    + " orders received."
+                    + rejects.getSummary()
+                    + System.lineSeparator());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * This method saves the queued orders until the ingester is stopped
+     * and the queue is empty. All of the orders which are queued at the
+     * moment are saved together, up to the size of a batch.
+     */
+    private void writeOrders() {
+        OrderBatchWriter writer = new OrderBatchWriter();
+        List<Order> orders = new ArrayList<>(OrderBatchWriter.BATCH_SIZE);
+
+        try {
+            while (isRunning || !queue.isEmpty()) {
+                Order order = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (order == null) {
+                    continue;
+                }
+                orders.add(order);
+                queue.drainTo(orders, OrderBatchWriter.BATCH_SIZE - 1);
+
+                long previouslySavedOrders = writer.getSavedOrders();
+                long previousDuplicateOrders = writer.getDuplicateOrders();
+                for (Order queuedOrder : orders) {
+                    writer.add(queuedOrder);
+                }
+                writer.flush();
+                long savedOrders = writer.getSavedOrders() - previouslySavedOrders;
+                long lostOrders = orders.size() - savedOrders
+                        - (writer.getDuplicateOrders() - previousDuplicateOrders);
+                if (lostOrders > 0) {
+                    MainWindow.setTextToDisplay("Couldn't save "
+                            + lostOrders
+                            + " orders received from the streams!"
+                            + System.lineSeparator());
+                }
+                orders.clear();
+                if (savedOrders > 0) {
+                    onOrdersLoaded.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void startThread(final Runnable runnable, final String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
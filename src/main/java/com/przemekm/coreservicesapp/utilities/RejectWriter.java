@@ -0,0 +1,281 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class used to write the rejected lines of the loaded data to a CSV file,
+ * with the name of the source, the number of the line and the reason.
+ * <p>
+ * The loaders only put the rejected lines into a bounded queue, which is
+ * drained by a single daemon thread writing the file through a buffer,
+ * so loading a file with many wrong lines takes about as long as loading
+ * a proper one. The buffer is flushed whenever the queue is empty.
+ * The loaders display only the amount of the rejected lines of each source,
+ * counted by {@link Source}, instead of a message for each line.
+ * <p>
+ * The rejected lines of all of the sources are appended
+ * to the file defined by the {@link #FILE_PROPERTY} system property.
+ *
+ * @author Przemysław Motała
+ * @see com.przemekm.coreservicesapp.datamodel.Order#validate(String[])
+ */
+public final class RejectWriter {
+    /**
+     * System property defining the path of the file with the rejected lines.
+     */
+    public static final String FILE_PROPERTY = "coreservicesapp.rejects";
+
+    private static final String HEADER = "Source,Line,Reason,Content";
+    private static final String DEFAULT_FILE_NAME = "coreservicesapp-rejects.csv";
+
+    /**
+     * This parameter defines the amount of rejected lines waiting in the queue.
+     */
+    private static final int QUEUE_SIZE = 8192;
+
+    private static volatile RejectWriter instance;
+
+    private final Path file;
+    private final BlockingQueue<Reject> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final AtomicLong rejectedLines = new AtomicLong();
+    private final Object writtenLock = new Object();
+    private long writtenLines;
+
+    /**
+     * A rejected line waiting in the queue.
+     */
+    private static final class Reject {
+        private final String sourceName;
+        private final long lineNumber;
+        private final String reason;
+        private final String content;
+
+        private Reject(final String sourceName, final long lineNumber, final String reason, final String content) {
+            this.sourceName = sourceName;
+            this.lineNumber = lineNumber;
+            this.reason = reason;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Rejected lines of a single source, such as a loaded file or a stream.
+     */
+    public final class Source {
+        private final String sourceName;
+        private final AtomicLong sourceRejectedLines = new AtomicLong();
+
+        private Source(final String sourceName) {
+            this.sourceName = sourceName;
+        }
+
+        /**
+         * This method puts the rejected line into the queue of the writer.
+         * It blocks only while the queue is full.
+         *
+         * @param lineNumber number of the line in the source (starting at {@code 1}).
+         * @param reason reason why the line has been rejected.
+         * @param content the rejected line.
+         */
+        public void reject(final long lineNumber, final String reason, final String content) {
+            sourceRejectedLines.incrementAndGet();
+            rejectedLines.incrementAndGet();
+            try {
+                queue.put(new Reject(sourceName, lineNumber, reason, content));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public long getRejectedLines() {
+            return sourceRejectedLines.get();
+        }
+
+        /**
+         * This method returns the summary displayed after the source has been loaded.
+         *
+         * @return e.g. {@code " 3 lines rejected - see rejects.csv."},
+         * or an empty {@link String} if no line has been rejected.
+         */
+        public String getSummary() {
+            long rejected = getRejectedLines();
+            return rejected == 0
+                    ? ""
+                    : " " + rejected + (rejected == 1 ? " line" : " lines") + " rejected - see " + file + ".";
+        }
+    }
+
+    private RejectWriter(final Path file) {
+        this.file = file;
+        Thread thread = new Thread(this::writeRejects, "reject-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * This method returns the writer of the file defined by the {@link #FILE_PROPERTY}
+     * system property, placed in the temporary directory by default.
+     * The writer is started when this method is called for the first time.
+     *
+     * @return the writer.
+     */
+    public static RejectWriter getInstance() {
+        if (instance == null) {
+            synchronized (RejectWriter.class) {
+                if (instance == null) {
+                    String path = System.getProperty(FILE_PROPERTY);
+                    instance = new RejectWriter(path != null
+                            ? Paths.get(path)
+                            : Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_FILE_NAME));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * This method creates the counter of the rejected lines of a source.
+     *
+     * @param sourceName name of the source written with each of its lines.
+     * @return the counter.
+     */
+    public Source forSource(final String sourceName) {
+        return new Source(sourceName);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * This method returns the amount of the lines rejected since the application started.
+     *
+     * @return amount of the rejected lines of all of the sources.
+     */
+    public long getRejectedLines() {
+        return rejectedLines.get();
+    }
+
+    /**
+     * This method waits until all of the rejected lines are written to the file.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public void awaitWritten() throws InterruptedException {
+        synchronized (writtenLock) {
+            while (writtenLines < rejectedLines.get()) {
+                writtenLock.wait();
+            }
+        }
+    }
+
+    /**
+     * This method writes the queued lines until the application ends.
+     * The file is opened when the first line is rejected. If the file
+     * couldn't be written, the following lines are only counted,
+     * so the loaders are never blocked.
+     */
+    private void writeRejects() {
+        Writer output = null;
+        boolean isFileOpened = false;
+        try {
+            while (true) {
+                Reject reject = queue.take();
+                if (!isFileOpened) {
+                    output = open();
+                    isFileOpened = true;
+                }
+                long lines = 0;
+                try {
+                    do {
+                        lines++;
+                        if (output != null) {
+                            write(output, reject);
+                        }
+                        reject = queue.poll();
+                    } while (reject != null);
+                    if (output != null) {
+                        output.flush();
+                    }
+                } catch (IOException e) {
+                    System.out.println("Couldn't write the rejected lines!");
+                    e.printStackTrace();
+                    output = null;
+                    while (queue.poll() != null) {
+                        lines++;
+                    }
+                }
+                markWritten(lines);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Writer open() {
+        try {
+            boolean isNewFile = !Files.exists(file) || Files.size(file) == 0;
+            Writer output = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (isNewFile) {
+                output.write(HEADER);
+                output.write(System.lineSeparator());
+            }
+            return output;
+        } catch (IOException e) {
+            System.out.println("Couldn't open the file of the rejected lines!");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static void write(final Writer output, final Reject reject) throws IOException {
+        writeQuoted(output, reject.sourceName);
+        output.write(',');
+        output.write(Long.toString(reject.lineNumber));
+        output.write(',');
+        writeQuoted(output, reject.reason);
+        output.write(',');
+        writeQuoted(output, reject.content);
+        output.write(System.lineSeparator());
+    }
+
+    /**
+     * This method writes the value as a CSV field,
+     * quoted if it contains a separator, a quote or a line break.
+     *
+     * @param output the destination.
+     * @param value the value.
+     * @throws IOException if the destination couldn't be written.
+     */
+    private static void writeQuoted(final Writer output, final String value) throws IOException {
+        boolean isQuoted = false;
+        for (int i = 0; i < value.length() && !isQuoted; i++) {
+            char character = value.charAt(i);
+            isQuoted = character == ',' || character == '"' || character == '\n' || character == '\r';
+        }
+        if (!isQuoted) {
+            output.write(value);
+            return;
+        }
+        output.write('"');
+        output.write(value.replace("\"", "\"\""));
+        output.write('"');
+    }
+
+    private void markWritten(final long lines) {
+        synchronized (writtenLock) {
+            writtenLines += lines;
+            writtenLock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import com.przemekm.coreservicesapp.database.H2Database;
+import com.przemekm.coreservicesapp.database.ReportJob;
+import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.Report;
+import com.przemekm.coreservicesapp.datamodel.ReportParams;
+import com.przemekm.coreservicesapp.datamodel.ReportRow;
+import com.przemekm.coreservicesapp.datamodel.ReportType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Class used to export every {@link ReportType} of every client to separate CSV files.
+ * <p>
+ * The reports of each client are saved in a directory named after the client's ID,
+ * one file per {@link ReportType}, in the same format as the reports saved by the user.
+ * The reports are generated by a pool of {@link #THREADS_PROPERTY} workers,
+ * which share the report connections of the {@link H2Database}, and each worker
+ * writes the file of its report as soon as the report is ready, so the files
+ * are written concurrently. Lists of orders are streamed from the database
+ * straight to the files, so they're never collected in memory.
+ * <p>
+ * The files are written through {@link FileChannel} with a {@link #BUFFER_SIZE}
+ * buffer, into which the lines are encoded without creating any byte arrays.
+ *
+ * @author Przemysław Motała
+ * @see H2Database#submitQuery(ReportParams, DoubleConsumer)
+ * @see H2Database#streamQueryData(ReportParams, java.util.function.Consumer)
+ */
+public class ReportExporter {
+    /**
+     * System property defining the amount of workers generating the reports.
+     * Workers exceeding the {@link H2Database#REPORT_CONNECTIONS_PROPERTY}
+     * connections wait for a free connection, while writing the files of the others.
+     */
+    public static final String THREADS_PROPERTY = "coreservicesapp.export.threads";
+
+    /**
+     * This parameter defines the header of the lists of orders.
+     */
+    private static final String ORDERS_HEADER = "Client_Id,Request_Id,Name,Quantity,Price";
+
+    /**
+     * This parameter defines the size (in bytes) of the buffer of a written file.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int DEFAULT_THREADS = 4;
+
+    private final Path directory;
+    private final DoubleConsumer progressListener;
+    private final Set<ReportJob> runningJobs = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger finishedFiles = new AtomicInteger();
+    private final AtomicInteger failedFiles = new AtomicInteger();
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private volatile boolean isCancelled;
+    private int totalFiles;
+    private long elapsedMillis;
+
+    /**
+     * This constructor creates a {@link ReportExporter} object.
+     *
+     * @param directory directory where the directories of the clients are created.
+     * @param progressListener listener called with the progress (from 0 to 1)
+     *                         of the export, or {@code null}. It is called
+     *                         by the threads writing the files.
+     */
+    public ReportExporter(final Path directory, final DoubleConsumer progressListener) {
+        this.directory = directory;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * This method exports the reports of all of the clients and waits until
+     * all of the files are written, or the export is cancelled.
+     * A report which couldn't be generated or written is skipped
+     * (its file is removed) and counted as failed.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting for the workers.
+     * @see #cancel()
+     */
+    public void export() throws InterruptedException {
+        long startTime = System.nanoTime();
+        List<String> clientIds = H2Database.getInstance().getClientIdData();
+        ReportType[] reportTypes = ReportType.values();
+        totalFiles = clientIds.size() * reportTypes.length;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(
+                Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "export-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            for (String clientId : clientIds) {
+                Path clientDirectory = directory.resolve(clientId);
+                for (ReportType reportType : reportTypes) {
+                    workers.execute(() -> exportReport(new ReportParams(reportType, clientId),
+                            clientDirectory.resolve(reportType.name() + ".csv")));
+                }
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            workers.shutdownNow();
+            elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * This method cancels the export. The running queries are aborted,
+     * and the reports which haven't been started are skipped.
+     */
+    public void cancel() {
+        isCancelled = true;
+        for (ReportJob job : runningJobs) {
+            job.cancel();
+        }
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * This method returns the amount of files to export.
+     *
+     * @return amount of clients multiplied by the amount of {@link ReportType}s.
+     */
+    public int getTotalFiles() {
+        return totalFiles;
+    }
+
+    /**
+     * This method returns the amount of written files.
+     *
+     * @return amount of files exported successfully.
+     */
+    public int getExportedFiles() {
+        return finishedFiles.get() - failedFiles.get();
+    }
+
+    public int getFailedFiles() {
+        return failedFiles.get();
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes.get();
+    }
+
+    /**
+     * This method returns the duration of the last {@link #export()} call.
+     *
+     * @return the duration (in milliseconds).
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * This method saves the report in a CSV file. Lists of {@link Order} or {@link ReportRow}
+     * items are saved with a header, one item per line, and other reports are saved
+     * as their name followed by the data in the next line.
+     *
+     * @param report the report.
+     * @param file the file, which is overwritten if it exists.
+     * @return amount of written bytes.
+     * @throws IOException if the file couldn't be written.
+     * @throws IllegalArgumentException if the report has no data of known type.
+     */
+    public static long writeReport(final Report<?> report, final Path file) throws IOException {
+        if (!(report.getReportData() instanceof List<?>) && !(report.getReportData() instanceof String)) {
+            throw new IllegalArgumentException("Wrong data format!");
+        }
+
+        try (ChannelWriter writer = new ChannelWriter(file)) {
+            if (report.getReportData() instanceof List<?>) {
+                List<?> data = (List<?>) report.getReportData();
+                writer.write(getListHeader(data));
+                for (Object item : data) {
+                    writer.write(System.lineSeparator());
+                    writer.write(item.toString());
+                }
+            } else {
+                writer.write(report.getReportName() + ":");
+                writer.write(System.lineSeparator());
+                writer.write((String) report.getReportData());
+            }
+            return writer.close(true);
+        }
+    }
+
+    /**
+     * This method generates a single report and writes it into the file.
+     *
+     * @param reportParams parameters of the report.
+     * @param file the file of the report.
+     */
+    private void exportReport(final ReportParams reportParams, final Path file) {
+        if (isCancelled) {
+            return;
+        }
+
+        boolean isExported = false;
+        try {
+            Files.createDirectories(file.getParent());
+            if (!reportParams.isSketched() && reportParams.getQuery().isList()) {
+                writtenBytes.addAndGet(streamOrders(reportParams, file));
+            } else {
+                ReportJob job = H2Database.getInstance().submitQuery(reportParams, null);
+                runningJobs.add(job);
+                try {
+                    if (isCancelled) {
+                        job.cancel();
+                    }
+                    writtenBytes.addAndGet(writeReport(job.getResult().get(), file));
+                } finally {
+                    runningJobs.remove(job);
+                }
+            }
+            isExported = true;
+        } catch (CancellationException e) {
+            //The export has been cancelled by the cancel() method.
+        } catch (ExecutionException | SQLException | IOException | UncheckedIOException e) {
+            System.out.println("Couldn't export report " + file + "!");
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!isExported) {
+                failedFiles.incrementAndGet();
+                deleteFile(file);
+            }
+            int finished = finishedFiles.incrementAndGet();
+            if (progressListener != null) {
+                progressListener.accept((double) finished / totalFiles);
+            }
+        }
+    }
+
+    /**
+     * This method writes the orders of a list report into the file
+     * while they're read from the database.
+     *
+     * @param reportParams parameters of a report returning a list of orders.
+     * @param file the file of the report.
+     * @return amount of written bytes.
+     * @throws SQLException if the query fails or times out.
+     * @throws InterruptedException if the thread is interrupted while waiting for a connection.
+     * @throws IOException if the file couldn't be written.
+     */
+    private long streamOrders(final ReportParams reportParams, final Path file)
+            throws SQLException, InterruptedException, IOException {
+        try (ChannelWriter writer = new ChannelWriter(file)) {
+            writer.write(ORDERS_HEADER);
+            H2Database.getInstance().streamQueryData(reportParams, order -> {
+                if (isCancelled) {
+                    throw new CancellationException();
+                }
+                try {
+                    writer.write(System.lineSeparator());
+                    writer.write(order);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return writer.close(true);
+        }
+    }
+
+    /**
+     * This method returns the CSV header for a report with the data
+     * of type {@link List}.
+     *
+     * @param data list of {@link Order} or {@link ReportRow} items.
+     * @return the CSV header matching the type of items in the list.
+     * @see ReportRow#getHeader()
+     */
+    public static String getListHeader(final List<?> data) {
+        if (!data.isEmpty() && data.get(0) instanceof ReportRow) {
+            return ((ReportRow) data.get(0)).getHeader();
+        }
+        return ORDERS_HEADER;
+    }
+
+    private static void deleteFile(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.out.println("Couldn't delete the file!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writer encoding the text as UTF-8 straight into the buffer of a {@link FileChannel}.
+     * The buffer is written to the channel whenever it's full.
+     */
+    private static final class ChannelWriter implements Closeable {
+        private final FileChannel channel;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long writtenBytes;
+
+        private ChannelWriter(final Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        private void write(final String text) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(text);
+            while (encoder.encode(chars, buffer, false) == CoderResult.OVERFLOW) {
+                writeBuffer();
+            }
+        }
+
+        /**
+         * This method writes the order as a CSV line straight into the buffer.
+         *
+         * @param order the order.
+         * @throws IOException if the file couldn't be written.
+         * @see Order#appendTo(ByteBuffer)
+         */
+        private void write(final Order order) throws IOException {
+            if (buffer.remaining() < order.getMaxByteLength()) {
+                writeBuffer();
+            }
+            if (buffer.remaining() < order.getMaxByteLength()) {
+                write(order.toString());
+            } else {
+                order.appendTo(buffer);
+            }
+        }
+
+        /**
+         * This method closes the channel.
+         *
+         * @param isComplete {@code true} if the buffered text should be written first.
+         * @return amount of written bytes.
+         * @throws IOException if the file couldn't be written.
+         */
+        private long close(final boolean isComplete) throws IOException {
+            try {
+                if (isComplete && channel.isOpen()) {
+                    while (encoder.encode(CharBuffer.allocate(0), buffer, true) == CoderResult.OVERFLOW) {
+                        writeBuffer();
+                    }
+                    while (encoder.flush(buffer) == CoderResult.OVERFLOW) {
+                        writeBuffer();
+                    }
+                    writeBuffer();
+                }
+            } finally {
+                channel.close();
+            }
+            return writtenBytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            close(false);
+        }
+
+        private void writeBuffer() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                writtenBytes += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.Report;
+import com.przemekm.coreservicesapp.datamodel.ReportRow;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class used to keep the data of the generated reports within a memory budget.
+ * <p>
+ * The store estimates the size of the data of each added report. When the data
+ * of all of the reports exceeds the {@link #MEMORY_PROPERTY} budget, the data of
+ * the least recently used reports is spilled to temporary files and removed
+ * from the reports, which stay in the list of the created reports with their
+ * names and parameters. The data is read back by the {@link #load(Report)}
+ * method, when the report is displayed or saved again.
+ * <p>
+ * Only lists of {@link Order} or {@link ReportRow} items are spilled, in a compact
+ * binary format (the price of an order takes 8 bytes, instead of a {@link BigDecimal}).
+ * Data smaller than {@link #MIN_SPILLED_SIZE}, such as the scalar reports, is always
+ * kept in memory. The file of a report is written only once, since the data
+ * of a report never changes, and it is deleted when the report is removed.
+ *
+ * @author Przemysław Motała
+ * @see Report
+ */
+public class ReportStore {
+    /**
+     * System property defining the memory budget (in bytes) of the data of the reports.
+     */
+    public static final String MEMORY_PROPERTY = "coreservicesapp.reports.memory";
+
+    /**
+     * This parameter defines the size (in bytes) of the smallest data which is spilled.
+     */
+    private static final long MIN_SPILLED_SIZE = 64 * 1024;
+
+    /**
+     * These parameters define the estimated sizes (in bytes) of objects:
+     * an object header with a reference in the list, and a {@link String}
+     * without its characters, which take two bytes each.
+     */
+    private static final long OBJECT_SIZE = 24;
+    private static final long STRING_SIZE = 64;
+
+    private static final byte ORDERS_FORMAT = 1;
+    private static final byte ROWS_FORMAT = 2;
+
+    /**
+     * Entries of the reports, from the least to the most recently used.
+     */
+    private final Map<Report<?>, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long memoryBudget;
+    private long usedMemory;
+
+    /**
+     * Data of a report held by the store.
+     */
+    private static final class Entry {
+        private final long size;
+        private Path file;
+        private boolean isInMemory = true;
+
+        private Entry(final long size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * This constructor creates an empty {@link ReportStore}.
+     *
+     * @param memoryBudget maximal size (in bytes) of the data kept in memory.
+     */
+    public ReportStore(final long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * This method creates a {@link ReportStore} with the budget defined by the
+     * {@link #MEMORY_PROPERTY} system property, a quarter of the maximal heap by default.
+     *
+     * @return an empty store.
+     */
+    public static ReportStore fromSystemProperties() {
+        return new ReportStore(Long.getLong(MEMORY_PROPERTY, Runtime.getRuntime().maxMemory() / 4));
+    }
+
+    /**
+     * This method adds the report to the store. If the budget is exceeded,
+     * the least recently used reports are spilled.
+     *
+     * @param report the generated report.
+     */
+    public synchronized void add(final Report<?> report) {
+        Entry entry = new Entry(estimateSize(report.getReportData()));
+        entries.put(report, entry);
+        usedMemory += entry.size;
+        evict(report);
+    }
+
+    /**
+     * This method makes sure that the data of the report is in memory.
+     * Spilled data is read from its file, and other reports
+     * are spilled if the budget is exceeded.
+     *
+     * @param report the report added to the store.
+     * @return the same report, with its data.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized Report<?> load(final Report<?> report) {
+        Entry entry = entries.get(report);
+        if (entry == null || entry.isInMemory) {
+            return report;
+        }
+
+        try {
+            ((Report<Object>) report).setReportData(read(entry.file));
+            entry.isInMemory = true;
+            usedMemory += entry.size;
+            evict(report);
+        } catch (IOException e) {
+            System.out.println("Couldn't read the report!");
+            e.printStackTrace();
+        }
+        return report;
+    }
+
+    /**
+     * This method removes the report from the store and deletes its file.
+     *
+     * @param report the report.
+     */
+    public synchronized void remove(final Report<?> report) {
+        Entry entry = entries.remove(report);
+        if (entry != null) {
+            release(entry);
+        }
+    }
+
+    /**
+     * This method removes all of the reports from the store and deletes their files.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            release(entry);
+        }
+        entries.clear();
+    }
+
+    /**
+     * This method checks if the data of the report has been spilled to a file.
+     *
+     * @param report the report.
+     * @return {@code true} if the data isn't in memory.
+     */
+    public synchronized boolean isSpilled(final Report<?> report) {
+        Entry entry = entries.get(report);
+        return entry != null && !entry.isInMemory;
+    }
+
+    public synchronized long getUsedMemory() {
+        return usedMemory;
+    }
+
+    /**
+     * This method spills the least recently used reports,
+     * until the data in memory fits in the budget.
+     *
+     * @param usedReport the report which is being used, so it's never spilled.
+     */
+    private void evict(final Report<?> usedReport) {
+        Iterator<Map.Entry<Report<?>, Entry>> iterator = entries.entrySet().iterator();
+        while (usedMemory > memoryBudget && iterator.hasNext()) {
+            Map.Entry<Report<?>, Entry> mapEntry = iterator.next();
+            Entry entry = mapEntry.getValue();
+            //Reports without parameters are identified by their data, so it can't be removed.
+            if (mapEntry.getKey() != usedReport
+                    && mapEntry.getKey().getReportParams() != null
+                    && entry.isInMemory
+                    && entry.size >= MIN_SPILLED_SIZE) {
+                spill(mapEntry.getKey(), entry);
+            }
+        }
+    }
+
+    /**
+     * This method writes the data of the report to a temporary file,
+     * unless it has been written before, and removes it from the report.
+     * If the data couldn't be written, it is kept in memory.
+     *
+     * @param report the report.
+     * @param entry the entry of the report.
+     */
+    private void spill(final Report<?> report, final Entry entry) {
+        try {
+            if (entry.file == null) {
+                Path file = Files.createTempFile("report-", ".bin");
+                file.toFile().deleteOnExit();
+                write((List<?>) report.getReportData(), file);
+                entry.file = file;
+            }
+            report.setReportData(null);
+            entry.isInMemory = false;
+            usedMemory -= entry.size;
+        } catch (IOException e) {
+            System.out.println("Couldn't spill the report!");
+            e.printStackTrace();
+        }
+    }
+
+    private void release(final Entry entry) {
+        if (entry.isInMemory) {
+            usedMemory -= entry.size;
+        }
+        if (entry.file != null) {
+            try {
+                Files.deleteIfExists(entry.file);
+            } catch (IOException e) {
+                System.out.println("Couldn't delete the file!");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * This method estimates the memory taken by the data of a report.
+     *
+     * @param data the data of the report.
+     * @return the estimated size (in bytes), or {@code 0} for data
+     * which can't be spilled.
+     */
+    private static long estimateSize(final Object data) {
+        if (!(data instanceof List<?>)) {
+            return 0;
+        }
+        long size = OBJECT_SIZE;
+        for (Object item : (List<?>) data) {
+            if (item instanceof Order) {
+                Order order = (Order) item;
+                size += 2 * OBJECT_SIZE + 2 * STRING_SIZE
+                        + 2L * (order.getClientId().length() + order.getName().length());
+            } else if (item instanceof ReportRow) {
+                ReportRow row = (ReportRow) item;
+                size += 4 * OBJECT_SIZE + STRING_SIZE + 2L * row.getKey().length();
+            } else {
+                return 0;
+            }
+        }
+        return size;
+    }
+
+    private static void write(final List<?> data, final Path file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            boolean isRows = !data.isEmpty() && data.get(0) instanceof ReportRow;
+            output.writeByte(isRows ? ROWS_FORMAT : ORDERS_FORMAT);
+            output.writeInt(data.size());
+            for (Object item : data) {
+                if (isRows) {
+                    ReportRow row = (ReportRow) item;
+                    output.writeUTF(row.getKeyName());
+                    output.writeUTF(row.getKey());
+                    output.writeLong(row.getOrdersAmount());
+                    output.writeLong(row.getTotalQuantity());
+                    output.writeUTF(row.getTotalPrice().toString());
+                    output.writeUTF(row.getAveragePrice().toString());
+                } else {
+                    Order order = (Order) item;
+                    output.writeUTF(order.getClientId());
+                    output.writeLong(order.requestIdAsLong());
+                    output.writeUTF(order.getName());
+                    output.writeInt(order.quantityAsInt());
+                    output.writeLong(order.priceInCents());
+                }
+            }
+        }
+    }
+
+    private static List<Object> read(final Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            byte format = input.readByte();
+            int size = input.readInt();
+            List<Object> data = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                if (format == ROWS_FORMAT) {
+                    data.add(new ReportRow(input.readUTF(),
+                            input.readUTF(),
+                            input.readLong(),
+                            input.readLong(),
+                            new BigDecimal(input.readUTF()),
+                            new BigDecimal(input.readUTF())));
+                } else {
+                    data.add(Order.ofTrustedData(input.readUTF(),
+                            input.readLong(),
+                            input.readUTF(),
+                            input.readInt(),
+                            input.readLong()));
+                }
+            }
+            return data;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.przemekm.coreservicesapp.utilities;
 import com.przemekm.coreservicesapp.controllers.MainWindow;
 import com.przemekm.coreservicesapp.database.H2Database;
 import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.ValidationResult;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -13,16 +14,22 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 public class XMLFileLoader implements FileLoader {
+    private long savedOrders;
+
     /**
      * This method loads data from the XML file.
      * <p>
      * Each line of proper data is saved in a H2 database
-     * with use of {@link H2Database#saveData(Order)} method.
+     * in batches with use of {@link OrderBatchWriter}.
      * If the file has missing tags inside {@code <request>} tag or the loaded data is in a wrong format,
-     * an {@link IllegalArgumentException} is caught and a message is displayed.
+     * the request is written to the file of the rejected lines by {@link RejectWriter},
+     * with the number of the request instead of the number of the line,
+     * and the amount of the rejected requests is displayed when the file is loaded.
      * <p>
      * It is assumed that the format of XML file is as follows:
      * <pre>
@@ -41,74 +48,123 @@ public class XMLFileLoader implements FileLoader {
      *
      * @param file the {@link File} to read from.
      * @return {@code true} if the file has at least one batch of data in proper format.
-     * @see H2Database#saveData(Order)
+     * @see H2Database#saveData(java.util.List)
      * @see DocumentBuilderFactory
      * @see Document
+     * @see RejectWriter
      */
     @Override
     public boolean load(File file) {
-        boolean isFileNotEmpty = false;
+        try (InputStream input = new FileInputStream(file)) {
+            return load(input, file.getName());
+        } catch (IOException e) {
+            System.out.println("Couldn't read the file!");
+            e.printStackTrace();
+            return false;
+        }
+    }
 
+    /**
+     * This method loads data in XML format from the {@link InputStream}.
+     * <p>
+     * The data is processed in the same way as in the {@link #load(File)} method.
+     *
+     * @param input the {@link InputStream} to read from.
+     * @param sourceName name of the source displayed in messages.
+     * @return {@code true} if the stream has at least one batch of data in proper format.
+     * @see #load(File)
+     */
+    @Override
+    public boolean load(InputStream input, String sourceName) {
         String[] data = new String[TAGS_LIST.size()];
+        savedOrders = 0;
         DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
         Document document = null;
 
         try {
             DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            document = documentBuilder.parse(file);
+            document = documentBuilder.parse(input);
         } catch (ParserConfigurationException | SAXException | IOException e) {
             System.out.println("Couldn't parse the file!");
             e.printStackTrace();
+            return false;
         }
 
+        OrderBatchWriter writer = new OrderBatchWriter();
+        RejectWriter.Source rejects = RejectWriter.getInstance().forSource(sourceName);
+
         NodeList nodeList = document.getElementsByTagName("request");
         for (int i = 0; i < nodeList.getLength(); i++) {
             Node node = nodeList.item(i);
             if (node.getNodeType() == Node.ELEMENT_NODE) {
                 Element element = (Element) node;
-                StringBuilder dataBuilder = new StringBuilder();
 
                 for (int j = 0; j < TAGS_LIST.size(); j++) {
-                    try {
-                        data[j] = element.getElementsByTagName(TAGS_LIST.get(j))
-                                .item(0)
-                                .getTextContent();
-                    } catch (NullPointerException e) {
-                        /*
-                            Occurs when one of the tags in <request> tag is missing.
-                         */
-                        data[j] = "";
-                    }
-                    if (!(j == (TAGS_LIST.size() - 1))) {
-                        dataBuilder.append(data[j]).append(",");
-                    } else {
-                        dataBuilder.append(data[j]);
-                    }
+                    Node tag = element.getElementsByTagName(TAGS_LIST.get(j)).item(0);
+                    //A missing tag is reported by the validation.
+                    data[j] = tag != null ? tag.getTextContent() : null;
                 }
 
-                try {
-                    H2Database.getInstance()
-                            .saveData(new Order(data));
-                    isFileNotEmpty = true;
-                } catch (IllegalArgumentException e) {
-                    MainWindow.setTextToDisplay("Line \""
-                            + dataBuilder.toString()
-                            + "\" skipped - wrong format!"
-                            + System.lineSeparator());
+                ValidationResult result = Order.validate(data);
+                if (result.isValid()) {
+                    writer.add(Order.ofValidatedData(data));
+                } else {
+                    rejects.reject(i + 1, result.getMessage(), joinData(data));
                 }
             }
         }
 
-        if (!isFileNotEmpty) {
+        writer.flush();
+        savedOrders = writer.getSavedOrders();
+
+        if (writer.getSavedOrders() == 0 && writer.getDuplicateOrders() > 0) {
+            MainWindow.setTextToDisplay("All orders in XML file "
+                    + sourceName
+                    + " have been loaded before - "
+                    + writer.getDuplicateOrders() + " duplicates skipped!"
+                    + rejects.getSummary()
+                    + System.lineSeparator());
+            return false;
+        } else if (writer.getSavedOrders() == 0) {
             MainWindow.setTextToDisplay("No suitable lines found in XML file "
-                    + file.getName() + "!"
+                    + sourceName + "!"
+                    + rejects.getSummary()
                     + System.lineSeparator());
             return false;
         } else {
             MainWindow.setTextToDisplay("XML file "
-                    + file.getName()
-                    + " loaded successfully!" + System.lineSeparator());
+                    + sourceName
+                    + " loaded successfully!"
+                    + (writer.getDuplicateOrders() > 0
+                    ? " " + writer.getDuplicateOrders() + " duplicates skipped."
+                    : "")
+                    + rejects.getSummary()
+                    + System.lineSeparator());
             return true;
         }
     }
+
+    /**
+     * This method joins the data of a rejected request into a CSV line.
+     *
+     * @param data the data, with {@code null} for the missing tags.
+     * @return the line.
+     */
+    private static String joinData(final String[] data) {
+        StringBuilder dataBuilder = new StringBuilder();
+        for (int j = 0; j < data.length; j++) {
+            if (j > 0) {
+                dataBuilder.append(",");
+            }
+            if (data[j] != null) {
+                dataBuilder.append(data[j]);
+            }
+        }
+        return dataBuilder.toString();
+    }
+
+    @Override
+    public long getSavedOrders() {
+        return savedOrders;
+    }
 }
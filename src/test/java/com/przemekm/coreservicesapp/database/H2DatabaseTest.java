@@ -0,0 +1,194 @@
+package com.przemekm.coreservicesapp.database;
+
+import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.OrderFilter;
+import com.przemekm.coreservicesapp.datamodel.Report;
+import com.przemekm.coreservicesapp.datamodel.ReportParams;
+import com.przemekm.coreservicesapp.datamodel.ReportType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class H2DatabaseTest {
+    private String lines[][] = {
+            {"BULK1", "0009223372036854775807", "Test", "1", "1.00"},//Leading zeros
+            {"BULK2", "0", "Test", "0002147483647", "1.00"},
+            {"BULK3", "9223372036854775807", "Test", "2147483647", "1.00"},
+            {"BULK4", "00009223372036854775808", "Test", "1", "1.00"},//Bigger than Long.MAX_VALUE
+            {"BULK5", "1", "Test", "0002147483648", "1.00"},//Bigger than Integer.MAX_VALUE
+            {"BULK6", "12345678901234567890", "Test", "1", "1.00"},
+            {"BULK7", "1", "Test", "-1", "1.00"}};
+
+    @Test
+    @DisplayName("Bulk load should accept the same orders as Order.validate")
+    void bulkLoadValidationTest() throws IOException {
+        List<String> csvLines = new ArrayList<>();
+        csvLines.add("Client_Id,Request_Id,Name,Quantity,Price");
+        long validLines = 0;
+        for (String[] line : lines) {
+            csvLines.add(String.join(",", line));
+            if (Order.validate(line).isValid()) {
+                validLines++;
+            }
+        }
+        assertEquals(3, validLines);
+
+        File file = File.createTempFile("bulk", ".csv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), csvLines, StandardCharsets.UTF_8);
+
+        BulkLoadResult result = H2Database.getInstance().bulkLoadCsv(file);
+        assertEquals(validLines, result.getLoadedRows());
+        assertEquals(lines.length - validLines, result.getRejectedRows());
+        assertEquals(0, result.getDuplicateRows());
+    }
+
+    @Test
+    @DisplayName("Pages retrieved after the last key should be equal to the pages retrieved with offset, "
+            + "also when many orders have the same sort value")
+    void keysetPagingTest() {
+        H2Database database = H2Database.getInstance();
+        database.clearTable();
+        //Only three clients and three quantities, so the pages end inside of the runs of equal values.
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            orders.add(new Order("C" + (i % 3), i, "Product " + (i % 4), 1 + (i * 7) % 3,
+                    BigDecimal.valueOf(100 + i, 2)));
+        }
+        database.saveData(orders);
+        assertEquals(orders.size(), database.countData(OrderFilter.none()));
+
+        assertAll(
+                () -> assertPages(database, orders, null, Order::requestIdAsLong),
+                () -> assertPages(database, orders, "clientId", Order::getClientId),
+                () -> assertPages(database, orders, "quantity", Order::quantityAsInt),
+                () -> assertPages(database, orders, "price", Order::getPrice)
+        );
+        database.clearTable();
+    }
+
+    @Test
+    @DisplayName("Filtered and sorted orders of the database should be equal to the orders filtered in memory")
+    void filterTest() {
+        H2Database database = H2Database.getInstance();
+        database.clearTable();
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            orders.add(new Order("C" + (i % 3), i, ((i % 2 == 0) ? "Apple " : "Pear ") + i, 1 + i % 10,
+                    BigDecimal.valueOf(100 * i + 5, 2)));
+        }
+        database.saveData(orders);
+        OrderFilter filter = new OrderFilter("C1", "Apple", new BigDecimal("5.05"),
+                new BigDecimal("50.05"), 2, 9);
+
+        List<Order> expected = new ArrayList<>();
+        for (Order order : orders) {
+            if (order.getClientId().equals("C1")
+                    && order.getName().startsWith("Apple")
+                    && order.getPrice().compareTo(new BigDecimal("5.05")) >= 0
+                    && order.getPrice().compareTo(new BigDecimal("50.05")) <= 0
+                    && order.quantityAsInt() >= 2
+                    && order.quantityAsInt() <= 9) {
+                expected.add(order);
+            }
+        }
+        expected.sort(Comparator.comparing(Order::getPrice).reversed());
+
+        assertEquals(expected.size(), database.countData(filter));
+        assertEquals(expected, Arrays.asList(
+                database.getDataPage(filter, "price", true, null, 0, orders.size()).getOrders()));
+        //The characters of the LIKE patterns are matched literally.
+        assertEquals(0, database.countData(new OrderFilter(null, "%", null, null, null, null)));
+        database.clearTable();
+    }
+
+    private static List<Order> createOrders(final String clientId, final int amount) {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < amount; i++) {
+            orders.add(new Order(clientId, i, "Product", 1, new BigDecimal("1.00")));
+        }
+        return orders;
+    }
+
+    @Test
+    @DisplayName("Appended load should read only the orders saved after the last loaded key")
+    void appendTest() {
+        H2Database database = H2Database.getInstance();
+        database.clearTable();
+        List<Order> firstOrders = createOrders("A1", 5);
+        database.saveData(firstOrders);
+        long firstId = database.getLastId();
+        List<Order> appendedOrders = createOrders("A2", 3);
+        database.saveData(appendedOrders);
+
+        assertAll(
+                () -> assertEquals(firstOrders, database.getDataInRange(0, firstId)),
+                () -> assertEquals(appendedOrders, database.getDataInRange(firstId, database.getLastId())),
+                () -> assertTrue(database.getDataInRange(database.getLastId(), database.getLastId()).isEmpty()));
+        database.clearTable();
+    }
+
+    @Test
+    @DisplayName("Report should read the snapshot of the orders committed before it was started")
+    void snapshotTest() {
+        H2Database database = H2Database.getInstance();
+        database.clearTable();
+        database.saveData(createOrders("S1", 5));
+        Report<?> report = database.getQueryData(new ReportParams(ReportType.ORDERS_AMOUNT, null));
+        database.saveData(createOrders("S1", 3));
+
+        assertAll(
+                () -> assertEquals("5", report.getReportData()),
+                () -> assertEquals(5, database.getDataInRange(0, report.getDataVersion()).size()),
+                () -> assertEquals(8, database.getDataInRange(0, database.getLastId()).size()));
+        database.clearTable();
+    }
+
+    /*
+        Checks the pages of the orders (saved with the keys from 1, in the order of the list)
+        sorted by the column and the key, in both directions.
+     */
+    private static <T extends Comparable<T>> void assertPages(final H2Database database,
+                                                              final List<Order> orders,
+                                                              final String sortColumn,
+                                                              final Function<Order, T> sortValue) {
+        final int pageSize = 7;
+        for (boolean descending : new boolean[]{false, true}) {
+            List<Integer> indexes = new ArrayList<>();
+            for (int i = 0; i < orders.size(); i++) {
+                indexes.add(i);
+            }
+            Comparator<Integer> byValue = Comparator.comparing(index -> sortValue.apply(orders.get(index)));
+            Comparator<Integer> byKey = byValue.thenComparing(Comparator.naturalOrder());
+            indexes.sort(descending ? byKey.reversed() : byKey);
+            List<Order> expected = new ArrayList<>();
+            indexes.forEach(index -> expected.add(orders.get(index)));
+
+            List<Order> keysetOrders = new ArrayList<>();
+            List<Order> offsetOrders = new ArrayList<>();
+            OrderPage previous = null;
+            for (int offset = 0; offset < orders.size(); offset += pageSize) {
+                previous = database.getDataPage(OrderFilter.none(), sortColumn, descending,
+                        previous, offset, pageSize);
+                keysetOrders.addAll(Arrays.asList(previous.getOrders()));
+                offsetOrders.addAll(Arrays.asList(database.getDataPage(OrderFilter.none(), sortColumn, descending,
+                        null, offset, pageSize).getOrders()));
+            }
+            String message = sortColumn + (descending ? " descending" : " ascending");
+            assertEquals(expected, keysetOrders, message);
+            assertEquals(expected, offsetOrders, message);
+        }
+    }
+}
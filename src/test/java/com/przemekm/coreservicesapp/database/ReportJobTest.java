@@ -0,0 +1,71 @@
+package com.przemekm.coreservicesapp.database;
+
+import com.przemekm.coreservicesapp.datamodel.ReportParams;
+import com.przemekm.coreservicesapp.datamodel.ReportType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportJobTest {
+    private AtomicInteger cancelledStatements = new AtomicInteger();
+
+    /*
+        Creates a statement which only counts the calls of its cancel() method.
+     */
+    private Statement createStatement() {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                new Class<?>[]{Statement.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("cancel")) {
+                        cancelledStatements.incrementAndGet();
+                    }
+                    return null;
+                });
+    }
+
+    private static ReportJob createJob() {
+        return new ReportJob(new ReportParams(ReportType.ORDERS_AMOUNT, null), null);
+    }
+
+    @Test
+    @DisplayName("Cancelling a job should cancel the statement of its running query")
+    void cancelRunningQueryTest() {
+        ReportJob job = createJob();
+        job.setStatement(createStatement());
+        job.cancel();
+
+        assertTrue(job.isCancelled());
+        assertEquals(1, cancelledStatements.get());
+    }
+
+    @Test
+    @DisplayName("Cancelling a finished job shouldn't cancel its statement, which may be reused by another job")
+    void cancelFinishedQueryTest() {
+        Statement sharedStatement = createStatement();
+        ReportJob finishedJob = createJob();
+        finishedJob.setStatement(sharedStatement);
+        finishedJob.clearStatement();
+
+        ReportJob runningJob = createJob();
+        runningJob.setStatement(sharedStatement);
+        finishedJob.cancel();
+
+        assertEquals(0, cancelledStatements.get());
+        assertFalse(runningJob.isCancelled());
+    }
+
+    @Test
+    @DisplayName("The statement of a job cancelled before its query started should be cancelled immediately")
+    void cancelBeforeQueryTest() {
+        ReportJob job = createJob();
+        job.cancel();
+        job.setStatement(createStatement());
+
+        assertEquals(1, cancelledStatements.get());
+    }
+}
@@ -0,0 +1,45 @@
+package com.przemekm.coreservicesapp.database;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementCacheTest {
+
+    @Test
+    @DisplayName("The least recently used statement should be closed when the cache exceeds its limit")
+    void evictionTest() throws SQLException {
+        StatementCache cache = new StatementCache(DriverManager.getConnection("jdbc:h2:mem:statementCacheTest"));
+        try {
+            PreparedStatement first = cache.prepare("SELECT 0");
+            PreparedStatement used = cache.prepare("SELECT -1");
+            for (int i = 1; i <= StatementCache.MAX_STATEMENTS; i++) {
+                cache.prepare("SELECT " + i);
+                //The used statement stays the most recently used one.
+                assertSame(used, cache.prepare("SELECT -1"));
+            }
+
+            assertTrue(first.isClosed());
+            assertFalse(used.isClosed());
+            assertNotSame(first, cache.prepare("SELECT 0"));
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    @DisplayName("The same query should reuse the cached statement")
+    void reuseTest() throws SQLException {
+        StatementCache cache = new StatementCache(DriverManager.getConnection("jdbc:h2:mem:statementCacheTest"));
+        try {
+            assertSame(cache.prepare("SELECT 1"), cache.prepare("SELECT 1"));
+        } finally {
+            cache.close();
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.przemekm.coreservicesapp.datamodel;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -117,4 +120,50 @@ class OrderTest {
                 }
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Primitive accessors and formatting should match the boxed values")
+    void primitiveAccessorsTest() throws Exception {
+        Order order = new Order(data);
+        assertEquals(Long.MAX_VALUE, order.requestIdAsLong());
+        assertEquals(Integer.MAX_VALUE, order.quantityAsInt());
+        assertEquals(1234567890L, order.priceInCents());
+        assertEquals(new BigDecimal("12345678.90"), order.getPrice());
+        assertEquals("Test12," + Long.MAX_VALUE + ",Test Aęć 123," + Integer.MAX_VALUE + ",12345678.90",
+                order.toString());
+
+        ByteBuffer buffer = ByteBuffer.allocate(order.getMaxByteLength());
+        order.appendTo(buffer).flip();
+        assertEquals(order.toString(), StandardCharsets.UTF_8.decode(buffer).toString());
+
+        Order trustedOrder = Order.ofTrustedData("Test12", Long.MAX_VALUE, "Test Aęć 123", Integer.MAX_VALUE, 1234567890L);
+        assertEquals(order, trustedOrder);
+        assertEquals(order.hashCode(), trustedOrder.hashCode());
+        assertEquals("C1,7,Bułka,1,0.05",
+                Order.ofTrustedData("C1", 7, "Bułka", 1, 5).appendTo(new StringBuilder()).toString());
+    }
+
+    @Test
+    @DisplayName("Validation should return the code and the index of the wrong field")
+    void validationResultTest() {
+        assertSame(ValidationResult.VALID, Order.validate(data));
+        assertEquals(Order.ofValidatedData(data), new Order(data));
+
+        String[] dataTest = Arrays.copyOf(data, data.length);
+        dataTest[1] = "9223372036854775808";//Long.MAX_VALUE + 1
+        ValidationResult result = Order.validate(dataTest);
+        assertEquals(ValidationResult.Code.OUT_OF_RANGE, result.getCode());
+        assertEquals(1, result.getFieldIndex());
+        assertEquals("requestId out of range", result.getMessage());
+        dataTest[1] = "0009223372036854775807";//Leading zeros
+        assertTrue(Order.validate(dataTest).isValid());
+
+        dataTest[3] = null;
+        assertSame(ValidationResult.of(ValidationResult.Code.MISSING_FIELD, 3), Order.validate(dataTest));
+        dataTest[3] = "1";
+        dataTest[4] = "12,50";
+        assertEquals("wrong format of price", Order.validate(dataTest).getMessage());
+        assertEquals(ValidationResult.Code.WRONG_FIELDS_AMOUNT,
+                Order.validate(Arrays.copyOf(data, 4)).getCode());
+    }
+}
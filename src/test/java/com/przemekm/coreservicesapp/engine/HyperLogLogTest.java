@@ -0,0 +1,62 @@
+package com.przemekm.coreservicesapp.engine;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+    private static final int PRECISION = 12;
+
+    @Test
+    @DisplayName("Precision should be the smallest one with a standard error below the requested error, and below 4 it should be rejected")
+    void precisionTest() {
+        assertEquals(12, HyperLogLog.getPrecision(0.02));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+    }
+
+    @Test
+    @DisplayName("Distinct count of 100 values added three times should be exact within 2 values")
+    void smallCardinalityTest() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        assertEquals(0, sketch.estimate());
+        for (int i = 0; i < 3; i++) {
+            for (long value = 1; value <= 100; value++) {
+                sketch.add(value);
+            }
+        }
+        assertEquals(100, sketch.estimate(), 2);
+    }
+
+    @Test
+    @DisplayName("Relative error of the distinct count should be within 5% for 200000 values")
+    void largeCardinalityTest() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        for (long value = 0; value < 200000; value++) {
+            sketch.add(value * 31);
+        }
+        //Standard error is about 1.6%, 5% is above 3 standard errors.
+        assertEquals(200000, sketch.estimate(), 200000 * 0.05);
+    }
+
+    @Test
+    @DisplayName("Merged sketches should estimate the same distinct count as one sketch of the union")
+    void mergeTest() {
+        HyperLogLog first = new HyperLogLog(PRECISION);
+        HyperLogLog second = new HyperLogLog(PRECISION);
+        HyperLogLog union = new HyperLogLog(PRECISION);
+        for (long value = 0; value < 50000; value++) {
+            first.add(value);
+            union.add(value);
+        }
+        for (long value = 25000; value < 90000; value++) {
+            second.add(value);
+            union.add(value);
+        }
+
+        HyperLogLog merged = first.copy();
+        merged.merge(second);
+        assertEquals(union.estimate(), merged.estimate());
+        assertEquals(90000, merged.estimate(), 90000 * 0.05);
+    }
+}
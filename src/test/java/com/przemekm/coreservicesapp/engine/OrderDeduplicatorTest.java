@@ -0,0 +1,75 @@
+package com.przemekm.coreservicesapp.engine;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderDeduplicatorTest {
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    @Test
+    @DisplayName("Fingerprints should be equal only for orders with equal fields, whatever the field boundaries")
+    void fingerprintTest() {
+        long fingerprint = OrderDeduplicator.fingerprint("1", 1, "Bułka", 1, new BigDecimal("10.00"));
+        assertEquals(fingerprint,
+                OrderDeduplicator.fingerprint("1", 1, "Bułka", 1, new BigDecimal("10.00")));
+        assertNotEquals(fingerprint,
+                OrderDeduplicator.fingerprint("1", 1, "Bułka", 1, new BigDecimal("10.01")));
+        assertNotEquals(fingerprint,
+                OrderDeduplicator.fingerprint("1", 2, "Bułka", 1, new BigDecimal("10.00")));
+        assertNotEquals(OrderDeduplicator.fingerprint("12", 1, "3", 1, new BigDecimal("10.00")),
+                OrderDeduplicator.fingerprint("1", 1, "23", 1, new BigDecimal("10.00")));
+    }
+
+    @Test
+    @DisplayName("Fingerprint table should reject repeated fingerprints and fill up at three quarters of its slots")
+    void fingerprintTableTest() {
+        FingerprintTable table = new FingerprintTable(64 * 1024);
+        assertTrue(table.add(0));
+        assertFalse(table.add(0));
+        for (long fingerprint = 1; fingerprint < 6000; fingerprint++) {
+            assertTrue(table.add(fingerprint * GOLDEN_RATIO));
+        }
+        assertTrue(table.contains(5999 * GOLDEN_RATIO));
+        assertFalse(table.contains(6000 * GOLDEN_RATIO));
+
+        //8192 slots fit in the budget, which are full at three quarters.
+        for (long fingerprint = 6000; !table.isFull(); fingerprint++) {
+            table.add(fingerprint * GOLDEN_RATIO);
+        }
+        assertEquals(6144, table.size());
+        assertFalse(table.add(-1));
+    }
+
+    @Test
+    @DisplayName("Overflowing deduplicator should never classify a seen fingerprint as new and should verify about 1% of new ones")
+    void overflowTest() {
+        OrderDeduplicator deduplicator = new OrderDeduplicator(16 * 1024, false, 100000);
+        for (long fingerprint = 1; fingerprint <= 100000; fingerprint++) {
+            assertEquals(OrderDeduplicator.Status.NEW, deduplicator.check(fingerprint * GOLDEN_RATIO),
+                    "Fingerprints added before the overflow are classified exactly.");
+            deduplicator.add(fingerprint * GOLDEN_RATIO);
+            if (deduplicator.isOverflowing()) {
+                break;
+            }
+        }
+        assertTrue(deduplicator.isOverflowing());
+        assertEquals(OrderDeduplicator.Status.DUPLICATE, deduplicator.check(GOLDEN_RATIO));
+
+        int unknown = 0;
+        for (long fingerprint = 200001; fingerprint <= 300000; fingerprint++) {
+            long mixed = fingerprint * GOLDEN_RATIO;
+            deduplicator.add(mixed);
+            assertNotEquals(OrderDeduplicator.Status.NEW, deduplicator.check(mixed),
+                    "The Bloom filter has no false negatives.");
+            if (deduplicator.check(mixed + 1) == OrderDeduplicator.Status.UNKNOWN) {
+                unknown++;
+            }
+        }
+        //About 1% of new orders have to be verified in the database.
+        assertTrue(unknown < 3000, "Too many false positives: " + unknown);
+    }
+}
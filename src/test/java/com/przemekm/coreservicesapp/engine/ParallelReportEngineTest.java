@@ -0,0 +1,179 @@
+package com.przemekm.coreservicesapp.engine;
+
+import com.przemekm.coreservicesapp.database.H2Database;
+import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.Report;
+import com.przemekm.coreservicesapp.datamodel.ReportParams;
+import com.przemekm.coreservicesapp.datamodel.ReportRow;
+import com.przemekm.coreservicesapp.datamodel.ReportType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelReportEngineTest {
+    private static final int ORDERS_AMOUNT = 40000;
+
+    private ParallelReportEngine engine = new ParallelReportEngine();
+    private List<Order> orders = createOrders();
+
+    /*
+        Creates orders of 4 clients and 3 products.
+        Each requestId is shared by two consecutive orders.
+     */
+    private static List<Order> createOrders() {
+        List<Order> orders = new ArrayList<>(ORDERS_AMOUNT);
+        for (int i = 0; i < ORDERS_AMOUNT; i++) {
+            orders.add(new Order("C" + (i % 4),
+                    i / 2,
+                    "Product " + (i % 3),
+                    1,
+                    new BigDecimal("1.50")));
+        }
+        return orders;
+    }
+
+    @Test
+    @DisplayName("Scalar reports should be computed over all of the orders")
+    void scalarReportsTest() {
+        assertAll(
+                () -> assertEquals(String.valueOf(ORDERS_AMOUNT / 2), engine.getQueryData(orders,
+                        new ReportParams(ReportType.ORDERS_AMOUNT, null)).getReportData()),
+                () -> assertEquals("60000.00", engine.getQueryData(orders,
+                        new ReportParams(ReportType.TOTAL_PRICE, null)).getReportData()),
+                () -> assertEquals("1.50", engine.getQueryData(orders,
+                        new ReportParams(ReportType.AVERAGE_PRICE, null)).getReportData())
+        );
+    }
+
+    @Test
+    @DisplayName("Reports with clientId should include only the orders of the client")
+    void clientIdTest() {
+        assertAll(
+                () -> assertEquals("15000.00", engine.getQueryData(orders,
+                        new ReportParams(ReportType.TOTAL_PRICE, "C1")).getReportData()),
+                () -> assertNull(engine.getQueryData(orders,
+                        new ReportParams(ReportType.TOTAL_PRICE, "C9")).getReportData()),
+                () -> assertEquals("Total price of orders (clientId: C1)", engine.getQueryData(orders,
+                        new ReportParams(ReportType.TOTAL_PRICE, "C1")).getReportName())
+        );
+    }
+
+    @Test
+    @DisplayName("Reports with several clientIds should include the orders of all of the clients")
+    void clientIdsTest() {
+        ReportParams reportParams = ReportParams.forClients(ReportType.TOTAL_PRICE, Arrays.asList("C2", "C1", "C9"));
+        assertAll(
+                () -> assertEquals("30000.00", engine.getQueryData(orders, reportParams).getReportData()),
+                () -> assertEquals("Total price of orders (clientId: C1, C2, C9)",
+                        engine.getQueryData(orders, reportParams).getReportName())
+        );
+    }
+
+    @Test
+    @DisplayName("List of orders should keep the order of the loaded orders")
+    void ordersListTest() {
+        Report<?> report = engine.getQueryData(orders, new ReportParams(ReportType.ORDERS_LIST, null));
+        assertEquals(orders, report.getReportData());
+    }
+
+    @Test
+    @DisplayName("Reports over partitioned orders should be equal to the reports over the list of orders")
+    void partitionedStoreTest() {
+        PartitionedOrderStore store = new PartitionedOrderStore(3, 64L << 20, null);
+        orders.forEach(store::add);
+        store.publish(ORDERS_AMOUNT);
+        List<List<String>> clientIds = Arrays.asList(
+                Collections.emptyList(), Collections.singletonList("C1"), Arrays.asList("C0", "C3"));
+
+        assertEquals(ORDERS_AMOUNT, store.size());
+        for (ReportType reportType : ReportType.values()) {
+            for (List<String> clients : clientIds) {
+                ReportParams reportParams = ReportParams.forClients(reportType, clients);
+                if (reportParams.isSketched()) {
+                    //Percentiles are estimated from the sketches of the database only.
+                    assertThrows(IllegalArgumentException.class, () -> engine.getQueryData(store, reportParams));
+                    continue;
+                }
+                assertEquals(engine.getQueryData(orders, reportParams).getReportData(),
+                        engine.getQueryData(store, reportParams).getReportData(),
+                        reportParams.getReportName());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Reports of the engine should be equal to the reports generated by the database")
+    void databaseEquivalenceTest() {
+        /*
+            Prices with odd cents make the averages round, requestIds repeat
+            within and across clients, and clients C0 and C4 have the same
+            total price, so the order of tied rows is checked too.
+         */
+        List<Order> databaseOrders = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            databaseOrders.add(new Order("C" + (i % 4),
+                    random.nextInt(50),
+                    "Product " + random.nextInt(5),
+                    1 + random.nextInt(9),
+                    BigDecimal.valueOf(1 + random.nextInt(99999), 2)));
+        }
+        databaseOrders.add(new Order("C4", 1, "Product 1", 1, new BigDecimal("10.00")));
+        databaseOrders.add(new Order("C5", 2, "Product 1", 1, new BigDecimal("10.00")));
+        H2Database database = H2Database.getInstance();
+        database.clearTable();
+        database.saveData(databaseOrders);
+        List<List<String>> clientIds = Arrays.asList(
+                Collections.emptyList(), Collections.singletonList("C1"),
+                Arrays.asList("C0", "C3"), Collections.singletonList("C9"));
+
+        for (ReportType reportType : ReportType.values()) {
+            for (List<String> clients : clientIds) {
+                ReportParams reportParams = ReportParams.forClients(reportType, clients);
+                if (reportParams.isSketched()) {
+                    continue;
+                }
+                assertEquals(database.getQueryData(reportParams).getReportData(),
+                        engine.getQueryData(databaseOrders, reportParams).getReportData(),
+                        reportParams.getReportName());
+            }
+        }
+        database.clearTable();
+    }
+
+    @Test
+    @DisplayName("Reports shouldn't be computed over a store which couldn't hold all of the orders")
+    void incompleteStoreTest() {
+        //No memory and no spill file, so the first order can't be appended.
+        PartitionedOrderStore store = new PartitionedOrderStore(1, 0, null);
+        assertThrows(IllegalStateException.class, () -> store.add(orders.get(0)));
+        assertTrue(store.isIncomplete());
+        assertThrows(IllegalStateException.class,
+                () -> engine.getQueryData(store, new ReportParams(ReportType.ORDERS_AMOUNT, null)));
+
+        store.clear();
+        assertFalse(store.isIncomplete());
+    }
+
+    @Test
+    @DisplayName("Grouped reports should contain one row per group")
+    void groupedReportsTest() {
+        @SuppressWarnings("unchecked")
+        List<ReportRow> rows = (List<ReportRow>) engine.getQueryData(orders,
+                new ReportParams(ReportType.CLIENTS_SUMMARY, null)).getReportData();
+        assertAll(
+                () -> assertEquals(4, rows.size()),
+                () -> assertEquals("C0", rows.get(0).getKey()),
+                () -> assertEquals(ORDERS_AMOUNT / 4, rows.get(0).getTotalQuantity()),
+                () -> assertEquals(new BigDecimal("15000.00"), rows.get(0).getTotalPrice())
+        );
+    }
+}
@@ -0,0 +1,71 @@
+package com.przemekm.coreservicesapp.engine;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TDigestTest {
+    private static final double COMPRESSION = 100;
+    private static final int VALUES_AMOUNT = 100000;
+
+    /*
+        Returns the values from 1 to VALUES_AMOUNT in random order.
+     */
+    private static List<Double> createValues() {
+        List<Double> values = new ArrayList<>(VALUES_AMOUNT);
+        for (int i = 1; i <= VALUES_AMOUNT; i++) {
+            values.add((double) i);
+        }
+        Collections.shuffle(values, new Random(1));
+        return values;
+    }
+
+    @Test
+    @DisplayName("Empty digest should have no quantiles, and a compression below 10 should be rejected")
+    void emptyTest() {
+        TDigest digest = new TDigest(COMPRESSION);
+        assertEquals(0, digest.size());
+        assertTrue(Double.isNaN(digest.quantile(0.5)));
+        assertThrows(IllegalArgumentException.class, () -> new TDigest(5));
+    }
+
+    @Test
+    @DisplayName("Quantiles of 100000 values should be within 1% at the median and within 0.1% at the 99th percentile")
+    void quantilesTest() {
+        TDigest digest = new TDigest(COMPRESSION);
+        for (double value : createValues()) {
+            digest.add(value);
+        }
+
+        assertEquals(VALUES_AMOUNT, digest.size());
+        assertEquals(1, digest.quantile(0));
+        assertEquals(VALUES_AMOUNT, digest.quantile(1));
+        assertEquals(50000, digest.quantile(0.5), VALUES_AMOUNT * 0.01);
+        assertEquals(90000, digest.quantile(0.9), VALUES_AMOUNT * 0.005);
+        assertEquals(99000, digest.quantile(0.99), VALUES_AMOUNT * 0.001);
+    }
+
+    @Test
+    @DisplayName("Merged digests should keep every value and estimate the quantiles of the union")
+    void mergeTest() {
+        List<Double> values = createValues();
+        TDigest first = new TDigest(COMPRESSION);
+        TDigest second = new TDigest(COMPRESSION);
+        for (int i = 0; i < values.size(); i++) {
+            (i % 2 == 0 ? first : second).add(values.get(i));
+        }
+
+        TDigest merged = first.copy();
+        merged.merge(second);
+        assertEquals(VALUES_AMOUNT, merged.size());
+        assertEquals(VALUES_AMOUNT / 2, first.size());
+        assertEquals(50000, merged.quantile(0.5), VALUES_AMOUNT * 0.01);
+        assertEquals(99000, merged.quantile(0.99), VALUES_AMOUNT * 0.001);
+    }
+}
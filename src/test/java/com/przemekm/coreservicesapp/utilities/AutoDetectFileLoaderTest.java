@@ -0,0 +1,90 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AutoDetectFileLoaderTest {
+    private static final int ORDERS_AMOUNT = 20000;
+
+    private AutoDetectFileLoader loader = new AutoDetectFileLoader();
+
+    /*
+        Creates a CSV file large enough to span many blocks of the compressed data.
+     */
+    private static byte[] createCsv() {
+        StringBuilder csv = new StringBuilder("Client_Id,Request_Id,Name,Quantity,Price\n");
+        for (int i = 0; i < ORDERS_AMOUNT; i++) {
+            csv.append("GZ").append(i % 7).append(',').append(i).append(",Product ").append(i % 13)
+                    .append(',').append(1 + i % 5).append(',').append(i % 1000).append(".25\n");
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(final byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream output = new GZIPOutputStream(bytes)) {
+            output.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] zip(final byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream output = new ZipOutputStream(bytes)) {
+            output.putNextEntry(new ZipEntry("orders.csv"));
+            output.write(data);
+            output.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static File createFile(final String suffix, final byte[] data) throws IOException {
+        File file = File.createTempFile("orders", suffix);
+        file.deleteOnExit();
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    @Test
+    @DisplayName("Complete gzip and zip files should be loaded with all of their orders")
+    void completeFilesTest() throws IOException {
+        byte[] csv = createCsv();
+        assertTrue(loader.load(createFile(".csv.gz", gzip(csv))));
+        assertEquals(ORDERS_AMOUNT, loader.getSavedOrders());
+        assertTrue(loader.load(createFile(".zip", zip(csv))));
+        assertEquals(ORDERS_AMOUNT, loader.getSavedOrders());
+    }
+
+    @Test
+    @DisplayName("Truncated gzip and zip files shouldn't be reported as loaded")
+    void truncatedFilesTest() throws IOException {
+        byte[] csv = createCsv();
+        byte[] gzip = gzip(csv);
+        byte[] zip = zip(csv);
+        assertFalse(loader.load(createFile(".csv.gz", Arrays.copyOf(gzip, gzip.length / 2))));
+        assertFalse(loader.load(createFile(".zip", Arrays.copyOf(zip, zip.length / 2))));
+    }
+
+    @Test
+    @DisplayName("A gzip file with corrupted compressed data shouldn't be reported as loaded")
+    void corruptedFileTest() throws IOException {
+        byte[] gzip = gzip(createCsv());
+        for (int i = gzip.length / 2; i < gzip.length / 2 + 64; i++) {
+            gzip[i] ^= 0x5A;
+        }
+        assertFalse(loader.load(createFile(".csv.gz", gzip)));
+    }
+}
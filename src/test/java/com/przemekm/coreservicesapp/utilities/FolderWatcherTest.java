@@ -0,0 +1,89 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import com.przemekm.coreservicesapp.database.H2Database;
+import com.przemekm.coreservicesapp.datamodel.OrderFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FolderWatcherTest {
+    private static final String HEADER = "Client_Id,Request_Id,Name,Quantity,Price\n";
+
+    private AtomicInteger loadedEvents = new AtomicInteger();
+
+    /*
+        The watcher isn't started, so run() scans the directory once and returns.
+        A new watcher is created for each scan, as after a restart of the watcher.
+     */
+    private void scan(final Path directory) {
+        new FolderWatcher(directory, loadedEvents::incrementAndGet).run();
+    }
+
+    private static long countOrders(final String clientId) {
+        return H2Database.getInstance().countData(new OrderFilter(clientId, null, null, null, null, null));
+    }
+
+    private static void append(final Path file, final String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    @Test
+    @DisplayName("Tailed CSV file should be loaded from the offset committed with its orders")
+    void csvOffsetTest() throws IOException {
+        Path directory = Files.createTempDirectory("watched");
+        Path file = directory.resolve("orders.csv");
+        String committedLines = HEADER + "FW1,1,Product,1,1.00\nFW1,2,Product,1,1.00\n";
+        Files.write(file, (committedLines + "FW1,3,Pro").getBytes(StandardCharsets.UTF_8));
+        String source = file.toAbsolutePath().toString();
+
+        scan(directory);
+        //The incomplete line isn't loaded until it ends.
+        assertEquals(2, countOrders("FW1"));
+        assertEquals(committedLines.length(), H2Database.getInstance().getCommittedOffset(source));
+        assertEquals(1, loadedEvents.get());
+
+        append(file, "duct,1,1.00\nFW1,4,Product,1,1.00\n");
+        scan(directory);
+        assertEquals(4, countOrders("FW1"));
+        assertEquals(Files.size(file), H2Database.getInstance().getCommittedOffset(source));
+        assertEquals(2, loadedEvents.get());
+
+        scan(directory);
+        assertEquals(4, countOrders("FW1"));
+        assertEquals(2, loadedEvents.get());
+    }
+
+    @Test
+    @DisplayName("Compressed file changed after it was loaded shouldn't be loaded again")
+    void changedArchiveTest() throws IOException {
+        Path directory = Files.createTempDirectory("watched");
+        Path file = directory.resolve("orders.zip");
+        try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(file))) {
+            output.putNextEntry(new ZipEntry("orders.csv"));
+            output.write((HEADER + "FW2,1,Product,1,1.00\nFW2,2,Product,1,1.00\n").getBytes(StandardCharsets.UTF_8));
+            output.closeEntry();
+        }
+
+        scan(directory);
+        assertEquals(2, countOrders("FW2"));
+        assertEquals(1, loadedEvents.get());
+
+        try (OutputStream output = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+            output.write(0);
+        }
+        scan(directory);
+        assertEquals(2, countOrders("FW2"));
+        assertEquals(1, loadedEvents.get());
+    }
+}
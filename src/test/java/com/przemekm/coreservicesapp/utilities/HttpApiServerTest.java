@@ -0,0 +1,76 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import com.przemekm.coreservicesapp.database.H2Database;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpApiServerTest {
+
+    /*
+        Sends the request and returns its status code followed by the body of the response.
+     */
+    private static String send(final HttpApiServer server,
+                               final String method,
+                               final String path,
+                               final String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)
+                new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        try (InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            byte[] buffer = new byte[8192];
+            int length;
+            while (input != null && (length = input.read(buffer)) != -1) {
+                response.write(buffer, 0, length);
+            }
+        } finally {
+            connection.disconnect();
+        }
+        return status + " " + new String(response.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("Orders posted to the API should be returned by its reports")
+    void ordersAndReportsTest() throws IOException {
+        H2Database.getInstance().clearTable();
+        HttpApiServer server = new HttpApiServer(0, () -> { });
+        server.start();
+        try {
+            String orders = "Client_Id,Request_Id,Name,Quantity,Price\n"
+                    + "H1,1,Bread,2,3.50\n"
+                    + "H1,2,Milk,1,2.00\n"
+                    + "H2,3,Bread,1,3.50\n";
+            assertEquals("200 {\"loaded\":true}", send(server, "POST", "/orders?name=api.csv", orders));
+
+            String amount = send(server, "GET", "/reports/ORDERS_AMOUNT?clientId=H1", null);
+            String list = send(server, "GET", "/reports/ORDERS_LIST?clientId=H1&clientId=H2&format=csv", null);
+            assertAll(
+                    () -> assertTrue(amount.startsWith("200 "), amount),
+                    () -> assertTrue(amount.contains("\"data\":\"2\""), amount),
+                    () -> assertTrue(list.startsWith("200 "), list),
+                    () -> assertEquals(4, list.split("\n").length, list),
+                    () -> assertTrue(send(server, "GET", "/reports/UNKNOWN", null).startsWith("404 ")),
+                    () -> assertTrue(send(server, "DELETE", "/orders", null).startsWith("405 ")));
+        } finally {
+            server.stop();
+            H2Database.getInstance().clearTable();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import com.przemekm.coreservicesapp.database.H2Database;
+import com.przemekm.coreservicesapp.datamodel.OrderFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderStreamIngesterTest {
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private static long countOrders(final String clientId) {
+        return H2Database.getInstance().countData(new OrderFilter(clientId, null, null, null, null, null));
+    }
+
+    /*
+        Waits until the writer saves the expected amount of orders of the client.
+     */
+    private static void awaitOrders(final String clientId, final long expectedOrders) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (countOrders(clientId) < expectedOrders && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    @DisplayName("Stream should accept the orders of valid lines, including the last line without a line break")
+    void ingestTest() throws InterruptedException {
+        String stream = "Client_Id,Request_Id,Name,Quantity,Price\r\n"
+                + "ST1,1,Product,1,1.00\r\n"
+                + "ST1,2,Product,-1,1.00\n"
+                + "\n"
+                + "ST1,3,Product,1,1.00\n"
+                + "ST1,4,Product,1,1.00";
+        OrderStreamIngester ingester = new OrderStreamIngester(() -> { });
+        ingester.start();
+        long acceptedOrders = ingester.ingest(Channels.newChannel(
+                new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8))), "test stream");
+        awaitOrders("ST1", 3);
+        ingester.stop();
+
+        assertEquals(3, acceptedOrders);
+        assertEquals(3, countOrders("ST1"));
+    }
+
+    @Test
+    @DisplayName("Orders sent to the local TCP port should be saved in the database")
+    void socketTest() throws IOException, InterruptedException {
+        AtomicInteger loadedEvents = new AtomicInteger();
+        OrderStreamIngester ingester = new OrderStreamIngester(loadedEvents::incrementAndGet);
+        ingester.start();
+        int port = ingester.listen(0);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             OutputStream output = socket.getOutputStream()) {
+            for (int i = 0; i < 1000; i++) {
+                output.write(("ST2," + i + ",Product,1,1.00\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        awaitOrders("ST2", 1000);
+        ingester.stop();
+
+        assertEquals(1000, countOrders("ST2"));
+        assertTrue(loadedEvents.get() > 0);
+    }
+}
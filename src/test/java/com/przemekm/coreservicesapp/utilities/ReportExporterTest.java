@@ -0,0 +1,52 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import com.przemekm.coreservicesapp.database.H2Database;
+import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.ReportType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportExporterTest {
+
+    @Test
+    @DisplayName("Every report of every client should be exported to a separate file")
+    void exportTest() throws IOException, InterruptedException {
+        H2Database database = H2Database.getInstance();
+        database.clearTable();
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            orders.add(new Order("E" + (i % 3), i, "Product " + (i % 4), 1 + i % 5, new BigDecimal("2.50")));
+        }
+        database.saveData(orders);
+
+        Path directory = Files.createTempDirectory("export");
+        ReportExporter exporter = new ReportExporter(directory, progress -> { });
+        exporter.export();
+
+        assertAll(
+                () -> assertEquals(3 * ReportType.values().length, exporter.getTotalFiles()),
+                () -> assertEquals(exporter.getTotalFiles(), exporter.getExportedFiles()),
+                () -> assertEquals(0, exporter.getFailedFiles()));
+        for (int client = 0; client < 3; client++) {
+            for (ReportType reportType : ReportType.values()) {
+                assertTrue(Files.exists(directory.resolve("E" + client).resolve(reportType.name() + ".csv")),
+                        reportType.name());
+            }
+        }
+        List<String> ordersList = Files.readAllLines(
+                directory.resolve("E1").resolve(ReportType.ORDERS_LIST.name() + ".csv"), StandardCharsets.UTF_8);
+        //The header is followed by the 10 orders of the client.
+        assertEquals(11, ordersList.size());
+        database.clearTable();
+    }
+}
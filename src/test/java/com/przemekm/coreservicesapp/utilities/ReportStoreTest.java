@@ -0,0 +1,100 @@
+package com.przemekm.coreservicesapp.utilities;
+
+import com.przemekm.coreservicesapp.datamodel.Order;
+import com.przemekm.coreservicesapp.datamodel.Report;
+import com.przemekm.coreservicesapp.datamodel.ReportParams;
+import com.przemekm.coreservicesapp.datamodel.ReportRow;
+import com.przemekm.coreservicesapp.datamodel.ReportType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportStoreTest {
+    private static final int ITEMS_AMOUNT = 2000;
+
+    private static <T> Report<T> createReport(final String clientId, final T data) {
+        Report<T> report = new Report<>();
+        ReportParams reportParams = new ReportParams(ReportType.ORDERS_LIST, clientId);
+        report.setReportName(reportParams.getReportName());
+        report.setReportParams(reportParams);
+        report.setReportData(data);
+        return report;
+    }
+
+    private static List<Order> createOrders(final String clientId) {
+        List<Order> orders = new ArrayList<>(ITEMS_AMOUNT);
+        for (int i = 0; i < ITEMS_AMOUNT; i++) {
+            orders.add(new Order(clientId, i, "Product ąę " + i, 1 + i % 9, BigDecimal.valueOf(i * 37L, 2)));
+        }
+        return orders;
+    }
+
+    @Test
+    @DisplayName("Least recently used reports should be spilled over the budget and read back unchanged")
+    void spillAndLoadTest() {
+        ReportStore store = new ReportStore(300 * 1024);
+        List<Order> firstOrders = createOrders("C1");
+        List<Order> secondOrders = createOrders("C2");
+        Report<List<Order>> first = createReport("C1", new ArrayList<>(firstOrders));
+        Report<List<Order>> second = createReport("C2", new ArrayList<>(secondOrders));
+        try {
+            store.add(first);
+            assertFalse(store.isSpilled(first));
+            store.add(second);
+            assertTrue(store.isSpilled(first));
+            assertNull(first.getReportData());
+            assertFalse(store.isSpilled(second));
+
+            store.load(first);
+            assertEquals(firstOrders, first.getReportData());
+            assertFalse(store.isSpilled(first));
+            assertTrue(store.isSpilled(second));
+
+            store.load(second);
+            assertEquals(secondOrders, second.getReportData());
+            assertTrue(store.isSpilled(first));
+        } finally {
+            store.clear();
+        }
+        assertEquals(0, store.getUsedMemory());
+    }
+
+    @Test
+    @DisplayName("Rows of grouped reports should be read back unchanged")
+    void spillRowsTest() {
+        ReportStore store = new ReportStore(0);
+        List<ReportRow> rows = new ArrayList<>(ITEMS_AMOUNT);
+        for (int i = 0; i < ITEMS_AMOUNT; i++) {
+            rows.add(new ReportRow("Client_Id", "C" + i, i, 2L * i,
+                    BigDecimal.valueOf(i * 101L, 2), new BigDecimal("1.01")));
+        }
+        Report<List<ReportRow>> report = createReport("C1", new ArrayList<>(rows));
+        Report<List<ReportRow>> other = createReport("C2", new ArrayList<>(rows));
+        try {
+            store.add(report);
+            store.add(other);
+            assertTrue(store.isSpilled(report));
+            store.load(report);
+            assertEquals(rows, report.getReportData());
+        } finally {
+            store.clear();
+        }
+    }
+
+    @Test
+    @DisplayName("Scalar reports should always be kept in memory")
+    void scalarReportTest() {
+        ReportStore store = new ReportStore(0);
+        Report<String> report = createReport("C1", "12.34");
+        store.add(report);
+        store.add(createReport("C2", createOrders("C2")));
+        assertFalse(store.isSpilled(report));
+        assertEquals("12.34", report.getReportData());
+        store.clear();
+    }
+}